@@ -5,34 +5,134 @@ import cv_saas.CommsServiceGrpc;
 import cv_saas.Service;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.config.Buzz;
 import za.co.vaultgroup.example.config.LockerState;
+import za.co.vaultgroup.example.config.Settings.TlsSettings;
+import za.co.vaultgroup.example.tls.CertificateWatcher;
+import za.co.vaultgroup.example.tls.TlsChannelFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class Api {
     private static final int MAX_RETRY_ATTEMPTS = 3;
 
+    // See `UserAuditLogRequest.app` in service.proto.
+    private static final String APP_NAME = "dropnshop";
+
     private static final int DOOR_CLOSED = 0;
     private static final int DOOR_OPEN = 1;
 
     private static final int LOCKER_UNLOCKED = 0;
     private static final int LOCKER_LOCKED = 1;
+    private static final int LOCKER_READY_OPEN = 2;
+
+    // Buzz durations can be changed in settings, so a few more than there are Buzz values.
+    private static final int MAX_CACHED_BUZZ_REQUESTS = 8;
+
+    // Stubs and a channel are replaced when TLS certificates are reloaded (see reloadCertificates() method).
+    private volatile ManagedChannel channel;
+    private volatile CommsServiceGrpc.CommsServiceBlockingStub stub;
+
+    // Used for calls that nobody has to wait for (e.g. background shipping of audit records).
+    private volatile CommsServiceGrpc.CommsServiceStub asyncStub;
 
-    private final CommsServiceGrpc.CommsServiceBlockingStub stub;
+    // Messages are immutable, so requests that never change are built once (see prepareRequests() method).
+    // Index is a lockerId.
+    private volatile Service.LockRequest[] lockRequests = new Service.LockRequest[0];
+
+    // Searched linearly, there's only a few of them.
+    private volatile Service.ToggleBuzzerRequest[] buzzRequests = new Service.ToggleBuzzerRequest[0];
 
     public Api(String grpcTarget) {
-        ManagedChannel channel = ManagedChannelBuilder.forTarget(grpcTarget)
-                .usePlaintext()
+        this(build(ManagedChannelBuilder.forTarget(grpcTarget).usePlaintext()));
+    }
+
+    /**
+     * Encrypts calls if TLS is enabled in settings, certificates are reloaded once they're changed.
+     */
+    public Api(String grpcTarget, TlsSettings tlsSettings) throws IOException {
+        if (!tlsSettings.isEnabled()) {
+            useChannel(build(ManagedChannelBuilder.forTarget(grpcTarget).usePlaintext()));
+            return;
+        }
+
+        TlsChannelFactory factory = new TlsChannelFactory(grpcTarget, tlsSettings);
+        useChannel(build(factory.newChannelBuilder()));
+        log.info("Using TLS ({}) for {}", TlsChannelFactory.getProvider(), grpcTarget);
+
+        if (tlsSettings.getReloadIntervalSeconds() > 0) {
+            new CertificateWatcher(factory.getFiles(), tlsSettings.getReloadIntervalSeconds(), () -> reloadCertificates(factory)).start();
+        }
+    }
+
+    /**
+     * Lets tools use any channel (e.g. an in-process one, see {@link za.co.vaultgroup.example.tools.ReplayDriver}).
+     */
+    public Api(ManagedChannel channel) {
+        useChannel(channel);
+    }
+
+    private static ManagedChannel build(ManagedChannelBuilder<?> builder) {
+        return builder
                 .enableRetry()
                 .maxRetryAttempts(MAX_RETRY_ATTEMPTS)
                 .build();
+    }
 
-        stub = CommsServiceGrpc.newBlockingStub(channel);
+    private void useChannel(ManagedChannel channel) {
+        // A channel only connects on the first call by default, start connecting right away instead,
+        // so the connection is likely to be ready by the time we need it.
+        channel.getState(true);
+
+        this.stub = CommsServiceGrpc.newBlockingStub(channel);
+        this.asyncStub = CommsServiceGrpc.newStub(channel);
+        this.channel = channel;
+    }
+
+    /**
+     * Switches to a new channel that uses renewed certificates, calls in progress are finished on the old one.
+     */
+    private void reloadCertificates(TlsChannelFactory factory) {
+        try {
+            factory.reload();
+        } catch (Exception e) {
+            log.error("Failed to load renewed certificates, keeping the current ones", e);
+            return;
+        }
+
+        ManagedChannel oldChannel = channel;
+        useChannel(build(factory.newChannelBuilder()));
+        oldChannel.shutdown();
+
+        log.info("Reconnected with renewed certificates");
+    }
+
+    /**
+     * Builds the requests for every locker and buzzer sound in advance, so they're not built on every call.
+     */
+    public void prepareRequests(int lockersCount) {
+        Service.LockRequest[] requests = new Service.LockRequest[lockersCount + 1];
+
+        for (int lockerId = 1; lockerId <= lockersCount; lockerId++) {
+            requests[lockerId] = buildLockRequest(lockerId);
+        }
+
+        lockRequests = requests;
+
+        for (Buzz buzz : Buzz.values()) {
+            getBuzzRequest(buzz.getDuration());
+        }
     }
 
     public String getVersion() {
@@ -41,6 +141,23 @@ public class Api {
         return response.getVersion();
     }
 
+    /**
+     * @return a protocol version, see {@link Capabilities}.
+     */
+    public String getProtocolVersion() {
+        try {
+            Service.GetProtocolVersionResponse response = stub.getProtocolVersion(empty());
+            validate("getProtocolVersion", response.getResp());
+            return response.getVersion();
+        } catch (StatusRuntimeException e) {
+            // The endpoint itself only exists as of 1.0.1.
+            if (e.getStatus().getCode() == Status.Code.UNIMPLEMENTED) {
+                return Capabilities.INITIAL_PROTOCOL_VERSION;
+            }
+            throw e;
+        }
+    }
+
     public List<LockerState> getLockerStates() {
         Service.GetLockerStatesResponse response = stub.getLockerStates(empty());
         validate("getLockerStates", response.getResp());
@@ -61,13 +178,30 @@ public class Api {
         return states;
     }
 
+    /**
+     * @return a firmware version of every slave board (index is a slave board), an empty one if a board doesn't respond,
+     *         or null if the controller doesn't support the endpoint.
+     */
+    public List<String> getSlaveFirmware() {
+        try {
+            Service.GetSlaveFirmwareResponse response = stub.getSlaveFirmware(empty());
+            validate("getSlaveFirmware", response.getResp());
+            return response.getFirmwareList();
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() == Status.Code.UNIMPLEMENTED) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     public LockerMap getLockerMap() {
         Service.GetLockerMapResponse response = stub.getLockerMap(empty());
         validate("getLockerMap", response.getResp());
         return new LockerMap(response.getNumLockers(), response.getLockersList());
     }
 
-    public void setLockerState(int lockerId, LockerState state) {
+    public boolean setLockerState(int lockerId, LockerState state) {
         Service.SetLockerStateRequest request = Service.SetLockerStateRequest.newBuilder()
                 .setLockerNum(lockerId)
                 .setState(convertLockerState(state))
@@ -75,35 +209,34 @@ public class Api {
 
         try {
             Service.GeneralResponse response = stub.setLockerState(request);
-            validate("setLockerState", response.getResp());
+            return validate("setLockerState", response.getResp());
         } catch (Exception e) {
             log.error("Error during setLockerState call", e);
+            return false;
         }
     }
 
-    public void setLockState(int lockerId, boolean isLocked) {
-        Service.LockRequest request = Service.LockRequest.newBuilder()
-                .setLockerNum(lockerId)
-                .build();
+    public boolean setLockState(int lockerId, boolean isLocked) {
+        Service.LockRequest request = getLockRequest(lockerId);
 
         try {
             if (isLocked) {
-                validate("lockLocker", stub.lockLocker(request).getResp());
+                return validate("lockLocker", stub.lockLocker(request).getResp());
             } else {
-                validate("unlockLocker", stub.unlockLocker(request).getResp());
+                return validate("unlockLocker", stub.unlockLocker(request).getResp());
             }
         } catch (Exception e) {
             log.error("Error during setLockState call", e);
+            return false;
         }
     }
 
-    public void buzz(int duration) {
-        Service.ToggleBuzzerRequest request = Service.ToggleBuzzerRequest.newBuilder()
-                .setDurationMillis(duration)
-                .build();
-
-        Service.GeneralResponse response = stub.toggleBuzzer(request);
-        validate("toggleBuzzer", response.getResp());
+    /**
+     * @return whether the device has accepted the sound.
+     */
+    public boolean buzz(int duration) {
+        Service.GeneralResponse response = stub.toggleBuzzer(getBuzzRequest(duration));
+        return validate("toggleBuzzer", response.getResp());
     }
 
     public void clearScreen() {
@@ -127,6 +260,140 @@ public class Api {
         validate("triggerUserDuress", response.getResp());
     }
 
+    /**
+     * @param code a user code, see {@link za.co.vaultgroup.example.audit.AuditEvent}.
+     * @param level one of "info", "warning", "error" or "fatal".
+     * @param description no more than 1024 bytes.
+     * @return a future that completes with whether the record is accepted.
+     */
+    public CompletableFuture<Boolean> userAudit(int code, String level, String facility, String description) {
+        Service.UserAuditLogRequest request = Service.UserAuditLogRequest.newBuilder()
+                .setCode(code)
+                .setLevel(level)
+                .setFacility(facility)
+                .setDescription(description)
+                .setApp(APP_NAME)
+                .build();
+
+        GeneralResponseObserver observer = new GeneralResponseObserver("userAudit");
+        asyncStub.userAudit(request, observer);
+        return observer.getResult();
+    }
+
+    /**
+     * @return a future that completes with whether the message is accepted for transmission.
+     */
+    public CompletableFuture<Boolean> sendSms(String cellNum, String text) {
+        Service.SendSmsRequest request = Service.SendSmsRequest.newBuilder()
+                .setCellNum(cellNum)
+                .setMsg(text)
+                .build();
+
+        GeneralResponseObserver observer = new GeneralResponseObserver("sendSms");
+        asyncStub.sendSms(request, observer);
+        return observer.getResult();
+    }
+
+    /**
+     * Requires {@link Capability#SET_LED}.
+     *
+     * @param color see {@link za.co.vaultgroup.example.config.Led}.
+     * @return a future that completes with whether the colour is set,
+     * or fails if the device doesn't implement the call (see {@link #isUnimplemented(Throwable)}).
+     */
+    public CompletableFuture<Boolean> setLed(int lockerId, int color) {
+        Service.SetLedMessage request = Service.SetLedMessage.newBuilder()
+                .setLockerNum(lockerId)
+                .setColor(color)
+                .build();
+
+        GeneralResponseObserver observer = new GeneralResponseObserver("setLed", true);
+        asyncStub.setLed(request, observer);
+        return observer.getResult();
+    }
+
+    /**
+     * Requires {@link Capability#REBOOT}.
+     *
+     * @param code a code that is validated by an external reboot script.
+     */
+    public boolean reboot(String code) {
+        Service.RebootRequest request = Service.RebootRequest.newBuilder()
+                .setCode(code)
+                .build();
+
+        Service.GeneralResponse response = stub.reboot(request);
+        return validate("reboot", response.getResp());
+    }
+
+    /**
+     * Requires {@link Capability#MQTT_INTEGRATION}.
+     *
+     * @param name a unique name of an integration.
+     * @param host a host of the MQTT broker to connect to.
+     * @param port a port of the MQTT broker to connect to.
+     */
+    public boolean registerMqttIntegration(String name, String host, int port) {
+        Service.RegisterMqttIntegrationRequest request = Service.RegisterMqttIntegrationRequest.newBuilder()
+                .setName(name)
+                .setIntegration(Service.MqttCommsIntegration.newBuilder()
+                        .setHost(host)
+                        .setPort(port)
+                        .build())
+                .build();
+
+        Service.RegisterMqttIntegrationResponse response = stub.registerMqttIntegration(request);
+        return validate("registerMqttIntegration", response.getResp());
+    }
+
+    /**
+     * Requires {@link Capability#MQTT_INTEGRATION}.
+     */
+    public boolean unregisterMqttIntegration(String name) {
+        Service.UnregisterMqttIntegrationRequest request = Service.UnregisterMqttIntegrationRequest.newBuilder()
+                .setName(name)
+                .build();
+
+        Service.RegisterMqttIntegrationResponse response = stub.unregisterMqttIntegration(request);
+        return validate("unregisterMqttIntegration", response.getResp());
+    }
+
+    /**
+     * Requires {@link Capability#SEND_NOTIFICATION}.
+     *
+     * @return a future that completes with whether the notification is accepted,
+     * or fails if the device doesn't implement the call (see {@link #isUnimplemented(Throwable)}).
+     */
+    public CompletableFuture<Boolean> sendNotification(Service.NotificationMessageRequest request) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        asyncStub.sendNotification(request, new StreamObserver<Service.BasicResponse>() {
+            @Override
+            public void onNext(Service.BasicResponse response) {
+                result.complete(validate("sendNotification", response));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (isUnimplemented(t)) {
+                    result.completeExceptionally(t);
+                    return;
+                }
+
+                log.error("Error during sendNotification call ({})", t.getMessage());
+                result.complete(false);
+            }
+
+            @Override
+            public void onCompleted() {
+                // A response should be already received by now.
+                result.complete(false);
+            }
+        });
+
+        return result;
+    }
+
     private LockerState decodeLockerState(int doorState, Service.LockerStateResponseMessage lockerState) {
         if (doorState == DOOR_OPEN) {
             return LockerState.OPEN;
@@ -134,6 +401,8 @@ public class Api {
             switch (lockerState.getState().getState()) {
                 case LOCKER_LOCKED:
                     return LockerState.LOCKED;
+                case LOCKER_READY_OPEN:
+                    return LockerState.READY_OPEN;
                 default:
                 case LOCKER_UNLOCKED:
                     return LockerState.CLOSED;
@@ -154,19 +423,71 @@ public class Api {
             case LOCKED:
                 return LOCKER_LOCKED;
 
+            case READY_OPEN:
+                return LOCKER_READY_OPEN;
+
             default:
                 throw new IllegalArgumentException("Unexpected locker state: " + state);
         }
     }
 
-    private void validate(String endpoint, Service.BasicResponse response) {
+    /**
+     * @return whether a call has failed because a device doesn't implement it, e.g. a future of an async call failed that way.
+     */
+    public static boolean isUnimplemented(Throwable t) {
+        return t != null && Status.fromThrowable(t).getCode() == Status.Code.UNIMPLEMENTED;
+    }
+
+    private boolean validate(String endpoint, Service.BasicResponse response) {
         if (!response.getSuccess()) {
             log.error("Error during call to `{}` endpoint, code #{} ({})", endpoint, response.getCode(), response.getErrMsg());
+            return false;
         }
+
+        return true;
     }
 
     private Empty empty() {
-        return Empty.newBuilder().build();
+        return Empty.getDefaultInstance();
+    }
+
+    private Service.LockRequest getLockRequest(int lockerId) {
+        Service.LockRequest[] requests = lockRequests;
+
+        if (lockerId > 0 && lockerId < requests.length) {
+            return requests[lockerId];
+        }
+
+        return buildLockRequest(lockerId);
+    }
+
+    private Service.LockRequest buildLockRequest(int lockerId) {
+        return Service.LockRequest.newBuilder()
+                .setLockerNum(lockerId)
+                .build();
+    }
+
+    private Service.ToggleBuzzerRequest getBuzzRequest(int duration) {
+        Service.ToggleBuzzerRequest[] requests = buzzRequests;
+
+        for (Service.ToggleBuzzerRequest request : requests) {
+            if (request.getDurationMillis() == duration) {
+                return request;
+            }
+        }
+
+        Service.ToggleBuzzerRequest request = Service.ToggleBuzzerRequest.newBuilder()
+                .setDurationMillis(duration)
+                .build();
+
+        // Copy on write, so readers never lock. Two threads adding at once can lose a request, it's just built again next time.
+        if (requests.length < MAX_CACHED_BUZZ_REQUESTS) {
+            Service.ToggleBuzzerRequest[] newRequests = Arrays.copyOf(requests, requests.length + 1);
+            newRequests[requests.length] = request;
+            buzzRequests = newRequests;
+        }
+
+        return request;
     }
 
     @Getter
@@ -175,4 +496,45 @@ public class Api {
         private final int count;
         private final List<Integer> mapping;
     }
+
+    private class GeneralResponseObserver implements StreamObserver<Service.GeneralResponse> {
+        private final String endpoint;
+
+        // Whether the result fails on UNIMPLEMENTED status, so a caller can tell an unsupported call from a failed one.
+        private final boolean isProbing;
+
+        @Getter
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private GeneralResponseObserver(String endpoint) {
+            this(endpoint, false);
+        }
+
+        private GeneralResponseObserver(String endpoint, boolean isProbing) {
+            this.endpoint = endpoint;
+            this.isProbing = isProbing;
+        }
+
+        @Override
+        public void onNext(Service.GeneralResponse response) {
+            result.complete(validate(endpoint, response.getResp()));
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (isProbing && isUnimplemented(t)) {
+                result.completeExceptionally(t);
+                return;
+            }
+
+            log.error("Error during {} call ({})", endpoint, t.getMessage());
+            result.complete(false);
+        }
+
+        @Override
+        public void onCompleted() {
+            // A response should be already received by now.
+            result.complete(false);
+        }
+    }
 }
@@ -1,11 +1,27 @@
 package za.co.vaultgroup.example;
 
 import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.analytics.AnalyticsReport;
 import za.co.vaultgroup.example.app.Vault;
 import za.co.vaultgroup.example.config.Settings;
+import za.co.vaultgroup.example.config.SettingsWatcher;
+import za.co.vaultgroup.example.config.Tunables;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
 
 @Slf4j
 public class Application {
+    private static final String CDS_TRAINING_PROPERTY = "dropnshop.cds-training";
+    private static final String REPORT_COMMAND = "report";
+    private static final int DEFAULT_REPORT_DAYS = 7;
+    private static final String PEAK_RSS_PREFIX = "VmHWM:";
+
     public static void main(String[] args) {
         log.info("Starting...");
 
@@ -14,8 +30,32 @@ public class Application {
 
             if (settings == null) {
                 log.error("Exiting");
+                return;
+            }
+
+            Tunables.publish(settings);
+
+            if (args.length > 0 && REPORT_COMMAND.equals(args[0])) {
+                // Usage: report [days], prints statistics for the last N days (including today).
+                int days = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REPORT_DAYS;
+                ZoneId zone = ZoneId.systemDefault();
+                LocalDate today = LocalDate.now(zone);
+                Path directory = Paths.get(settings.getAnalyticsSettings().getDirectory());
+
+                new AnalyticsReport(directory, zone, today.minusDays(days - 1), today).print(System.out);
+            } else if (Boolean.getBoolean(CDS_TRAINING_PROPERTY)) {
+                // Only load and initialize classes needed for startup, then exit (see `cds` and `native` profiles in pom.xml).
+                new Vault(settings);
+                log.info("Training run finished, peak RSS {} kB", getPeakRss());
+                System.exit(0);
             } else {
                 Vault vault = new Vault(settings);
+                Path externalPath = Settings.getExternalPath();
+
+                if (externalPath != null) {
+                    new SettingsWatcher(externalPath, vault::onSettingsChanged).start();
+                }
+
                 vault.run();
 
                 log.info("Finished");
@@ -24,4 +64,23 @@ public class Application {
             log.error("Failed", e);
         }
     }
+
+    /**
+     * @return the most memory the process has used so far (in kB, -1 if unknown), only works on Linux.
+     */
+    private static long getPeakRss() {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get("/proc/self/status"));
+
+            for (String line : lines) {
+                if (line.startsWith(PEAK_RSS_PREFIX)) {
+                    return Long.parseLong(line.substring(PEAK_RSS_PREFIX.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Failed to read peak RSS", e);
+        }
+
+        return -1;
+    }
 }
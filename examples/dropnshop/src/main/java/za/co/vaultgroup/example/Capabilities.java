@@ -0,0 +1,87 @@
+package za.co.vaultgroup.example;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A registry of {@link Capability capabilities} a device supports.
+ * It's populated once at startup from `get_protocol_version` RPC (see {@link #initialize(String)}),
+ * so optional features are enabled or disabled up front instead of failing at runtime.
+ * Capabilities without a documented version are taken away once a device turns out not to implement them
+ * (see {@link #reportUnimplemented(Capability)}). Until initialized nothing is considered supported.
+ */
+@Slf4j
+public class Capabilities {
+    /**
+     * Devices that don't support `get_protocol_version` at all.
+     */
+    public static final String INITIAL_PROTOCOL_VERSION = "1.0.0";
+
+    private volatile String protocolVersion;
+    private volatile Set<Capability> supported = EnumSet.noneOf(Capability.class);
+
+    public void initialize(String protocolVersion) {
+        Set<Capability> capabilities = EnumSet.noneOf(Capability.class);
+
+        for (Capability capability : Capability.values()) {
+            if (capability.getSinceVersion() == null || compareVersions(protocolVersion, capability.getSinceVersion()) >= 0) {
+                capabilities.add(capability);
+            }
+        }
+
+        this.protocolVersion = protocolVersion;
+        this.supported = capabilities;
+
+        log.info("Protocol version is {}, supported capabilities: {}", protocolVersion, capabilities);
+    }
+
+    public String getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public boolean has(Capability capability) {
+        return supported.contains(capability);
+    }
+
+    /**
+     * Called once a device has answered a call with UNIMPLEMENTED status, so the capability is no longer used.
+     */
+    public synchronized void reportUnimplemented(Capability capability) {
+        if (!supported.contains(capability)) {
+            return;
+        }
+
+        Set<Capability> capabilities = EnumSet.copyOf(supported);
+        capabilities.remove(capability);
+        supported = capabilities;
+
+        log.warn("Device doesn't implement {} (protocol version {}), it's not used anymore", capability, protocolVersion);
+    }
+
+    // Versions are compared numerically part by part (e.g. 1.0.10 is newer than 1.0.2), missing parts are zeros.
+    private static int compareVersions(String a, String b) {
+        String[] aParts = a.trim().split("\\.");
+        String[] bParts = b.trim().split("\\.");
+
+        for (int i = 0; i < Math.max(aParts.length, bParts.length); i++) {
+            int aPart = i < aParts.length ? parsePart(aParts[i]) : 0;
+            int bPart = i < bParts.length ? parsePart(bParts[i]) : 0;
+
+            if (aPart != bPart) {
+                return Integer.compare(aPart, bPart);
+            }
+        }
+
+        return 0;
+    }
+
+    private static int parsePart(String part) {
+        try {
+            return Integer.parseInt(part);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package za.co.vaultgroup.example;
+
+/**
+ * Optional API features (see {@link Capabilities}).
+ *
+ * Only some RPCs are documented to be available as of a certain protocol version (see service.proto), the others
+ * have no version to check, so they're assumed to be available until a device answers them with UNIMPLEMENTED status.
+ */
+public enum Capability {
+    PROTOCOL_VERSION("1.0.1"),
+    SET_LED(null),
+    REBOOT(null),
+    MQTT_INTEGRATION("1.0.2"),
+    SEND_NOTIFICATION(null);
+
+    private final String sinceVersion;
+
+    Capability(String sinceVersion) {
+        this.sinceVersion = sinceVersion;
+    }
+
+    /**
+     * @return null if it's not documented, see {@link Capabilities#reportUnimplemented(Capability)}.
+     */
+    public String getSinceVersion() {
+        return sinceVersion;
+    }
+}
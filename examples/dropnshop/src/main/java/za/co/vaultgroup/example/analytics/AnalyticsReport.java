@@ -0,0 +1,162 @@
+package za.co.vaultgroup.example.analytics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming aggregations over a range of day partitions written by {@link AnalyticsStore}.
+ * Every aggregation makes a single pass over the columns it needs and keeps only primitive counters.
+ */
+public class AnalyticsReport {
+    // Upper bounds of dwell time histogram buckets (seconds), the last bucket is for anything longer.
+    public static final long[] DWELL_BUCKETS = {
+            TimeUnit.MINUTES.toSeconds(15),
+            TimeUnit.HOURS.toSeconds(1),
+            TimeUnit.HOURS.toSeconds(4),
+            TimeUnit.HOURS.toSeconds(12),
+            TimeUnit.DAYS.toSeconds(1),
+            TimeUnit.DAYS.toSeconds(3),
+            TimeUnit.DAYS.toSeconds(7)
+    };
+
+    private final Path directory;
+    private final ZoneId zone;
+    private final LocalDate from;
+    private final LocalDate to;
+
+    /**
+     * @param from first day (inclusive).
+     * @param to last day (inclusive).
+     */
+    public AnalyticsReport(Path directory, ZoneId zone, LocalDate from, LocalDate to) {
+        this.directory = directory;
+        this.zone = zone;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return number of pickups in every bucket of {@link #DWELL_BUCKETS} (plus one for longer dwell times).
+     */
+    public long[] getDwellHistogram() throws IOException {
+        long[] histogram = new long[DWELL_BUCKETS.length + 1];
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            Partition.Reader reader = Partition.openForReading(directory, date);
+
+            if (reader == null) {
+                continue;
+            }
+
+            for (int i = 0; i < reader.getCount(); i++) {
+                int dwell = reader.getDwell(i);
+
+                if (dwell >= 0) {
+                    int bucket = Arrays.binarySearch(DWELL_BUCKETS, dwell);
+                    histogram[bucket < 0 ? -bucket - 1 : bucket]++;
+                }
+            }
+        }
+
+        return histogram;
+    }
+
+    /**
+     * @return number of completed dropoffs and pickups by hour of day (24 values).
+     */
+    public long[] getHourlyThroughput() throws IOException {
+        long[] throughput = new long[24];
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            Partition.Reader reader = Partition.openForReading(directory, date);
+
+            if (reader == null) {
+                continue;
+            }
+
+            long dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+
+            for (int i = 0; i < reader.getCount(); i++) {
+                TransactionType type = reader.getType(i);
+
+                if (type == TransactionType.DROPOFF || type == TransactionType.PICKUP) {
+                    int hour = (int) ((reader.getTimestamp(i) - dayStart) / TimeUnit.HOURS.toMillis(1));
+                    // Days are shorter or longer than 24 hours when DST starts or ends.
+                    throughput[Math.max(0, Math.min(23, hour))]++;
+                }
+            }
+        }
+
+        return throughput;
+    }
+
+    /**
+     * @return number of completed dropoffs per slave board (column of lockers).
+     */
+    public long[] getColumnUtilisation() throws IOException {
+        long[] utilisation = new long[0];
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            Partition.Reader reader = Partition.openForReading(directory, date);
+
+            if (reader == null) {
+                continue;
+            }
+
+            for (int i = 0; i < reader.getCount(); i++) {
+                int slave = reader.getSlave(i);
+
+                if (slave >= 0 && reader.getType(i) == TransactionType.DROPOFF) {
+                    // Vault dimensions may change over time (e.g. a column added).
+                    if (slave >= utilisation.length) {
+                        utilisation = Arrays.copyOf(utilisation, slave + 1);
+                    }
+
+                    utilisation[slave]++;
+                }
+            }
+        }
+
+        return utilisation;
+    }
+
+    public void print(PrintStream out) throws IOException {
+        out.println("Transactions from " + from + " to " + to);
+
+        out.println("Dwell time (pickups):");
+        long[] histogram = getDwellHistogram();
+        for (int i = 0; i < histogram.length; i++) {
+            String bound = i < DWELL_BUCKETS.length ? "<= " + formatDuration(DWELL_BUCKETS[i]) : "> " + formatDuration(DWELL_BUCKETS[DWELL_BUCKETS.length - 1]);
+            out.printf("  %-10s %d%n", bound, histogram[i]);
+        }
+
+        out.println("Throughput (dropoffs and pickups) by hour:");
+        long[] throughput = getHourlyThroughput();
+        for (int hour = 0; hour < throughput.length; hour++) {
+            out.printf("  %02d:00      %d%n", hour, throughput[hour]);
+        }
+
+        out.println("Dropoffs by column:");
+        long[] utilisation = getColumnUtilisation();
+        for (int slave = 0; slave < utilisation.length; slave++) {
+            out.printf("  #%-9d %d%n", slave, utilisation[slave]);
+        }
+    }
+
+    private static String formatDuration(long seconds) {
+        if (seconds % TimeUnit.DAYS.toSeconds(1) == 0) {
+            return TimeUnit.SECONDS.toDays(seconds) + "d";
+        }
+
+        if (seconds % TimeUnit.HOURS.toSeconds(1) == 0) {
+            return TimeUnit.SECONDS.toHours(seconds) + "h";
+        }
+
+        return TimeUnit.SECONDS.toMinutes(seconds) + "m";
+    }
+}
@@ -0,0 +1,214 @@
+package za.co.vaultgroup.example.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.config.Config;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a history of transactions in a columnar on-disk format, one partition per day (see {@link Partition}).
+ *
+ * Transactions are written by a background thread, so recording one never blocks event handling on disk I/O.
+ * Aggregations (see {@link AnalyticsReport}) stream through memory-mapped columns,
+ * so the history is never loaded to the heap as a whole.
+ *
+ * Dwell time of a pickup needs the moment the parcel was stored, which may be before the application (re)started:
+ * these moments are recovered from the partitions before the first transaction is written (see {@link #recover()}).
+ */
+@Slf4j
+public class AnalyticsStore {
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final Path directory;
+    private final Config config;
+    private final LongSupplier clock;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "analytics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed by the background thread.
+    private Partition partition;
+
+    // Key is a lockerId, value is the moment a parcel was stored (epoch millis).
+    // Only accessed by the background thread.
+    private final Map<Integer, Long> storedAt = new HashMap<>();
+    private boolean isRecovered = false;
+
+    /**
+     * @param clock current time in millis, see {@link za.co.vaultgroup.example.time.Scheduler#currentTimeMillis()}.
+     */
+    public AnalyticsStore(Path directory, Config config, LongSupplier clock) {
+        this.directory = directory;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public void record(TransactionType type, int lockerId) {
+        long timestamp = clock.getAsLong();
+        int slave = config.slaveOf(lockerId);
+        int position = config.positionOf(lockerId);
+
+        try {
+            executor.execute(() -> write(timestamp, type, lockerId, slave, position));
+        } catch (RejectedExecutionException e) {
+            log.error("Failed to record {} transaction for locker #{}", type, lockerId, e);
+        }
+    }
+
+    /**
+     * Writes transactions recorded so far and closes the partition, nothing is recorded after that.
+     */
+    public void close() throws InterruptedException {
+        executor.shutdown();
+
+        if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.error("Transactions are not written in {} seconds", CLOSE_TIMEOUT_SECONDS);
+            return;
+        }
+
+        if (partition != null) {
+            try {
+                partition.close();
+            } catch (IOException e) {
+                log.error("Failed to close partition {}", partition.getDate(), e);
+            }
+
+            partition = null;
+        }
+    }
+
+    private void write(long timestamp, TransactionType type, int lockerId, int slave, int position) {
+        if (!isRecovered) {
+            recover();
+            isRecovered = true;
+        }
+
+        int dwellSeconds = -1;
+
+        if (type == TransactionType.DROPOFF) {
+            storedAt.put(lockerId, timestamp);
+        } else if (type == TransactionType.PARCEL_EXPIRED) {
+            storedAt.remove(lockerId);
+        } else if (type == TransactionType.PICKUP) {
+            // Unknown if a parcel was stored before the history starts.
+            Long storedAtMillis = storedAt.remove(lockerId);
+
+            if (storedAtMillis != null) {
+                dwellSeconds = (int) ((timestamp - storedAtMillis) / 1000);
+            }
+        }
+
+        try {
+            LocalDate date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+
+            if (partition == null || !partition.getDate().equals(date)) {
+                if (partition != null) {
+                    partition.close();
+                }
+
+                partition = Partition.openForWriting(directory, date);
+            }
+
+            partition.append(timestamp, type, lockerId, slave, position, dwellSeconds);
+        } catch (IOException e) {
+            log.error("Failed to write {} transaction for locker #{}", type, lockerId, e);
+        }
+    }
+
+    /**
+     * Finds lockers whose latest transaction is a dropoff, going from the latest partition back in time
+     * until every locker is resolved or the history is over.
+     */
+    private void recover() {
+        List<LocalDate> dates = new ArrayList<>();
+
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                try {
+                    dates.add(LocalDate.parse(path.getFileName().toString()));
+                } catch (DateTimeParseException e) {
+                    // Not a partition.
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to list partitions in {}", directory, e);
+            return;
+        }
+
+        dates.sort(Collections.reverseOrder());
+
+        // Lockers whose latest transaction that matters is found, a parcel is either still there or taken.
+        Set<Integer> resolved = new HashSet<>();
+        int lockersCount = config.getLockersCount();
+
+        for (LocalDate date : dates) {
+            try {
+                Partition.Reader reader = Partition.openForReading(directory, date);
+
+                if (reader == null) {
+                    continue;
+                }
+
+                for (int i = reader.getCount() - 1; i >= 0; i--) {
+                    int lockerId = reader.getLocker(i);
+
+                    if (resolved.contains(lockerId)) {
+                        continue;
+                    }
+
+                    TransactionType type = reader.getType(i);
+
+                    if (type == TransactionType.DROPOFF) {
+                        storedAt.put(lockerId, reader.getTimestamp(i));
+                        resolved.add(lockerId);
+                    } else if (type == TransactionType.PICKUP || type == TransactionType.PARCEL_EXPIRED) {
+                        resolved.add(lockerId);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Failed to read partition {}", date, e);
+            }
+
+            if (lockersCount > 0 && resolved.size() >= lockersCount) {
+                break;
+            }
+        }
+
+        log.info("Recovered {} stored parcel(s) from {} partition(s)", storedAt.size(), dates.size());
+    }
+}
@@ -0,0 +1,203 @@
+package za.co.vaultgroup.example.analytics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Transactions of a single day, one file per column, every column value has a fixed size,
+ * so n-th transaction is found at (n * value size) offset in every column file.
+ *
+ * A crash may leave a transaction written partially (only to some columns), such a tail is cut off when
+ * a partition is opened for writing and ignored when it's read.
+ */
+class Partition implements Closeable {
+    enum Column {
+        // Epoch millis.
+        TIMESTAMP("timestamp.col", Long.BYTES),
+        // See TransactionType.getCode().
+        TYPE("type.col", Byte.BYTES),
+        LOCKER("locker.col", Short.BYTES),
+        // Zero-based slave board index and one-based position within it, see Config.slaveOf() and Config.positionOf().
+        SLAVE("slave.col", Short.BYTES),
+        POSITION("position.col", Short.BYTES),
+        // Seconds a parcel spent in a locker (only for pickups) or -1.
+        DWELL("dwell.col", Integer.BYTES);
+
+        private final String fileName;
+        private final int size;
+
+        Column(String fileName, int size) {
+            this.fileName = fileName;
+            this.size = size;
+        }
+
+        String getFileName() {
+            return fileName;
+        }
+
+        int getSize() {
+            return size;
+        }
+    }
+
+    private final LocalDate date;
+    private final Path directory;
+    private final Map<Column, FileChannel> channels = new EnumMap<>(Column.class);
+
+    // One buffer for all the columns of a transaction, so nothing is allocated per write.
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    private int count;
+
+    private Partition(LocalDate date, Path directory) {
+        this.date = date;
+        this.directory = directory;
+    }
+
+    static Path directoryOf(Path root, LocalDate date) {
+        return root.resolve(date.toString());
+    }
+
+    static Partition openForWriting(Path root, LocalDate date) throws IOException {
+        Partition partition = new Partition(date, directoryOf(root, date));
+        Files.createDirectories(partition.directory);
+
+        long count = Long.MAX_VALUE;
+
+        for (Column column : Column.values()) {
+            FileChannel channel = FileChannel.open(partition.directory.resolve(column.fileName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            partition.channels.put(column, channel);
+            count = Math.min(count, channel.size() / column.size);
+        }
+
+        // Drop a partially written transaction (if any).
+        for (Column column : Column.values()) {
+            FileChannel channel = partition.channels.get(column);
+            channel.truncate(count * column.size);
+            channel.position(count * column.size);
+        }
+
+        partition.count = (int) count;
+        return partition;
+    }
+
+    LocalDate getDate() {
+        return date;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    void append(long timestamp, TransactionType type, int lockerId, int slave, int position, int dwellSeconds) throws IOException {
+        buffer.clear();
+        write(Column.TIMESTAMP, buffer.putLong(timestamp));
+        write(Column.TYPE, buffer.put(type.getCode()));
+        write(Column.LOCKER, buffer.putShort((short) lockerId));
+        write(Column.SLAVE, buffer.putShort((short) slave));
+        write(Column.POSITION, buffer.putShort((short) position));
+        write(Column.DWELL, buffer.putInt(dwellSeconds));
+        count++;
+    }
+
+    private void write(Column column, ByteBuffer buffer) throws IOException {
+        FileChannel channel = channels.get(column);
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Columns are memory-mapped read-only, so only the pages actually touched by a query are loaded
+     * and nothing is copied to the heap.
+     */
+    static Reader openForReading(Path root, LocalDate date) throws IOException {
+        Path directory = directoryOf(root, date);
+
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+
+        return new Reader(directory);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : channels.values()) {
+            channel.close();
+        }
+    }
+
+    static class Reader {
+        private final Path directory;
+        private final Map<Column, MappedByteBuffer> columns = new EnumMap<>(Column.class);
+        private int count = -1;
+
+        private Reader(Path directory) {
+            this.directory = directory;
+        }
+
+        int getCount() throws IOException {
+            if (count < 0) {
+                long result = Long.MAX_VALUE;
+
+                for (Column column : Column.values()) {
+                    Path path = directory.resolve(column.fileName);
+                    result = Math.min(result, Files.exists(path) ? Files.size(path) / column.size : 0);
+                }
+
+                count = (int) result;
+            }
+
+            return count;
+        }
+
+        long getTimestamp(int index) throws IOException {
+            return map(Column.TIMESTAMP).getLong(index * Long.BYTES);
+        }
+
+        TransactionType getType(int index) throws IOException {
+            return TransactionType.fromCode(map(Column.TYPE).get(index));
+        }
+
+        int getLocker(int index) throws IOException {
+            return map(Column.LOCKER).getShort(index * Short.BYTES);
+        }
+
+        int getSlave(int index) throws IOException {
+            return map(Column.SLAVE).getShort(index * Short.BYTES);
+        }
+
+        int getDwell(int index) throws IOException {
+            return map(Column.DWELL).getInt(index * Integer.BYTES);
+        }
+
+        // Columns are only mapped when a query needs them.
+        private MappedByteBuffer map(Column column) throws IOException {
+            MappedByteBuffer buffer = columns.get(column);
+
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(directory.resolve(column.fileName), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) getCount() * column.size);
+                }
+
+                columns.put(column, buffer);
+            }
+
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package za.co.vaultgroup.example.analytics;
+
+/**
+ * Stored as a single byte (see {@link AnalyticsStore}), so never reorder or remove constants, only add new ones.
+ */
+public enum TransactionType {
+    DROPOFF_STARTED,
+    DROPOFF,
+    DROPOFF_CANCELLED,
+    DROPOFF_TIMEOUT,
+    PICKUP,
+    PICKUP_TIMEOUT,
+    PARCEL_EXPIRED;
+
+    private static final TransactionType[] VALUES = values();
+
+    public static TransactionType fromCode(byte code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+    }
+
+    public byte getCode() {
+        return (byte) ordinal();
+    }
+}
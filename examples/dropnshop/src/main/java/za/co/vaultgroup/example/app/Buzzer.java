@@ -0,0 +1,120 @@
+package za.co.vaultgroup.example.app;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.config.Buzz;
+import za.co.vaultgroup.example.time.Scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes buzzer sounds asynchronously, so the event thread never waits for `toggle_buzzer` RPC.
+ *
+ * Requests made within a short window (timed by the vault's {@link Scheduler}) are merged and only the most important one
+ * (see {@link Buzz}) is played, with its own duration. A request that would end before the sound that is still playing
+ * is dropped, so there's at most one RPC call per sound customer actually hears. RPC calls are made by a thread of
+ * their own, so a slow device never delays the vault's timeouts.
+ */
+@Slf4j
+public class Buzzer {
+    // Keypresses closer to each other than that are considered a single burst.
+    private static final long COALESCING_WINDOW_MILLIS = 50;
+
+    private final Api api;
+    private final Scheduler scheduler;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "buzzer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requestedCount = new AtomicLong();
+    private final AtomicLong playedCount = new AtomicLong();
+    private final AtomicLong savedCount = new AtomicLong();
+
+    // The most important sound requested within the current window, null means there's nothing pending.
+    private Buzz pendingBuzz = null;
+
+    // Only accessed from the executor's thread.
+    private long playingUntilMillis;
+
+    public Buzzer(Api api, Scheduler scheduler) {
+        this.api = api;
+        this.scheduler = scheduler;
+        this.playingUntilMillis = scheduler.currentTimeMillis();
+    }
+
+    public void buzz(Buzz buzz) {
+        requestedCount.incrementAndGet();
+
+        synchronized (this) {
+            if (pendingBuzz == null) {
+                pendingBuzz = buzz;
+                scheduler.schedule(this::flush, COALESCING_WINDOW_MILLIS);
+                return;
+            }
+
+            savedCount.incrementAndGet();
+
+            if (buzz.compareTo(pendingBuzz) > 0) {
+                pendingBuzz = buzz;
+            }
+        }
+    }
+
+    /**
+     * @return how many sounds have been requested.
+     */
+    public long getRequestedCount() {
+        return requestedCount.get();
+    }
+
+    /**
+     * @return how many sounds the device has accepted.
+     */
+    public long getPlayedCount() {
+        return playedCount.get();
+    }
+
+    /**
+     * @return how many `toggle_buzzer` RPC calls have been saved by merging sounds.
+     */
+    public long getSavedCount() {
+        return savedCount.get();
+    }
+
+    // Called by the scheduler once a window is over, only hands the sound over to the executor.
+    private void flush() {
+        Buzz buzz;
+
+        synchronized (this) {
+            buzz = pendingBuzz;
+            pendingBuzz = null;
+        }
+
+        executor.execute(() -> play(buzz.getDuration()));
+    }
+
+    private void play(int duration) {
+        long now = scheduler.currentTimeMillis();
+
+        // The sound that is still playing covers this one anyway.
+        if (now + duration <= playingUntilMillis) {
+            savedCount.incrementAndGet();
+            return;
+        }
+
+        try {
+            if (api.buzz(duration)) {
+                playedCount.incrementAndGet();
+                playingUntilMillis = now + duration;
+            }
+        } catch (Exception e) {
+            log.error("Failed to buzz", e);
+        }
+
+        log.debug("Buzzer: {} sound(s) requested, {} played, {} RPC call(s) saved", getRequestedCount(), getPlayedCount(), getSavedCount());
+    }
+}
@@ -0,0 +1,203 @@
+package za.co.vaultgroup.example.app;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Parcels stored in lockers and lockers reserved for orders (see {@link za.co.vaultgroup.example.backoffice.BackofficeService}).
+ *
+ * The vault changes it under its own lock, the back-office service doesn't take that lock at all, so every change
+ * is a compare-and-set of an immutable {@link Slot}: a writer that lost a race just sees a different slot and decides again.
+ * Every change gets a new version of a locker, so a remote client can tell whether a locker is still what it has seen.
+ */
+public class DropoffStore {
+    // Index is a lockerId, set once lockers are known (see initialize() method).
+    private volatile AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(0);
+
+    // Told about every changed locker (by lockerId) by a thread that has changed it.
+    private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    void initialize(int lockersCount) {
+        AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(lockersCount + 1);
+
+        for (int lockerId = 0; lockerId <= lockersCount; lockerId++) {
+            slots.set(lockerId, Slot.FREE);
+        }
+
+        this.slots = slots;
+    }
+
+    public void addListener(IntConsumer listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(IntConsumer listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return zero until lockers are known.
+     */
+    public int getLockersCount() {
+        return Math.max(slots.length() - 1, 0);
+    }
+
+    /**
+     * @return a locker's current slot or null if there's no such locker.
+     */
+    public Slot get(int lockerId) {
+        AtomicReferenceArray<Slot> slots = this.slots;
+        return lockerId < 1 || lockerId >= slots.length() ? null : slots.get(lockerId);
+    }
+
+    /**
+     * @return whether the locker was still in the expected slot, so it's changed to the new one.
+     */
+    public boolean compareAndSet(int lockerId, Slot expected, Slot update) {
+        if (!slots.compareAndSet(lockerId, expected, update)) {
+            return false;
+        }
+
+        for (IntConsumer listener : listeners) {
+            listener.accept(lockerId);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return a password of a parcel stored in the locker (or a pickup code of an order), null if it's free.
+     */
+    String getPassword(int lockerId) {
+        Slot slot = get(lockerId);
+        return slot == null ? null : slot.getPassword();
+    }
+
+    boolean isOccupied(int lockerId) {
+        return getPassword(lockerId) != null;
+    }
+
+    /**
+     * Takes a free locker for a parcel.
+     *
+     * @return false if the locker is not free (e.g. it has been reserved since it was picked).
+     */
+    boolean putIfFree(int lockerId, String password) {
+        Slot slot = get(lockerId);
+        return slot != null && !slot.isOccupied() && compareAndSet(lockerId, slot, slot.next(password, null));
+    }
+
+    /**
+     * Stores a parcel whatever the locker has.
+     */
+    void put(int lockerId, String password) {
+        set(lockerId, password, null);
+    }
+
+    void reserve(int lockerId, String password, String orderId) {
+        set(lockerId, password, Objects.requireNonNull(orderId));
+    }
+
+    void remove(int lockerId) {
+        set(lockerId, null, null);
+    }
+
+    /**
+     * Gives a locker a new version without changing what it has, called when a session takes the locker,
+     * so a remote change decided before that (e.g. a release) fails and is decided again.
+     */
+    void touch(int lockerId) {
+        Slot slot;
+
+        do {
+            slot = get(lockerId);
+
+            if (slot == null) {
+                return;
+            }
+        } while (!compareAndSet(lockerId, slot, slot.next(slot.getPassword(), slot.getOrderId())));
+    }
+
+    private void set(int lockerId, String password, String orderId) {
+        Slot slot;
+
+        do {
+            slot = get(lockerId);
+
+            if (slot == null) {
+                return;
+            }
+        } while (!compareAndSet(lockerId, slot, slot.next(password, orderId)));
+    }
+
+    /**
+     * @return a password of every occupied locker (key is a lockerId).
+     */
+    Map<Integer, String> getPasswords() {
+        return collect(false);
+    }
+
+    /**
+     * @return an order of every reserved locker (key is a lockerId).
+     */
+    Map<Integer, String> getReservations() {
+        return collect(true);
+    }
+
+    private Map<Integer, String> collect(boolean isReservation) {
+        AtomicReferenceArray<Slot> slots = this.slots;
+        Map<Integer, String> result = new HashMap<>();
+
+        for (int lockerId = 1; lockerId < slots.length(); lockerId++) {
+            Slot slot = slots.get(lockerId);
+
+            if (isReservation ? slot.isReserved() : slot.isOccupied()) {
+                result.put(lockerId, isReservation ? slot.getOrderId() : slot.getPassword());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * What a locker has, instances are immutable (a change is a new slot, see {@link #next(String, String)}).
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Slot {
+        private static final Slot FREE = new Slot(0, null, null);
+
+        private final long version;
+
+        // Null if the locker is free.
+        private final String password;
+
+        // Only set if the locker is reserved for an order.
+        private final String orderId;
+
+        public boolean isOccupied() {
+            return password != null;
+        }
+
+        public boolean isReserved() {
+            return orderId != null;
+        }
+
+        /**
+         * @param password null to free the locker.
+         * @param orderId null unless the locker is reserved.
+         */
+        public Slot next(String password, String orderId) {
+            return new Slot(version + 1, password, orderId);
+        }
+    }
+}
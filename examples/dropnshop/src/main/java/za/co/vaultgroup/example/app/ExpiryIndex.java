@@ -0,0 +1,79 @@
+package za.co.vaultgroup.example.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Expiry deadlines of stored parcels ordered by time, so finding the due ones takes O(log n) per parcel
+ * instead of scanning every locker.
+ *
+ * Cancelled or rescheduled deadlines are not removed from the heap (that would take O(n)),
+ * they are just skipped when they reach the top. Not thread-safe, guarded by {@link Vault}.
+ */
+class ExpiryIndex {
+    private final PriorityQueue<Deadline> heap = new PriorityQueue<>();
+
+    // Key is a lockerId, value is the only deadline (epoch millis) that is still valid for it.
+    private final Map<Integer, Long> deadlines = new HashMap<>();
+
+    void schedule(int lockerId, long deadline) {
+        deadlines.put(lockerId, deadline);
+        heap.add(new Deadline(lockerId, deadline));
+    }
+
+    void cancel(int lockerId) {
+        deadlines.remove(lockerId);
+    }
+
+    /**
+     * @return a copy of all the valid deadlines, key is a lockerId.
+     */
+    Map<Integer, Long> getDeadlines() {
+        return new HashMap<>(deadlines);
+    }
+
+    /**
+     * Removes all the deadlines that are due.
+     *
+     * @return lockerIds which deadlines are due.
+     */
+    List<Integer> pollDue(long now) {
+        List<Integer> lockerIds = new ArrayList<>();
+
+        while (!heap.isEmpty() && heap.peek().deadline <= now) {
+            Deadline deadline = heap.poll();
+            Long validDeadline = deadlines.get(deadline.lockerId);
+
+            if (validDeadline != null && validDeadline == deadline.deadline) {
+                deadlines.remove(deadline.lockerId);
+                lockerIds.add(deadline.lockerId);
+            }
+        }
+
+        // Don't let stale entries pile up if parcels are mostly picked up in time.
+        if (heap.size() > 2 * deadlines.size() + 64) {
+            heap.clear();
+            deadlines.forEach((lockerId, deadline) -> heap.add(new Deadline(lockerId, deadline)));
+        }
+
+        return lockerIds;
+    }
+
+    private static class Deadline implements Comparable<Deadline> {
+        private final int lockerId;
+        private final long deadline;
+
+        private Deadline(int lockerId, long deadline) {
+            this.lockerId = lockerId;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Deadline other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+}
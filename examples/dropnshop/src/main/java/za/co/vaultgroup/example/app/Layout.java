@@ -0,0 +1,129 @@
+package za.co.vaultgroup.example.app;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import za.co.vaultgroup.example.config.Page;
+import za.co.vaultgroup.example.config.Tunables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns {@link Page} messages into ready-to-display frames (see {@link Screen#show(Page, Object...)}).
+ * Formatting, splitting, wrapping and centering is only done once per distinct page content:
+ * static pages are laid out up front and parameterised ones are kept in a bounded LRU cache.
+ * Page texts are taken from a single {@link Tunables} snapshot, a new layout is needed once it changes.
+ */
+class Layout {
+    // Parameterised pages mostly differ by a locker number, so that's plenty for a single vault.
+    private static final int MAX_CACHED_FRAMES = 64;
+
+    private final int columns;
+    private final int rows;
+    private final String emptyLine;
+    private final Tunables tunables;
+
+    // Pages that don't have any format arguments never change, so they're laid out once.
+    private final Map<Page, Frame> staticFrames = new EnumMap<>(Page.class);
+
+    // Key is a page and its format arguments.
+    private final Map<Pair<Page, List<Object>>, Frame> dynamicFrames = new LRUMap<>(MAX_CACHED_FRAMES);
+
+    Layout(int columns, int rows, Tunables tunables) {
+        this.columns = columns;
+        this.rows = rows;
+        this.emptyLine = StringUtils.repeat(' ', columns);
+        this.tunables = tunables;
+
+        for (Page page : Page.values()) {
+            if (isStatic(page)) {
+                staticFrames.put(page, toFrame(tunables.getMessage(page)));
+            }
+        }
+    }
+
+    Tunables getTunables() {
+        return tunables;
+    }
+
+    Frame get(Page page, Object... args) {
+        Frame frame = staticFrames.get(page);
+
+        if (frame == null) {
+            Pair<Page, List<Object>> key = Pair.of(page, Arrays.asList(args));
+            frame = dynamicFrames.get(key);
+
+            if (frame == null) {
+                frame = toFrame(String.format(tunables.getMessage(page), args));
+                dynamicFrames.put(key, frame);
+            }
+        }
+
+        return frame;
+    }
+
+    private boolean isStatic(Page page) {
+        return tunables.getMessage(page).indexOf('%') < 0;
+    }
+
+    private Frame toFrame(String message) {
+        List<String> lines = toLines(message);
+        List<String> frameRows = new ArrayList<>(rows);
+
+        for (int row = 0; row < rows; row++) {
+            if (row < lines.size() && StringUtils.isNotBlank(lines.get(row))) {
+                frameRows.add(StringUtils.center(lines.get(row).trim(), columns));
+            } else {
+                frameRows.add(emptyLine);
+            }
+        }
+
+        return new Frame(Collections.unmodifiableList(frameRows), lines.size());
+    }
+
+    private List<String> toLines(String message) {
+        List<String> lines = new ArrayList<>();
+
+        for (String line : message.split("\n")) {
+            while (line.length() > columns) {
+                lines.add(line.substring(0, columns));
+                line = line.substring(columns);
+            }
+            lines.add(line);
+        }
+
+        if (lines.size() > rows) {
+            return lines.subList(0, rows);
+        }
+
+        return lines;
+    }
+
+    /**
+     * An immutable, fully padded content of the whole screen.
+     */
+    static class Frame {
+        private final List<String> rows;
+
+        // How many rows are occupied by the page's text, the next one is used to "echo" an input.
+        private final int lineCount;
+
+        private Frame(List<String> rows, int lineCount) {
+            this.rows = rows;
+            this.lineCount = lineCount;
+        }
+
+        String getRow(int row) {
+            return rows.get(row);
+        }
+
+        int getLineCount() {
+            return lineCount;
+        }
+    }
+}
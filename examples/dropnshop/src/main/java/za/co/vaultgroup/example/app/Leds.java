@@ -0,0 +1,78 @@
+package za.co.vaultgroup.example.app;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.Capabilities;
+import za.co.vaultgroup.example.Capability;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sets locker LED colours (see {@link za.co.vaultgroup.example.config.Led}) asynchronously.
+ *
+ * Changes made within a short window are pushed as a single batch, only the latest colour of every locker is sent
+ * and only if it differs from what the LED already shows.
+ * Nothing is sent at all once a device turns out not to support LEDs (see {@link Capability#SET_LED}).
+ */
+@Slf4j
+public class Leds {
+    private static final long BATCH_WINDOW_MILLIS = 100;
+
+    private final Api api;
+    private final Capabilities capabilities;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "leds");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Key is a lockerId, value is a colour to set.
+    private Map<Integer, Integer> pending = new HashMap<>();
+
+    // Key is a lockerId, value is the last colour set successfully. Only accessed from the executor's thread.
+    private final Map<Integer, Integer> shown = new HashMap<>();
+
+    public Leds(Api api, Capabilities capabilities) {
+        this.api = api;
+        this.capabilities = capabilities;
+    }
+
+    public synchronized void set(int lockerId, int color) {
+        if (!capabilities.has(Capability.SET_LED)) {
+            return;
+        }
+
+        if (pending.isEmpty()) {
+            executor.schedule(this::flush, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        pending.put(lockerId, color);
+    }
+
+    private void flush() {
+        Map<Integer, Integer> batch;
+
+        synchronized (this) {
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+            int lockerId = entry.getKey();
+            int color = entry.getValue();
+
+            if (!Integer.valueOf(color).equals(shown.get(lockerId))) {
+                api.setLed(lockerId, color).whenComplete((isSuccessful, e) -> {
+                    if (e == null && isSuccessful) {
+                        executor.execute(() -> shown.put(lockerId, color));
+                    } else if (Api.isUnimplemented(e)) {
+                        capabilities.reportUnimplemented(Capability.SET_LED);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -1,26 +1,37 @@
 package za.co.vaultgroup.example.app;
 
 import org.apache.commons.lang3.StringUtils;
-import za.co.vaultgroup.example.Api;
 import za.co.vaultgroup.example.config.Page;
+import za.co.vaultgroup.example.config.Tunables;
+import za.co.vaultgroup.example.display.Display;
+import za.co.vaultgroup.example.display.FrameSink;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class Screen {
-    // It's an actual resolution of LCD screen: 20x4 characters.
-    public static final int CHARACTERS_PER_LINE = 20; // How many characters per line we have.
-    public static final int NUMBER_OF_LINES = 4; // How many lines we have.
+    // A display we actually render to, it also defines screen dimensions.
+    private final Display display;
 
-    // Whitespace character obviously represents blank character position.
-    private static final String EMPTY_LINE = StringUtils.repeat(' ', CHARACTERS_PER_LINE);
+    // Secondary consumers of every frame we render (e.g. a mirroring tablet).
+    private final List<FrameSink> sinks;
+
+    // How many characters per line we have.
+    private final int charactersPerLine;
 
-    // We use API to communicate with the actual hardware.
-    private final Api api;
+    // How many lines we have.
+    private final int numberOfLines;
+
+    // Whitespace character obviously represents blank character position.
+    private final String emptyLine;
 
     // Initial state is a completely clear screen.
-    private final List<String> screenRows = new ArrayList<>(Collections.nCopies(NUMBER_OF_LINES, EMPTY_LINE));
+    private final List<String> screenRows;
+
+    // Pages are laid out once and then only the difference between frames is written to the screen.
+    // Replaced once page texts are changed in settings.
+    private Layout layout;
 
     // Page is an object that represents some message currently shown at the screen.
     private Page page;
@@ -33,24 +44,32 @@ public class Screen {
     // To "echo" a customer's input we always use the next free line after "static" text message.
     private int inputEchoRow;
 
-    public Screen(Api api) {
-        this.api = api;
+    public Screen(Display display, List<FrameSink> sinks) {
+        this.display = display;
+        this.sinks = sinks;
+        this.charactersPerLine = display.getColumns();
+        this.numberOfLines = display.getRows();
+        this.emptyLine = StringUtils.repeat(' ', charactersPerLine);
+        this.screenRows = new ArrayList<>(Collections.nCopies(numberOfLines, emptyLine));
+        this.layout = new Layout(charactersPerLine, numberOfLines, Tunables.get());
     }
 
     public void show(Page page, Object ...args) {
         this.page = page;
 
-        List<String> lines = getLines(page, args);
+        // Settings have been reloaded.
+        if (layout.getTunables() != Tunables.get()) {
+            layout = new Layout(charactersPerLine, numberOfLines, Tunables.get());
+        }
 
-        for (int row = 0; row < NUMBER_OF_LINES; row++) {
-            if (row < lines.size()) {
-                writeLine(row, true, lines.get(row));
-            } else {
-                writeLine(row, false, EMPTY_LINE);
-            }
+        Layout.Frame frame = layout.get(page, args);
+
+        for (int row = 0; row < numberOfLines; row++) {
+            writeRow(row, frame.getRow(row));
         }
 
-        inputEchoRow = lines.size();
+        inputEchoRow = frame.getLineCount();
+        publish();
     }
 
     public boolean is(Page page) {
@@ -60,40 +79,42 @@ public class Screen {
     public void setInputEcho(String text) {
         if (page != null) {
             // Just trim what doesn't fit the screen line.
-            if (text.length() > CHARACTERS_PER_LINE) {
-                text = text.substring(0, CHARACTERS_PER_LINE);
+            if (text.length() > charactersPerLine) {
+                text = text.substring(0, charactersPerLine);
             }
 
             inputEcho = text;
             writeLine(inputEchoRow, true, inputEcho);
+            publish();
         }
     }
 
     public void clear() {
         page = null;
-        Collections.fill(screenRows, EMPTY_LINE);
+        Collections.fill(screenRows, emptyLine);
         inputEchoRow = 0;
         inputEcho = "";
-        api.clearScreen();
+        display.clear();
+        publish();
     }
 
     private void writeLine(int row, boolean isCentered, String line) {
         if (StringUtils.isBlank(line)) {
-            writeRow(row, EMPTY_LINE);
+            writeRow(row, emptyLine);
         } else if (isCentered) {
-            writeRow(row, StringUtils.center(line.trim(), CHARACTERS_PER_LINE));
+            writeRow(row, StringUtils.center(line.trim(), charactersPerLine));
         } else {
-            writeRow(row, StringUtils.rightPad(line, CHARACTERS_PER_LINE));
+            writeRow(row, StringUtils.rightPad(line, charactersPerLine));
         }
     }
 
     private void writeRow(int row, String text) {
-        if (row < 0 || row >= NUMBER_OF_LINES) {
+        if (row < 0 || row >= numberOfLines) {
             throw new IllegalArgumentException("An attempt to write LCD row #" + row);
         }
 
-        if (text.length() != CHARACTERS_PER_LINE) {
-            throw new IllegalArgumentException("An attempt to write " + text.length() + " character(s) instead of " + CHARACTERS_PER_LINE + " to LCD row");
+        if (text.length() != charactersPerLine) {
+            throw new IllegalArgumentException("An attempt to write " + text.length() + " character(s) instead of " + charactersPerLine + " to LCD row");
         }
 
         // Don't waste time if text is already displayed.
@@ -103,40 +124,33 @@ public class Screen {
             int refreshFirstPosition = -1;
             int refreshLastPosition = -1;
 
-            // An LCD screen is rather a slow device, so it's better to make sure
-            // we only rewrite characters that have really changes.
-            for (int i = 0; i < CHARACTERS_PER_LINE; i++) {
+            // A display is rather a slow device, so it's better to make sure we only rewrite characters that have really changed.
+            // Changed characters are grouped into spans, two spans are only written separately when the gap of unchanged
+            // characters between them costs more than an extra write call. Every gap is decided on its own,
+            // so that gives the minimum number of bytes sent overall.
+            for (int i = 0; i < charactersPerLine; i++) {
                 if (text.charAt(i) != previousLineText.charAt(i)) {
                     if (refreshFirstPosition < 0) {
                         refreshFirstPosition = i;
+                    } else if (i - refreshLastPosition - 1 > display.getWriteOverhead()) {
+                        display.write(row, refreshFirstPosition, text.substring(refreshFirstPosition, refreshLastPosition + 1));
+                        refreshFirstPosition = i;
                     }
                     refreshLastPosition = i;
                 }
             }
 
-            api.writeScreen(row, refreshFirstPosition, text.substring(refreshFirstPosition, refreshLastPosition + 1));
+            display.write(row, refreshFirstPosition, text.substring(refreshFirstPosition, refreshLastPosition + 1));
         }
     }
 
-    private List<String> getLines(Page page, Object ...args) {
-        return toLines(String.format(page.getMessage(), args));
-    }
-
-    private List<String> toLines(String message) {
-        List<String> lines = new ArrayList<>();
+    private void publish() {
+        if (!sinks.isEmpty()) {
+            List<String> rows = Collections.unmodifiableList(new ArrayList<>(screenRows));
 
-        for (String line : message.split("\n")) {
-            while (line.length() > CHARACTERS_PER_LINE) {
-                lines.add(line.substring(0, CHARACTERS_PER_LINE));
-                line = line.substring(CHARACTERS_PER_LINE);
+            for (FrameSink sink : sinks) {
+                sink.accept(rows);
             }
-            lines.add(line);
         }
-
-        if (lines.size() > NUMBER_OF_LINES) {
-            return lines.subList(0, NUMBER_OF_LINES);
-        }
-
-        return lines;
     }
 }
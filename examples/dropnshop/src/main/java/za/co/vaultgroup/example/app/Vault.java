@@ -1,32 +1,74 @@
 package za.co.vaultgroup.example.app;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.Capabilities;
+import za.co.vaultgroup.example.analytics.AnalyticsStore;
+import za.co.vaultgroup.example.analytics.TransactionType;
+import za.co.vaultgroup.example.audit.AuditEvent;
+import za.co.vaultgroup.example.audit.AuditLog;
+import za.co.vaultgroup.example.backoffice.BackofficeServer;
+import za.co.vaultgroup.example.backoffice.BackofficeService;
+import za.co.vaultgroup.example.command.CommandQueue;
+import za.co.vaultgroup.example.command.SlaveBreakers;
 import za.co.vaultgroup.example.config.Buzz;
 import za.co.vaultgroup.example.config.Config;
+import za.co.vaultgroup.example.config.Led;
 import za.co.vaultgroup.example.config.LockerState;
 import za.co.vaultgroup.example.config.Page;
 import za.co.vaultgroup.example.config.Settings;
+import za.co.vaultgroup.example.config.Settings.BackofficeSettings;
+import za.co.vaultgroup.example.config.Settings.DisplaySettings;
+import za.co.vaultgroup.example.config.Settings.ExpirySettings;
+import za.co.vaultgroup.example.config.Settings.RecorderSettings;
+import za.co.vaultgroup.example.config.Settings.MirrorSettings;
 import za.co.vaultgroup.example.config.Settings.NotificationSettings;
 import za.co.vaultgroup.example.config.Timing;
+import za.co.vaultgroup.example.display.FrameSink;
+import za.co.vaultgroup.example.display.LcdDisplay;
+import za.co.vaultgroup.example.display.SocketFrameSink;
+import za.co.vaultgroup.example.config.Settings.CourierSettings;
+import za.co.vaultgroup.example.config.Settings.MultistateSettings;
+import za.co.vaultgroup.example.config.Settings.MqttSettings;
+import za.co.vaultgroup.example.notification.EventSource;
+import za.co.vaultgroup.example.notification.MqttEventSource;
+import za.co.vaultgroup.example.notification.EventDispatcher;
+import za.co.vaultgroup.example.notification.EventRecorder;
 import za.co.vaultgroup.example.notification.NotificationServer;
 import za.co.vaultgroup.example.notification.event.Event;
 import za.co.vaultgroup.example.notification.event.EventType;
 import za.co.vaultgroup.example.notification.event.KeyPressedEvent;
 import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+import za.co.vaultgroup.example.publisher.BusinessEvent;
+import za.co.vaultgroup.example.publisher.EventPublisher;
+import za.co.vaultgroup.example.sms.SmsOutbox;
+import za.co.vaultgroup.example.storage.Journal;
+import za.co.vaultgroup.example.storage.SnapshotFile;
+import za.co.vaultgroup.example.time.Scheduler;
+import za.co.vaultgroup.example.time.SystemScheduler;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 public class Vault {
@@ -59,74 +101,361 @@ public class Vault {
      */
     private static final char PICKUP_CHOICE_CODE = '2';
 
+    /**
+     * See {@link Page#STANDBY_COURIER}.
+     */
+    private static final char COURIER_CHOICE_CODE = '3';
+
+    /**
+     * How many initialization RPC calls can run at once.
+     */
+    private static final int STARTUP_THREADS = 4;
+
+    /**
+     * Initialization retries start with this delay and double every time, see {@link Timing#REINITIALIZATION}.
+     */
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 250;
+
+    /**
+     * How often expired parcels are looked for (see expireParcels() method).
+     */
+    private static final long EXPIRY_SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * How often session state is saved (only if it's changed), see saveSnapshot() method.
+     */
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 250;
+
+    /**
+     * Enough for thousands of lockers.
+     */
+    private static final int SNAPSHOT_MAX_SIZE = 256 * 1024;
+
     private final Settings settings;
     private final Api api;
+    private final Capabilities capabilities = new Capabilities();
     private final Screen screen;
+    private final CommandQueue commands;
+    private final SlaveBreakers breakers;
+    private final Buzzer buzzer;
+    private final AuditLog audit;
+    private final SmsOutbox sms;
+    private final CourierSettings courierSettings;
+    private final Page standbyPage;
+    // Picks dropoff lockers and generates pickup codes.
+    private final Random random;
+    private final Leds leds;
+    private final MultistateSettings multistateSettings;
+    private final EventPublisher publisher;
+    private final AnalyticsStore analytics;
+    private final ExpirySettings expirySettings;
+    private final ExpiryIndex expiry = new ExpiryIndex();
     private final Config config = new Config();
+
+    // How many threads handle door/lock events (see EventDispatcher), pending commands are split the same way.
+    private final int eventShards;
     private VaultState state;
     private Input input;
-    private Integer dropoffLockerId;
-    private Integer pickupLockerId;
+    // Volatile as they're also read by event dispatcher's shard threads, see isSessionLocker() method.
+    private volatile Integer dropoffLockerId;
+    private volatile Integer pickupLockerId;
+
+    // A recipient of a pickup code when a dropoff is made by a courier.
+    private String courierCellNum;
+
+    // Parcels stored and lockers reserved remotely (see BackofficeService), it's changed without holding the vault's lock too.
+    private final DropoffStore dropoffs = new DropoffStore();
+
+    // Lockers whose door sensor is flapping, they're not offered for dropoffs (see EventDispatcher).
+    // Updated by event dispatcher's shard threads.
+    private final Set<Integer> flappingLockers = ConcurrentHashMap.newKeySet();
 
-    // Key is a lockerId.
-    // Null value means a locker is free to use, otherwise value is a password.
-    private final Map<Integer, String> dropoffs = new HashMap<>();
+    // Used to run initialization RPC calls concurrently.
+    private final ExecutorService startupExecutor = Executors.newFixedThreadPool(STARTUP_THREADS, r -> {
+        Thread thread = new Thread(r, "startup");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private Timer timer = new Timer();
+    // Key is a lockerId, value is a session expiration task.
+    // Only used in multistate mode, see startRepeatAccess() method.
+    private final Map<Integer, Scheduler.Task> repeatAccessSessions = new HashMap<>();
 
-    public Vault(Settings settings) {
+    // All the timeouts, retries and periodic tasks (except for background components that have their own threads).
+    private final Scheduler scheduler;
+
+    // Only set when notifications are received via MQTT.
+    private MqttEventSource mqttEventSource;
+
+    // Only set when notifications are received via UDP.
+    private NotificationServer notificationServer;
+
+    // Tasks scheduled by defer() method that are not executed yet.
+    private final List<Deferred> deferredTasks = new ArrayList<>();
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    // When the task scheduled by defer() method is due (epoch millis), 0 if there's none.
+    private long deferredUntil = 0;
+
+    // Session state is saved here, so a transaction interrupted by a crash can be finished after restart.
+    private final SnapshotFile snapshotFile;
+
+    // Only accessed by the scheduler's thread.
+    private VaultSnapshot lastSnapshot;
+
+    // A snapshot found at startup, only kept until a pending transaction is resumed (see resumeTransaction() method).
+    private VaultSnapshot recoveredSnapshot;
+
+    public Vault(Settings settings) throws IOException {
+        this(settings, new Api(settings.getGrpcServer(), settings.getTlsSettings()));
+    }
+
+    /**
+     * Lets tools run a vault against any device (e.g. a stub, see {@link za.co.vaultgroup.example.tools.ReplayDriver}).
+     */
+    public Vault(Settings settings, Api api) throws IOException {
+        this(settings, api, new SystemScheduler("vault"));
+    }
+
+    /**
+     * Lets tools run a vault in simulated time (see {@link za.co.vaultgroup.example.tools.SoakTest}).
+     */
+    public Vault(Settings settings, Api api, Scheduler scheduler) throws IOException {
+        this(settings, api, scheduler, new SecureRandom());
+    }
+
+    /**
+     * Lets tools make a run repeatable with a seeded random (see {@link za.co.vaultgroup.example.tools.ReplayDriver}),
+     * pickup codes are only unpredictable with a {@link SecureRandom} though.
+     */
+    public Vault(Settings settings, Api api, Scheduler scheduler, Random random) throws IOException {
         this.settings = Objects.requireNonNull(settings);
-        this.api = new Api(settings.getGrpcServer());
-        this.screen = new Screen(api);
+        this.random = Objects.requireNonNull(random);
+        this.api = Objects.requireNonNull(api);
+        this.scheduler = Objects.requireNonNull(scheduler);
+        this.buzzer = new Buzzer(api, scheduler);
+        this.courierSettings = settings.getCourierSettings();
+        this.multistateSettings = settings.getMultistateSettings();
+        this.expirySettings = settings.getExpirySettings();
+        this.leds = new Leds(api, capabilities);
+        this.publisher = new EventPublisher(api, capabilities, settings.getPublisherSettings());
+        this.analytics = settings.getAnalyticsSettings().isEnabled() ? new AnalyticsStore(Paths.get(settings.getAnalyticsSettings().getDirectory()), config, scheduler::currentTimeMillis) : null;
+        this.standbyPage = courierSettings.isEnabled() ? Page.STANDBY_COURIER : Page.STANDBY;
+        this.sms = new SmsOutbox(api, new Journal(Paths.get(settings.getSmsSettings().getOutbox())), new SystemScheduler("sms-outbox"), settings.getSmsSettings().getCapacity(), settings.getSmsSettings().getRatePerMinute());
+        this.audit = new AuditLog(api, Paths.get(settings.getAuditSettings().getSpool()), settings.getAuditSettings().getMaxInFlight());
+        this.breakers = new SlaveBreakers(settings.getBreakerSettings(), config::slaveOf, this::isSlaveResponding, this::onSlaveAvailabilityChanged);
+        int eventShards = settings.getNotificationSettings().getEventShards();
+        this.eventShards = eventShards > 0 ? eventShards : Runtime.getRuntime().availableProcessors();
+        this.commands = new CommandQueue(api, new Journal(Paths.get(settings.getCommandSettings().getJournal())), breakers, this.eventShards);
+        this.snapshotFile = new SnapshotFile(Paths.get(settings.getSnapshotSettings().getPath()), SNAPSHOT_MAX_SIZE);
+        this.screen = new Screen(new LcdDisplay(api, settings.getDisplaySettings()), createFrameSinks(settings.getDisplaySettings()));
+    }
+
+    private static List<FrameSink> createFrameSinks(DisplaySettings displaySettings) {
+        List<FrameSink> sinks = new ArrayList<>();
+        MirrorSettings mirrorSettings = displaySettings.getMirrorSettings();
+
+        if (mirrorSettings != null) {
+            sinks.add(new SocketFrameSink(mirrorSettings.getHost(), mirrorSettings.getPort()));
+        }
+
+        return sinks;
+    }
+
+    /**
+     * Initializes the vault without an event source, so events are only passed via {@link #handle(Event)}.
+     * Used by tools, see {@link za.co.vaultgroup.example.tools.ReplayDriver}.
+     */
+    public void start() {
+        initialize(0);
+    }
+
+    /**
+     * @return whether the vault is ready for customers (it's initialized and a greeting is over).
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
     }
 
     public void run() throws IOException {
-        initialize();
+        // Run event source in main thread, incoming notifications are passed to the dispatcher: door/lock events are
+        // handled by per-slave shards, keypad (and the door events a session is waiting for) are handled one at a time in a session lane.
+        // Anything that needs async execution (like handling of timeouts) is managed by scheduler.
+        EventDispatcher dispatcher = new EventDispatcher(eventShards, shard -> commands::confirm, this::handleInSession, this::isSessionLocker,
+                settings.getDebounceSettings(), this::onFlappingChanged);
+        EventSource eventSource = createEventSource(dispatcher);
+
+        // Start listening right away, so pending commands are confirmed while we're waiting for the hardware.
+        // Keypad input received before initialization is finished is ignored (see handleInSession() method).
+        eventSource.bind();
+
+        if (settings.getBackofficeSettings().isEnabled()) {
+            startBackoffice(settings.getBackofficeSettings());
+        }
+
+        initialize(0);
+        eventSource.run();
+    }
+
+    /**
+     * Remote calls answer that lockers are unavailable until initialization is finished.
+     */
+    private void startBackoffice(BackofficeSettings backofficeSettings) throws IOException {
+        BackofficeServer server = new BackofficeServer(backofficeSettings);
+
+        server.start(new BackofficeService(dropoffs, this::isAllocatable, this::isSessionLocker, new BackofficeService.Listener() {
+            @Override
+            public void onReserved(int lockerId, String orderId) {
+                audit.record(AuditEvent.LOCKER_RESERVED, "Locker #" + lockerId + " reserved for order " + orderId);
+            }
+
+            @Override
+            public void onReleased(int lockerId, String orderId) {
+                audit.record(AuditEvent.LOCKER_RELEASED, "Locker #" + lockerId + " released from order " + orderId);
+            }
+        }, server.getExecutor(), backofficeSettings.getMaxWatchers()));
+    }
+
+    private EventSource createEventSource(Consumer<Event> handler) {
+        MqttSettings mqttSettings = settings.getMqttSettings();
+
+        if (mqttSettings.isEnabled()) {
+            mqttEventSource = new MqttEventSource(mqttSettings, api, handler);
+            return mqttEventSource;
+        }
 
-        // Run notification server in main thread so all the incoming notifications are handled synchronously one at a time.
-        // Anything that needs async execution (like handling of timeouts) is managed by timer.
         NotificationSettings notificationSettings = settings.getNotificationSettings();
-        NotificationServer server = new NotificationServer(notificationSettings.getPort(), notificationSettings.isListenRemote(), this::handle);
-        server.run();
+        notificationServer = new NotificationServer(notificationSettings.getPort(), notificationSettings.isListenRemote(), handler);
+
+        RecorderSettings recorderSettings = settings.getRecorderSettings();
+
+        if (recorderSettings.isEnabled()) {
+            try {
+                notificationServer.setRecorder(new EventRecorder(Paths.get(recorderSettings.getPath()), recorderSettings.getMaxFiles()));
+            } catch (IOException e) {
+                log.error("Failed to start recording notifications", e);
+            }
+        }
+
+        return notificationServer;
+    }
+
+    /**
+     * Applies reloaded settings (see {@link za.co.vaultgroup.example.config.SettingsWatcher}).
+     * Timings, buzzer sounds and pages are picked up automatically (see {@link za.co.vaultgroup.example.config.Tunables}),
+     * the rest (except for a notification port) only takes effect after restart.
+     */
+    public void onSettingsChanged(Settings newSettings) {
+        NotificationSettings notificationSettings = newSettings.getNotificationSettings();
+
+        if (notificationServer != null) {
+            try {
+                notificationServer.rebind(notificationSettings.getPort(), notificationSettings.isListenRemote());
+            } catch (IOException e) {
+                log.error("Failed to listen udp:{} for notifications", notificationSettings.getPort(), e);
+            }
+        }
     }
 
-    private void initialize() {
+    private void initialize(int attempt) {
         log.info("Initializing...");
-        log.info("API version is {}", api.getVersion());
 
-        // Get vault dimensions from API.
-        Api.LockerMap lockerMap = api.getLockerMap();
+        // These calls don't depend on each other, so there's no reason to wait for them one by one.
+        CompletableFuture<String> version = CompletableFuture.supplyAsync(api::getVersion, startupExecutor);
+        CompletableFuture<String> protocolVersion = CompletableFuture.supplyAsync(api::getProtocolVersion, startupExecutor);
+        CompletableFuture<Api.LockerMap> lockerMap = CompletableFuture.supplyAsync(api::getLockerMap, startupExecutor);
+        CompletableFuture<List<LockerState>> states = CompletableFuture.supplyAsync(api::getLockerStates, startupExecutor);
+
+        // Make sure to clear the screen just in case (there could be some leftover text if application restarted without hardware reboot).
+        CompletableFuture<Void> greeting = CompletableFuture.runAsync(() -> {
+            screen.clear();
+            screen.show(Page.GREETING, APPLICATION_VERSION);
+        }, startupExecutor);
+
+        CompletableFuture.allOf(version, protocolVersion, lockerMap, states, greeting).whenComplete((result, e) -> {
+            if (e == null) {
+                capabilities.initialize(protocolVersion.join());
+                onInitialized(version.join(), lockerMap.join(), states.join());
+            } else {
+                // Most likely the hardware is still booting (e.g. after a power cut), try again a bit later.
+                long delay = getRetryDelay(attempt);
+                log.error("Initialization failed, trying again in {} ms", delay, e);
+                scheduler.schedule(() -> initialize(attempt + 1), delay);
+            }
+        });
+    }
 
+    private synchronized void onInitialized(String version, Api.LockerMap lockerMap, List<LockerState> states) {
+        log.info("API version is {}", version);
         log.info("Vault has {} locker(s), dimensions are {}", lockerMap.getCount(), StringUtils.join(lockerMap.getMapping(), '-'));
 
         config.setLockersCount(lockerMap.getCount());
         config.setMapping(lockerMap.getMapping());
+        api.prepareRequests(lockerMap.getCount());
+        dropoffs.initialize(lockerMap.getCount());
+
+        // Parcels stored before restart (a pending transaction is resumed once locker states are known).
+        restoreSnapshot();
+
+        // Finish whatever lock/unlock commands were left unconfirmed before restart.
+        commands.start();
+
+        // Same for SMS messages that haven't been sent.
+        sms.start();
+
+        // Messages are built for every locker we have.
+        publisher.initialize(lockerMap.getMapping());
+
+        if (expirySettings.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(() -> {
+                synchronized (Vault.this) {
+                    expireParcels();
+                }
+            }, EXPIRY_SWEEP_INTERVAL_MILLIS, EXPIRY_SWEEP_INTERVAL_MILLIS);
+        }
+
+        // Now we know whether the hardware is able to publish notifications to MQTT broker.
+        if (mqttEventSource != null) {
+            mqttEventSource.register(capabilities);
+        }
 
         // We always start with greeting message and never get back to it until vault reboot.
         state = VaultState.GREETING;
 
-        // Everything seems to go well so far, let's indicate that on an LCD screen.
-        // Make sure to clear the screen just in case (there could be some leftover text if application restarted without hardware reboot).
-        screen.clear();
-        screen.show(Page.GREETING, APPLICATION_VERSION);
+        log.info("Initialized in {} ms since JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
 
         // Almost there, now we wait for the hardware to be initialized if needed.
         // Then we find out which lockers are locked and which aren't.
-        initializeLockerStates(true);
+        initializeLockerStates(states, 0);
     }
 
-    private void initializeLockerStates(boolean isFirstTry) {
-        List<LockerState> states = api.getLockerStates();
-
+    private void initializeLockerStates(List<LockerState> states, int attempt) {
         if (states == null) {
             // Something is not initialized, wait for some time and try again.
-            log.error("Lockers are not initialized yet");
+            long delay = getRetryDelay(attempt);
+            log.error("Lockers are not initialized yet, trying again in {} ms", delay);
 
             // Try again later until initialization is finally successful.
-            defer(Timing.REINITIALIZATION, () -> initializeLockerStates(false));
+            scheduler.schedule(() -> {
+                List<LockerState> newStates = null;
+
+                try {
+                    newStates = api.getLockerStates();
+                } catch (Exception e) {
+                    log.error("Failed to get locker states", e);
+                }
+
+                synchronized (this) {
+                    initializeLockerStates(newStates, attempt + 1);
+                }
+            }, delay);
         } else {
             log.info("Lockers are initialized");
 
+            // Nothing else to initialize.
+            startupExecutor.shutdown();
+
             Runnable onInitializationFinished = () -> {
                 // Iterate over all the lockers available.
                 long unlockedCount = states.stream()
@@ -136,14 +465,23 @@ public class Vault {
                 log.info("Unlocked lockers count: {}", unlockedCount);
 
                 // Now we are waiting for customers, it's a standby state.
-                screen.show(Page.STANDBY);
-                api.buzz(Buzz.EVENT);
-                state = VaultState.STANDBY;
+                // Unless there's a transaction that was interrupted by a crash.
+                if (!resumeTransaction(states)) {
+                    screen.show(standbyPage);
+                    buzzer.buzz(Buzz.EVENT);
+                    state = VaultState.STANDBY;
+                }
+
+                // From now on session state is saved, so it can be recovered after a crash.
+                scheduler.scheduleWithFixedDelay(this::saveSnapshot, SNAPSHOT_INTERVAL_MILLIS, SNAPSHOT_INTERVAL_MILLIS);
+
+                log.info("Ready for customers in {} ms since JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
+                ready.countDown();
             };
 
             // If initialization is successful at the first time (without extra attempts),
             // we use a timeout to give people few seconds to actually read that greeting message.
-            if (isFirstTry) {
+            if (attempt == 0) {
                 defer(Timing.GREETING, onInitializationFinished);
             } else {
                 onInitializationFinished.run();
@@ -151,15 +489,234 @@ public class Vault {
         }
     }
 
-    private synchronized void handle(Event event) {
+    private void restoreSnapshot() {
+        VaultSnapshot snapshot = null;
+
+        try {
+            byte[] payload = snapshotFile.load();
+
+            if (payload != null) {
+                snapshot = VaultSnapshot.decode(payload);
+            }
+        } catch (Exception e) {
+            log.error("Failed to restore session state", e);
+        }
+
+        if (snapshot == null) {
+            return;
+        }
+
+        log.info("Restoring session state: {}, {} parcel(s) stored", snapshot.getState(), snapshot.getDropoffs().size());
+
+        for (Map.Entry<Integer, String> entry : snapshot.getDropoffs().entrySet()) {
+            if (validateLockerId(entry.getKey())) {
+                String orderId = snapshot.getReservations().get(entry.getKey());
+
+                if (orderId == null) {
+                    dropoffs.put(entry.getKey(), entry.getValue());
+                } else {
+                    dropoffs.reserve(entry.getKey(), entry.getValue(), orderId);
+                }
+            }
+        }
+
+        if (expirySettings.isEnabled()) {
+            for (Map.Entry<Integer, Long> entry : snapshot.getExpiryDeadlines().entrySet()) {
+                if (dropoffs.isOccupied(entry.getKey())) {
+                    expiry.schedule(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        // A customer that had a repeat access session has to start a new one.
+        for (int lockerId : snapshot.getRepeatAccessLockers()) {
+            if (validateLockerId(lockerId)) {
+                commands.setLockerState(lockerId, LockerState.LOCKED);
+                leds.set(lockerId, Led.OFF);
+            }
+        }
+
+        recoveredSnapshot = snapshot;
+    }
+
+    /**
+     * Reconciles a dropoff or a pickup that was in progress before a crash with actual locker states.
+     * A transaction that needs customer's input (e.g. password entering) is not resumed, customer just starts again.
+     *
+     * @return whether the vault is busy with the resumed transaction.
+     */
+    private boolean resumeTransaction(List<LockerState> states) {
+        VaultSnapshot snapshot = recoveredSnapshot;
+        recoveredSnapshot = null;
+
+        if (snapshot == null) {
+            return false;
+        }
+
+        long remaining = snapshot.getDeferredUntil() - scheduler.currentTimeMillis();
+
+        boolean isDropoff = snapshot.getState() == VaultState.DROPOFF_PENDING || snapshot.getState() == VaultState.DROPOFF_LOCKING;
+
+        if (isDropoff && snapshot.getDropoffLockerId() != null
+                && validateLockerId(snapshot.getDropoffLockerId()) && dropoffs.isOccupied(snapshot.getDropoffLockerId())) {
+            dropoffLockerId = snapshot.getDropoffLockerId();
+            courierCellNum = snapshot.getCourierCellNum();
+
+            if (states.get(dropoffLockerId - 1) == LockerState.LOCKED) {
+                // The locker got locked before the crash, so the dropoff is actually finished.
+                log.info("Resumed dropoff to locker #{} is finished", dropoffLockerId);
+                onParcelStored();
+                dropoffLockerId = null;
+                courierCellNum = null;
+                return false;
+            }
+
+            if (snapshot.getState() == VaultState.DROPOFF_LOCKING) {
+                // The door is closed already, the lock command is most likely still pending (see CommandQueue's journal).
+                log.info("Resumed locking of dropoff locker #{}", dropoffLockerId);
+                lockDropoffLocker();
+            } else if (remaining <= 0) {
+                onDropoffTimeout();
+            } else {
+                log.info("Resumed dropoff to locker #{}, {} ms left", dropoffLockerId, remaining);
+                commands.setLockState(dropoffLockerId, false);
+                state = VaultState.DROPOFF_PENDING;
+                screen.show(Page.DROPOFF, dropoffLockerId);
+                defer(remaining, this::onDropoffTimeout);
+            }
+
+            return true;
+        }
+
+        if (snapshot.getState() == VaultState.PICKUP_PENDING && snapshot.getPickupLockerId() != null
+                && validateLockerId(snapshot.getPickupLockerId()) && dropoffs.isOccupied(snapshot.getPickupLockerId())) {
+            pickupLockerId = snapshot.getPickupLockerId();
+
+            if (states.get(pickupLockerId - 1) == LockerState.OPEN) {
+                // The door got opened before (or during) the crash, so the pickup is actually finished.
+                log.info("Resumed pickup from locker #{} is finished", pickupLockerId);
+                onParcelCollected(pickupLockerId);
+                pickupLockerId = null;
+                return false;
+            }
+
+            if (remaining <= 0) {
+                onPickupTimeout();
+            } else {
+                log.info("Resumed pickup from locker #{}, {} ms left", pickupLockerId, remaining);
+                state = VaultState.PICKUP_PENDING;
+                screen.show(Page.PICKUP, pickupLockerId);
+                defer(remaining, this::onPickupTimeout);
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Only an immutable copy is made under the lock, encoding and writing it doesn't block event handling.
+     */
+    private void saveSnapshot() {
+        VaultSnapshot snapshot;
+
+        synchronized (this) {
+            snapshot = new VaultSnapshot(state, dropoffLockerId, pickupLockerId, courierCellNum, deferredUntil,
+                    dropoffs.getPasswords(), dropoffs.getReservations(), expiry.getDeadlines(), new HashSet<>(repeatAccessSessions.keySet()));
+        }
+
+        if (snapshot.equals(lastSnapshot)) {
+            return;
+        }
+
+        try {
+            snapshotFile.save(snapshot.encode());
+            lastSnapshot = snapshot;
+        } catch (Exception e) {
+            log.error("Failed to save session state", e);
+        }
+    }
+
+    /**
+     * Exponential backoff, but never wait longer than {@link Timing#REINITIALIZATION}.
+     */
+    private long getRetryDelay(int attempt) {
+        return Math.min(Timing.REINITIALIZATION.toMilliseconds(), INITIAL_RETRY_DELAY_MILLIS << Math.min(attempt, 16));
+    }
+
+    /**
+     * Handles any event synchronously in a calling thread (tools use it, see {@link za.co.vaultgroup.example.tools.ReplayDriver}).
+     * Events received by {@link #run()} are spread over several threads instead, see {@link EventDispatcher}.
+     */
+    public synchronized void handle(Event event) {
+        if (event instanceof LockerStateChangedEvent) {
+            commands.confirm((LockerStateChangedEvent) event);
+        }
+
+        handleInSession(event);
+    }
+
+    /**
+     * @return whether a session is waiting for a door of the locker to be opened or closed.
+     */
+    private boolean isSessionLocker(int lockerId) {
+        Integer dropoffLockerId = this.dropoffLockerId;
+        Integer pickupLockerId = this.pickupLockerId;
+
+        return (dropoffLockerId != null && dropoffLockerId == lockerId) || (pickupLockerId != null && pickupLockerId == lockerId);
+    }
+
+    private void onFlappingChanged(int lockerId, boolean isFlapping) {
+        if (isFlapping) {
+            flappingLockers.add(lockerId);
+            audit.record(AuditEvent.LOCKER_FLAPPING, "Door sensor of locker #" + lockerId + " is flapping, locker is not used for dropoffs");
+        } else {
+            flappingLockers.remove(lockerId);
+            audit.record(AuditEvent.LOCKER_FLAPPING_STOPPED, "Door sensor of locker #" + lockerId + " is quiet again, locker is used for dropoffs");
+        }
+    }
+
+    /**
+     * Probes a failing slave board, see {@link SlaveBreakers}.
+     */
+    private boolean isSlaveResponding(int slave) {
+        List<String> firmware = api.getSlaveFirmware();
+
+        if (firmware == null) {
+            // Older controllers: the board is fine once every locker reports its state again.
+            return api.getLockerStates() != null;
+        }
+
+        return slave < firmware.size() && !StringUtils.isEmpty(firmware.get(slave));
+    }
+
+    private void onSlaveAvailabilityChanged(int slave, boolean isAvailable) {
+        if (isAvailable) {
+            commands.resume();
+            audit.record(AuditEvent.SLAVE_RECOVERED, "Slave board #" + slave + " responds again, its lockers are used for dropoffs");
+        } else {
+            audit.record(AuditEvent.SLAVE_FAILED, "Slave board #" + slave + " is failing, its lockers are not used for dropoffs");
+        }
+    }
+
+    private synchronized void handleInSession(Event event) {
+        if (state == null) {
+            // Not initialized yet, there's no session a key press or a door event could belong to.
+            // Door events have already confirmed pending commands by now (see EventDispatcher), and locker states
+            // are read once initialization is finished anyway.
+            return;
+        }
+
         if (event instanceof KeyPressedEvent) {
-            System.out.println("Input: " + ((KeyPressedEvent) event).getCode());
+            log.debug("Input: {}", ((KeyPressedEvent) event).getCode());
         }
 
         switch (state) {
             case GREETING:
             case ALERT:
-                // Ignore all input while greeting or alert message is shown.
+            case DROPOFF_LOCKING:
+                // Ignore all input while greeting or alert message is shown, or a locker is being locked.
                 break;
 
             case STANDBY:
@@ -170,6 +727,10 @@ public class Vault {
                 handleInDropoffPasswordState(event);
                 break;
 
+            case COURIER_PHONE:
+                handleInCourierPhoneState(event);
+                break;
+
             case DROPOFF_PENDING:
                 handleInDropoffPendingState(event);
                 break;
@@ -200,7 +761,7 @@ public class Vault {
 
                         if (dropoffLockerId == null) {
                             // Show error message, buzz with buzzer.
-                            api.buzz(Buzz.ERROR);
+                            buzzer.buzz(Buzz.ERROR);
                             screen.show(Page.DROPOFF_NO_FREE_LOCKERS);
 
                             // Now we in an alert state.
@@ -208,11 +769,11 @@ public class Vault {
                             state = VaultState.ALERT;
                             defer(Timing.ALERT_SHORT, () -> {
                                 state = VaultState.STANDBY;
-                                screen.show(Page.STANDBY);
+                                screen.show(standbyPage);
                             });
                         } else {
                             state = VaultState.DROPOFF_PASSWORD;
-                            api.buzz(Buzz.EVENT);
+                            buzzer.buzz(Buzz.EVENT);
                             screen.show(Page.DROPOFF_PASSWORD);
 
                             // Prepare for password input.
@@ -221,10 +782,43 @@ public class Vault {
                     }
                     break;
 
+                    case COURIER_CHOICE_CODE: {
+                        if (!courierSettings.isEnabled()) {
+                            // Just indicate an unexpected input using a buzzer.
+                            buzzer.buzz(Buzz.ERROR);
+                            break;
+                        }
+
+                        // Courier requested a dropoff.
+                        dropoffLockerId = pickRandomLockerForDropoff();
+
+                        if (dropoffLockerId == null) {
+                            // Show error message, buzz with buzzer.
+                            buzzer.buzz(Buzz.ERROR);
+                            screen.show(Page.DROPOFF_NO_FREE_LOCKERS);
+
+                            // Now we in an alert state.
+                            // Wait for some time (so courier has time to read message) and get back to standby state.
+                            state = VaultState.ALERT;
+                            defer(Timing.ALERT_SHORT, () -> {
+                                state = VaultState.STANDBY;
+                                screen.show(standbyPage);
+                            });
+                        } else {
+                            state = VaultState.COURIER_PHONE;
+                            buzzer.buzz(Buzz.EVENT);
+                            screen.show(Page.COURIER_PHONE);
+
+                            // Prepare for phone number input.
+                            input = new Input(false, courierSettings.getMaxPhoneDigits());
+                        }
+                    }
+                    break;
+
                     case PICKUP_CHOICE_CODE: {
                         // Customer requested a pickup.
                         state = VaultState.PICKUP_CHOOSE_LOCKER;
-                        api.buzz(Buzz.EVENT);
+                        buzzer.buzz(Buzz.EVENT);
                         screen.show(Page.PICKUP_CHOOSE_LOCKER);
 
                         // Prepare for locker number input.
@@ -234,7 +828,7 @@ public class Vault {
 
                     default:
                         // Just indicate an unexpected input using a buzzer.
-                        api.buzz(Buzz.ERROR);
+                        buzzer.buzz(Buzz.ERROR);
                         break;
                 }
             }
@@ -243,24 +837,33 @@ public class Vault {
             case ENTER_PRESSED:
             case RESET_PRESSED:
                 // Just indicate an unexpected input using a buzzer.
-                api.buzz(Buzz.ERROR);
+                buzzer.buzz(Buzz.ERROR);
                 break;
         }
     }
 
+    /**
+     * @return whether the locker can take a parcel: it's free and not involved in a session,
+     *         and neither its door sensor nor slave board is faulty. Thread-safe (see BackofficeService).
+     */
+    private boolean isAllocatable(int lockerId) {
+        return !dropoffs.isOccupied(lockerId) && !isSessionLocker(lockerId)
+                && !flappingLockers.contains(lockerId) && breakers.isLockerAvailable(lockerId);
+    }
+
     private Integer pickRandomLockerForDropoff() {
         List<Integer> freeLockers = new ArrayList<>();
 
         // Collect all free lockers first.
         for (int lockerId = 1; lockerId < config.getLockersCount(); lockerId++) {
-            if (dropoffs.get(lockerId) == null) {
+            if (isAllocatable(lockerId)) {
                 freeLockers.add(lockerId);
             }
         }
 
         // Then pick a random one (if available) to guarantee even utilization.
         if (freeLockers.size() > 0) {
-            return freeLockers.get(RandomUtils.nextInt(0, freeLockers.size()));
+            return freeLockers.get(random.nextInt(freeLockers.size()));
         }
 
         // No free lockers available.
@@ -276,7 +879,7 @@ public class Vault {
                 if (password.length() < PASSWORD_DIGITS) {
                     // Show error message, buzz with buzzer.
                     input.clear();
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
                     screen.show(Page.DROPOFF_PASSWORD_TOO_SHORT);
 
                     // Now we in an alert state.
@@ -289,7 +892,7 @@ public class Vault {
                 } else if (isPasswordTooSimple(password)) {
                     // Show error message, buzz with buzzer.
                     input.clear();
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
                     screen.show(Page.DROPOFF_PASSWORD_TOO_SIMPLE);
 
                     // Now we in an alert state.
@@ -302,33 +905,7 @@ public class Vault {
                 } else {
                     // Success, now let's prompt a customer to put their belongings to the locker.
                     input = null;
-                    api.buzz(Buzz.EVENT);
-
-                    // Make sure locker is unlocked so a customer can actually access it.
-                    api.setLockState(dropoffLockerId, false);
-                    state = VaultState.DROPOFF_PENDING;
-                    screen.show(Page.DROPOFF, dropoffLockerId);
-
-                    // Remember password for this locker/dropoff.
-                    dropoffs.put(dropoffLockerId, password);
-
-                    defer(Timing.DROPOFF_PENDING, () -> {
-                        // Dropoff failed!
-                        dropoffs.remove(dropoffLockerId);
-                        dropoffLockerId = null;
-
-                        // Indicate explicitly that something went completely wrong.
-                        api.buzz(Buzz.ANNOYING);
-
-                        // Now we in an alert state.
-                        // Wait for longer time (so customer has time to read message for sure) and get back to STANDBY state.
-                        state = VaultState.ALERT;
-                        screen.show(Page.DROPOFF_TIMEOUT);
-                        defer(Timing.ALERT_LONG, () -> {
-                            state = VaultState.STANDBY;
-                            screen.show(Page.STANDBY);
-                        });
-                    });
+                    startDropoff(password);
                 }
             }
             break;
@@ -337,7 +914,7 @@ public class Vault {
                 // Clear input by customer's request.
                 input.clear();
                 screen.setInputEcho("");
-                api.buzz(Buzz.EVENT);
+                buzzer.buzz(Buzz.EVENT);
             }
             break;
 
@@ -348,13 +925,200 @@ public class Vault {
                     screen.setInputEcho(input.getEcho());
                 } else {
                     // Password's too long, ignore input and indicate error with buzzer.
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
+                }
+            }
+            break;
+        }
+    }
+
+    private void startDropoff(String password) {
+        // The locker could have been reserved remotely since it was picked, then another one is picked.
+        while (dropoffLockerId != null && !dropoffs.putIfFree(dropoffLockerId, password)) {
+            dropoffLockerId = pickRandomLockerForDropoff();
+        }
+
+        if (dropoffLockerId == null) {
+            courierCellNum = null;
+            buzzer.buzz(Buzz.ERROR);
+            screen.show(Page.DROPOFF_NO_FREE_LOCKERS);
+
+            state = VaultState.ALERT;
+            defer(Timing.ALERT_SHORT, () -> {
+                state = VaultState.STANDBY;
+                screen.show(standbyPage);
+            });
+            return;
+        }
+
+        buzzer.buzz(Buzz.EVENT);
+
+        // Make sure locker is unlocked so a customer can actually access it.
+        commands.setLockState(dropoffLockerId, false);
+        state = VaultState.DROPOFF_PENDING;
+        screen.show(Page.DROPOFF, dropoffLockerId);
+
+        recordTransaction(TransactionType.DROPOFF_STARTED, dropoffLockerId);
+
+        defer(Timing.DROPOFF_PENDING, this::onDropoffTimeout);
+    }
+
+    private void onDropoffTimeout() {
+        // Dropoff failed!
+        audit.record(AuditEvent.DROPOFF_TIMEOUT, "Dropoff to locker #" + dropoffLockerId + " timed out");
+        recordTransaction(TransactionType.DROPOFF_TIMEOUT, dropoffLockerId);
+        dropoffs.remove(dropoffLockerId);
+        dropoffLockerId = null;
+        courierCellNum = null;
+
+        // Indicate explicitly that something went completely wrong.
+        buzzer.buzz(Buzz.ANNOYING);
+
+        // Now we in an alert state.
+        // Wait for longer time (so customer has time to read message for sure) and get back to STANDBY state.
+        state = VaultState.ALERT;
+        screen.show(Page.DROPOFF_TIMEOUT);
+        defer(Timing.ALERT_LONG, () -> {
+            state = VaultState.STANDBY;
+            screen.show(standbyPage);
+        });
+    }
+
+    private void onParcelStored() {
+        audit.record(AuditEvent.DROPOFF, "Parcel stored in locker #" + dropoffLockerId);
+        publisher.publish(BusinessEvent.PARCEL_STORED, dropoffLockerId);
+        recordTransaction(TransactionType.DROPOFF, dropoffLockerId);
+
+        if (expirySettings.isEnabled()) {
+            expiry.schedule(dropoffLockerId, scheduler.currentTimeMillis() + TimeUnit.HOURS.toMillis(expirySettings.getMaxDwellHours()));
+        }
+
+        // Let a recipient know where their parcel is and how to get it.
+        if (courierCellNum != null) {
+            sms.send(courierCellNum, String.format(courierSettings.getMessage(), dropoffLockerId, dropoffs.getPassword(dropoffLockerId)));
+        }
+    }
+
+    /**
+     * Waits for the locking of a dropoff locker to be confirmed (or to fail), see {@link CommandQueue#lock(int)}.
+     */
+    private void lockDropoffLocker() {
+        int lockerId = dropoffLockerId;
+
+        state = VaultState.DROPOFF_LOCKING;
+        screen.show(Page.DROPOFF_LOCKING, lockerId);
+
+        // A lock command can be retried for minutes, a customer shouldn't wait that long.
+        defer(Timing.DROPOFF_LOCKING, () -> onDropoffLocked(lockerId, false));
+        commands.lock(lockerId).thenAccept(isLocked -> scheduler.schedule(() -> onDropoffLocked(lockerId, isLocked), 0));
+    }
+
+    private synchronized void onDropoffLocked(int lockerId, boolean isLocked) {
+        // Could be already decided by a timeout.
+        if (state != VaultState.DROPOFF_LOCKING || dropoffLockerId == null || dropoffLockerId != lockerId) {
+            return;
+        }
+
+        cancelDeferred();
+
+        if (isLocked) {
+            // Success!
+            // Indicate success with a buzzer.
+            buzzer.buzz(Buzz.EVENT);
+            onParcelStored();
+
+            // Now we in an alert state.
+            // Wait for some time (so customer has time to read message) and get back to STANDBY state.
+            state = VaultState.ALERT;
+            screen.show(Page.DROPOFF_SUCCESS);
+            defer(Timing.ALERT_SHORT, () -> {
+                state = VaultState.STANDBY;
+                screen.show(standbyPage);
+            });
+        } else {
+            // Indicate explicitly that something went completely wrong.
+            buzzer.buzz(Buzz.ANNOYING);
+
+            // Trigger unlocking to make 100% sure that a customer won't end up with their belongings in a locker without access to it.
+            commands.setLockState(lockerId, false);
+            dropoffs.remove(lockerId);
+            audit.record(AuditEvent.DROPOFF_CANCELLED, "Locker #" + lockerId + " failed to lock, dropoff cancelled");
+            publisher.publish(BusinessEvent.LOCKER_FAULT, lockerId);
+            recordTransaction(TransactionType.DROPOFF_CANCELLED, lockerId);
+
+            // Now we in an alert state.
+            // Wait for longer time (so customer has time to read message for sure) and get back to STANDBY state.
+            state = VaultState.ALERT;
+            screen.show(Page.DROPOFF_CANCELLED);
+            defer(Timing.ALERT_LONG, () -> {
+                state = VaultState.STANDBY;
+                screen.show(standbyPage);
+            });
+        }
+
+        dropoffLockerId = null;
+        courierCellNum = null;
+    }
+
+    private void handleInCourierPhoneState(Event event) {
+        switch (event.getType()) {
+            case ENTER_PRESSED: {
+                String cellNum = input.getText();
+
+                if (cellNum.length() < courierSettings.getMinPhoneDigits()) {
+                    // Show error message, buzz with buzzer.
+                    input.clear();
+                    buzzer.buzz(Buzz.ERROR);
+                    screen.show(Page.COURIER_PHONE_INVALID);
+
+                    // Now we in an alert state.
+                    // Wait for some time (so courier has time to read message) and let them enter another number.
+                    state = VaultState.ALERT;
+                    defer(Timing.ALERT_SHORT, () -> {
+                        state = VaultState.COURIER_PHONE;
+                        screen.show(Page.COURIER_PHONE);
+                    });
+                } else {
+                    // Recipient will get a pickup code once the dropoff is done.
+                    input = null;
+                    courierCellNum = cellNum;
+                    startDropoff(generatePickupCode());
+                }
+            }
+            break;
+
+            case RESET_PRESSED: {
+                // Clear input by courier's request.
+                input.clear();
+                screen.setInputEcho("");
+                buzzer.buzz(Buzz.EVENT);
+            }
+            break;
+
+            case DIGIT_PRESSED: {
+                KeyPressedEvent ev = (KeyPressedEvent) event;
+
+                if (input.input(ev.getCode())) {
+                    screen.setInputEcho(input.getEcho());
+                } else {
+                    // Phone number is too long, ignore input and indicate error with buzzer.
+                    buzzer.buzz(Buzz.ERROR);
                 }
             }
             break;
         }
     }
 
+    private String generatePickupCode() {
+        String code;
+
+        do {
+            code = StringUtils.leftPad(Integer.toString(random.nextInt(100000)), PASSWORD_DIGITS, '0');
+        } while (isPasswordTooSimple(code));
+
+        return code;
+    }
+
     private void handleInDropoffPendingState(Event event) {
         switch (event.getType()) {
             case DOOR_CLOSED: {
@@ -362,57 +1126,23 @@ public class Vault {
 
                 // Make sure a customer closed the right locker door.
                 if (ev.getLockerId() == dropoffLockerId) {
-                    // Once door is closed trigger the locking mechanism.
-                    api.setLockState(dropoffLockerId, true);
-
-                    // Double check to make sure the door is closed and locking mechanism is engaged.
-                    // Make sure to convert 1-based lockerId to its 0-based index in a list.
-                    LockerState lockerState = api.getLockerStates().get(dropoffLockerId - 1);
-
-                    if (lockerState == LockerState.LOCKED) {
-                        // Success!
-                        // Cancel previous 2 minutes timeout.
-                        cancelDeferred();
-
-                        // Indicate success with a buzzer.
-                        api.buzz(Buzz.EVENT);
-
-                        // Now we in an alert state.
-                        // Wait for some time (so customer has time to read message) and get back to STANDBY state.
-                        state = VaultState.ALERT;
-                        screen.show(Page.DROPOFF_SUCCESS);
-                        defer(Timing.ALERT_SHORT, () -> {
-                            state = VaultState.STANDBY;
-                            screen.show(Page.STANDBY);
-                        });
-                    } else {
-                        // Indicate explicitly that something went completely wrong.
-                        api.buzz(Buzz.ANNOYING);
-
-                        // Trigger unlocking to make 100% sure that a customer won't end up with their belongings in a locker without access to it.
-                        api.setLockState(dropoffLockerId, false);
-                        dropoffs.remove(dropoffLockerId);
-
-                        // Now we in an alert state.
-                        // Wait for longer time (so customer has time to read message for sure) and get back to STANDBY state.
-                        state = VaultState.ALERT;
-                        screen.show(Page.DROPOFF_CANCELLED);
-                        defer(Timing.ALERT_LONG, () -> {
-                            state = VaultState.STANDBY;
-                            screen.show(Page.STANDBY);
-                        });
-                    }
+                    // Cancel previous 2 minutes timeout.
+                    cancelDeferred();
 
-                    dropoffLockerId = null;
+                    // Once door is closed trigger the locking mechanism, the dropoff is done once it's engaged.
+                    lockDropoffLocker();
                 }
             }
             break;
 
             case RESET_PRESSED: {
                 // Indicate explicitly that dropoff is cancelled.
-                api.buzz(Buzz.ANNOYING);
+                buzzer.buzz(Buzz.ANNOYING);
+                audit.record(AuditEvent.DROPOFF_CANCELLED, "Dropoff to locker #" + dropoffLockerId + " cancelled by customer");
+                recordTransaction(TransactionType.DROPOFF_CANCELLED, dropoffLockerId);
                 dropoffs.remove(dropoffLockerId);
                 dropoffLockerId = null;
+                courierCellNum = null;
 
                 // Now we in an alert state.
                 // Wait for longer time (so customer has time to read message for sure) and get back to STANDBY state.
@@ -420,7 +1150,7 @@ public class Vault {
                 screen.show(Page.DROPOFF_CANCELLED);
                 defer(Timing.ALERT_LONG, () -> {
                     state = VaultState.STANDBY;
-                    screen.show(Page.STANDBY);
+                    screen.show(standbyPage);
                 });
             }
             break;
@@ -428,7 +1158,7 @@ public class Vault {
             case DIGIT_PRESSED:
             case ENTER_PRESSED:
                 // Just indicate an unexpected input using a buzzer.
-                api.buzz(Buzz.ERROR);
+                buzzer.buzz(Buzz.ERROR);
                 break;
         }
     }
@@ -442,7 +1172,7 @@ public class Vault {
                     screen.setInputEcho(input.getEcho());
                 } else {
                     // Locker number is too long, ignore input and indicate error with buzzer.
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
                 }
             }
             break;
@@ -450,20 +1180,21 @@ public class Vault {
             case ENTER_PRESSED: {
                 int lockerId = NumberUtils.toInt(input.getText());
 
-                if (validateLockerId(lockerId) && dropoffs.get(lockerId) != null) {
+                if (validateLockerId(lockerId) && dropoffs.isOccupied(lockerId)) {
                     log.info("Selected locker #{}", lockerId);
                     pickupLockerId = lockerId;
+                    dropoffs.touch(lockerId);
                     input.clear();
 
                     // Next step is to prompt for a password.
                     state = VaultState.PICKUP_PASSWORD;
                     screen.show(Page.PICKUP_ENTER_PASSWORD);
-                    api.buzz(Buzz.EVENT);
+                    buzzer.buzz(Buzz.EVENT);
                     input = new Input(true, PASSWORD_DIGITS);
                 } else {
                     log.info("Selected invalid locker that doesn't exist");
                     screen.show(Page.PICKUP_LOCKER_INVALID);
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
                     state = VaultState.ALERT;
                     defer(Timing.ALERT_SHORT, () -> {
                         state = VaultState.PICKUP_CHOOSE_LOCKER;
@@ -478,7 +1209,7 @@ public class Vault {
                 // Clear input by customer's request.
                 input.clear();
                 screen.setInputEcho("");
-                api.buzz(Buzz.EVENT);
+                buzzer.buzz(Buzz.EVENT);
             }
             break;
         }
@@ -490,35 +1221,34 @@ public class Vault {
                 String password = input.getText();
 
                 // Verify password.
-                if (password.equals(dropoffs.get(pickupLockerId))) {
+                if (password.equals(dropoffs.getPassword(pickupLockerId)) && multistateSettings.isEnabled()) {
+                    // Success, a locker is accessed without unlocking it here, so there's nothing to wait for.
+                    input = null;
+                    buzzer.buzz(Buzz.EVENT);
+
+                    // The first authentication starts a repeat access session, the next one finishes it.
+                    if (repeatAccessSessions.containsKey(pickupLockerId)) {
+                        finishRepeatAccess(pickupLockerId);
+                    } else {
+                        startRepeatAccess(pickupLockerId);
+                    }
+
+                    pickupLockerId = null;
+                } else if (password.equals(dropoffs.getPassword(pickupLockerId))) {
                     // Success, now let's unlock a locker and give the customer some time to open it and pick up their belongings.
                     input = null;
-                    api.buzz(Buzz.EVENT);
+                    buzzer.buzz(Buzz.EVENT);
 
                     // Trigger unlocking and then wait until the customer grabs their belongings (actually we will only wait for a locker door opening event).
-                    api.setLockState(pickupLockerId, false);
+                    commands.setLockState(pickupLockerId, false);
                     state = VaultState.PICKUP_PENDING;
                     screen.show(Page.PICKUP, pickupLockerId);
 
-                    defer(Timing.PICKUP_PENDING, () -> {
-                        // Pickup failed!
-                        // Lock a locker back to make sure nobody else can steal belongings from the locker.
-                        api.setLockState(pickupLockerId, true);
-                        state = VaultState.ALERT;
-                        screen.show(Page.PICKUP_TIMEOUT);
-
-                        // Indicate explicitly that something went completely wrong.
-                        api.buzz(Buzz.ANNOYING);
-                        defer(Timing.ALERT_LONG, () -> {
-                            state = VaultState.STANDBY;
-                            screen.show(Page.STANDBY);
-                        });
-
-                        pickupLockerId = null;
-                    });
+                    defer(Timing.PICKUP_PENDING, this::onPickupTimeout);
                 } else {
                     // Password is invalid, try again.
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
+                    audit.record(AuditEvent.INVALID_PASSWORD, "Invalid password entered for locker #" + pickupLockerId);
                     input.clear();
                     screen.show(Page.PICKUP_PASSWORD_INVALID);
                     state = VaultState.ALERT;
@@ -536,7 +1266,7 @@ public class Vault {
                 // Clear input by customer's request.
                 input.clear();
                 screen.setInputEcho("");
-                api.buzz(Buzz.EVENT);
+                buzzer.buzz(Buzz.EVENT);
             }
             break;
 
@@ -547,13 +1277,103 @@ public class Vault {
                     screen.setInputEcho(input.getEcho());
                 } else {
                     // Password's too long, ignore input and indicate error with buzzer.
-                    api.buzz(Buzz.ERROR);
+                    buzzer.buzz(Buzz.ERROR);
                 }
             }
             break;
         }
     }
 
+    private void startRepeatAccess(int lockerId) {
+        // From now on a customer uses the lock button to open and lock the locker as many times as they need.
+        commands.setLockerState(lockerId, LockerState.READY_OPEN);
+        leds.set(lockerId, Led.GREEN);
+        audit.record(AuditEvent.REPEAT_ACCESS_STARTED, "Repeat access to locker #" + lockerId + " started");
+
+        // Don't leave a locker accessible forever if a customer forgets to finish the session.
+        repeatAccessSessions.put(lockerId, scheduler.schedule(() -> {
+            synchronized (Vault.this) {
+                expireRepeatAccess(lockerId);
+            }
+        }, Timing.REPEAT_ACCESS_SESSION.toMilliseconds()));
+
+        // Now we in an alert state.
+        // Wait for longer time (so customer has time to read message for sure) and get back to STANDBY state.
+        state = VaultState.ALERT;
+        screen.show(Page.PICKUP_READY, lockerId);
+        defer(Timing.ALERT_LONG, () -> {
+            state = VaultState.STANDBY;
+            screen.show(standbyPage);
+        });
+    }
+
+    private void finishRepeatAccess(int lockerId) {
+        repeatAccessSessions.remove(lockerId).cancel();
+
+        // Lock the locker back and mark it as available again.
+        commands.setLockerState(lockerId, LockerState.LOCKED);
+        leds.set(lockerId, Led.OFF);
+        dropoffs.remove(lockerId);
+        expiry.cancel(lockerId);
+        audit.record(AuditEvent.PICKUP, "Parcel collected from locker #" + lockerId + " after repeat access");
+        publisher.publish(BusinessEvent.PARCEL_COLLECTED, lockerId);
+        recordTransaction(TransactionType.PICKUP, lockerId);
+
+        // Now we in an alert state.
+        // Wait for some time (so customer has time to read message) and get back to STANDBY state.
+        state = VaultState.ALERT;
+        screen.show(Page.PICKUP_FINISHED, lockerId);
+        defer(Timing.ALERT_SHORT, () -> {
+            state = VaultState.STANDBY;
+            screen.show(standbyPage);
+        });
+    }
+
+    private void expireRepeatAccess(int lockerId) {
+        if (repeatAccessSessions.remove(lockerId) != null) {
+            // Lock the locker back, but a customer still owns it and can start another session.
+            commands.setLockerState(lockerId, LockerState.LOCKED);
+            leds.set(lockerId, Led.OFF);
+            audit.record(AuditEvent.REPEAT_ACCESS_EXPIRED, "Repeat access to locker #" + lockerId + " expired");
+        }
+    }
+
+    private void expireParcels() {
+        long now = scheduler.currentTimeMillis();
+
+        for (int lockerId : expiry.pollDue(now)) {
+            if (repeatAccessSessions.containsKey(lockerId) || Objects.equals(pickupLockerId, lockerId)) {
+                // A customer is picking up the parcel right now, let them finish.
+                expiry.schedule(lockerId, now + EXPIRY_SWEEP_INTERVAL_MILLIS);
+                continue;
+            }
+
+            // The customer's password no longer works, the locker becomes available again once staff retrieve the parcel.
+            dropoffs.put(lockerId, expirySettings.getRetrievalCode());
+            audit.record(AuditEvent.PARCEL_EXPIRED, "Parcel in locker #" + lockerId + " expired, waiting for retrieval by staff");
+            recordTransaction(TransactionType.PARCEL_EXPIRED, lockerId);
+        }
+    }
+
+    private void onPickupTimeout() {
+        // Pickup failed!
+        // Lock a locker back to make sure nobody else can steal belongings from the locker.
+        commands.setLockState(pickupLockerId, true);
+        audit.record(AuditEvent.PICKUP_TIMEOUT, "Pickup from locker #" + pickupLockerId + " timed out");
+        recordTransaction(TransactionType.PICKUP_TIMEOUT, pickupLockerId);
+        state = VaultState.ALERT;
+        screen.show(Page.PICKUP_TIMEOUT);
+
+        // Indicate explicitly that something went completely wrong.
+        buzzer.buzz(Buzz.ANNOYING);
+        defer(Timing.ALERT_LONG, () -> {
+            state = VaultState.STANDBY;
+            screen.show(standbyPage);
+        });
+
+        pickupLockerId = null;
+    }
+
     private void handleInPickupPendingState(Event event) {
         if (event.getType() == EventType.DOOR_OPENED) {
             LockerStateChangedEvent ev = (LockerStateChangedEvent) event;
@@ -564,22 +1384,30 @@ public class Vault {
                 // Cancel previous 2 minutes timeout.
                 cancelDeferred();
 
-                // Mark the locker as available again.
-                dropoffs.remove(pickupLockerId);
+                onParcelCollected(pickupLockerId);
 
                 // Indicate success with a buzzer.
-                api.buzz(Buzz.EVENT);
+                buzzer.buzz(Buzz.EVENT);
                 screen.show(Page.PICKUP_SUCCESS);
                 state = VaultState.ALERT;
 
                 defer(Timing.ALERT_SHORT, () -> {
                     state = VaultState.STANDBY;
-                    screen.show(Page.STANDBY);
+                    screen.show(standbyPage);
                 });
             }
         }
     }
 
+    private void onParcelCollected(int lockerId) {
+        // Mark the locker as available again.
+        dropoffs.remove(lockerId);
+        expiry.cancel(lockerId);
+        audit.record(AuditEvent.PICKUP, "Parcel collected from locker #" + lockerId);
+        publisher.publish(BusinessEvent.PARCEL_COLLECTED, lockerId);
+        recordTransaction(TransactionType.PICKUP, lockerId);
+    }
+
     private boolean isPasswordTooSimple(String password) {
         for (String simplePassword : SIMPLE_PASSWORDS) {
             if (simplePassword.equals(password)) {
@@ -593,24 +1421,43 @@ public class Vault {
         return lockerId >= 1 && lockerId <= config.getLockersCount();
     }
 
-    private synchronized void defer(Timing timeoutValue, Runnable task) {
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                timer = new Timer();
-                synchronized (Vault.this) {
+    private void recordTransaction(TransactionType type, int lockerId) {
+        if (analytics != null) {
+            analytics.record(type, lockerId);
+        }
+    }
+
+    private void defer(Timing timeoutValue, Runnable task) {
+        defer(timeoutValue.toMilliseconds(), task);
+    }
+
+    private synchronized void defer(long delayMillis, Runnable task) {
+        Deferred deferred = new Deferred();
+
+        deferredUntil = scheduler.currentTimeMillis() + delayMillis;
+        deferredTasks.add(deferred);
+        deferred.task = scheduler.schedule(() -> {
+            synchronized (Vault.this) {
+                // Could be cancelled while waiting for the lock.
+                if (deferredTasks.remove(deferred)) {
+                    deferredUntil = 0;
                     task.run();
                 }
             }
-        }, timeoutValue.toMilliseconds());
+        }, delayMillis);
     }
 
     private synchronized void cancelDeferred() {
-        try {
-            timer.cancel();
-            timer = new Timer();
-        } catch (IllegalStateException e) {
-            // Do nothing.
+        deferredUntil = 0;
+
+        for (Deferred deferred : deferredTasks) {
+            deferred.task.cancel();
         }
+
+        deferredTasks.clear();
+    }
+
+    private static class Deferred {
+        private Scheduler.Task task;
     }
 }
@@ -0,0 +1,142 @@
+package za.co.vaultgroup.example.app;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable copy of {@link Vault} session state, so it can be saved (see {@link za.co.vaultgroup.example.storage.SnapshotFile})
+ * without holding the vault's lock and restored after a crash.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+class VaultSnapshot {
+    private static final int VERSION = 2;
+
+    // Reservations were added in version 2, older snapshots are still restored.
+    private static final int MIN_VERSION = 1;
+
+    private final VaultState state;
+
+    // Null if there's no transaction in progress.
+    private final Integer dropoffLockerId;
+    private final Integer pickupLockerId;
+    private final String courierCellNum;
+
+    // When a pending transaction times out (epoch millis), 0 if nothing is deferred.
+    private final long deferredUntil;
+
+    // Key is a lockerId, value is a password.
+    private final Map<Integer, String> dropoffs;
+
+    // Key is a lockerId, value is an order id, see DropoffStore.
+    private final Map<Integer, String> reservations;
+
+    // Key is a lockerId, value is an expiry deadline (epoch millis).
+    private final Map<Integer, Long> expiryDeadlines;
+
+    // Lockers that have a repeat access session.
+    private final Set<Integer> repeatAccessLockers;
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(VERSION);
+        out.writeUTF(state == null ? "" : state.name());
+        out.writeInt(dropoffLockerId == null ? 0 : dropoffLockerId);
+        out.writeInt(pickupLockerId == null ? 0 : pickupLockerId);
+        out.writeUTF(courierCellNum == null ? "" : courierCellNum);
+        out.writeLong(deferredUntil);
+
+        out.writeInt(dropoffs.size());
+        for (Map.Entry<Integer, String> entry : dropoffs.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+
+        out.writeInt(reservations.size());
+        for (Map.Entry<Integer, String> entry : reservations.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+
+        out.writeInt(expiryDeadlines.size());
+        for (Map.Entry<Integer, Long> entry : expiryDeadlines.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+
+        out.writeInt(repeatAccessLockers.size());
+        for (int lockerId : repeatAccessLockers) {
+            out.writeInt(lockerId);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return a snapshot or null if it's of unknown version.
+     */
+    static VaultSnapshot decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        int version = in.readInt();
+
+        if (version < MIN_VERSION || version > VERSION) {
+            return null;
+        }
+
+        String stateName = in.readUTF();
+        VaultState state = stateName.isEmpty() ? null : VaultState.valueOf(stateName);
+        int dropoffLockerId = in.readInt();
+        int pickupLockerId = in.readInt();
+        String courierCellNum = in.readUTF();
+        long deferredUntil = in.readLong();
+
+        Map<Integer, String> dropoffs = new HashMap<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            dropoffs.put(in.readInt(), in.readUTF());
+        }
+
+        Map<Integer, String> reservations = new HashMap<>();
+        for (int count = version < 2 ? 0 : in.readInt(); count > 0; count--) {
+            reservations.put(in.readInt(), in.readUTF());
+        }
+
+        Map<Integer, Long> expiryDeadlines = new HashMap<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            expiryDeadlines.put(in.readInt(), in.readLong());
+        }
+
+        Set<Integer> repeatAccessLockers = new HashSet<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            repeatAccessLockers.add(in.readInt());
+        }
+
+        return new VaultSnapshot(
+                state,
+                dropoffLockerId == 0 ? null : dropoffLockerId,
+                pickupLockerId == 0 ? null : pickupLockerId,
+                courierCellNum.isEmpty() ? null : courierCellNum,
+                deferredUntil,
+                Collections.unmodifiableMap(dropoffs),
+                Collections.unmodifiableMap(reservations),
+                Collections.unmodifiableMap(expiryDeadlines),
+                Collections.unmodifiableSet(repeatAccessLockers)
+        );
+    }
+}
@@ -24,6 +24,12 @@ public enum VaultState {
      */
     DROPOFF_PASSWORD,
 
+    /**
+     * The state when a courier requested a dropoff and now has to enter a recipient's phone number.
+     * A pickup code is generated and sent to a recipient via SMS once the dropoff is done.
+     */
+    COURIER_PHONE,
+
     /**
      * The state when a customer requested a dropoff and provided a password.
      * Now a locker is open and there's a 2 minutes timeout during which a customer is supposed to
@@ -31,6 +37,12 @@ public enum VaultState {
      */
     DROPOFF_PENDING,
 
+    /**
+     * The state when a customer closed a dropoff locker and it's being locked.
+     * The dropoff is done once the locking is confirmed, it's cancelled if it fails or takes too long.
+     */
+    DROPOFF_LOCKING,
+
     /**
      * The state when a customer requested a pickup and now has to specify their locker.
      */
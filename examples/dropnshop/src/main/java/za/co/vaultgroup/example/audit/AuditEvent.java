@@ -0,0 +1,101 @@
+package za.co.vaultgroup.example.audit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transaction events we report to VG auditing facility (see `user_audit` RPC).
+ *
+ * A user code must be at least 256000000, the lower 8 bits of it are used as follows:
+ * bits 0-3 contain a priority (0 is default, 1 is low, up to 6 for the highest one), bits 4-7 are free for public use.
+ * So every event gets its own number that is shifted above these 8 bits.
+ * A code is also what's kept in {@link AuditSpool}, so never change a number of an event, only add new ones.
+ */
+public enum AuditEvent {
+    DROPOFF(1, Level.INFO, Priority.LOW),
+    DROPOFF_CANCELLED(2, Level.WARNING, Priority.MEDIUM),
+    DROPOFF_TIMEOUT(3, Level.WARNING, Priority.MEDIUM),
+    PICKUP(4, Level.INFO, Priority.LOW),
+    PICKUP_TIMEOUT(5, Level.WARNING, Priority.MEDIUM),
+    INVALID_PASSWORD(6, Level.WARNING, Priority.HIGH),
+    REPEAT_ACCESS_STARTED(7, Level.INFO, Priority.LOW),
+    REPEAT_ACCESS_EXPIRED(8, Level.INFO, Priority.LOW),
+    PARCEL_EXPIRED(9, Level.WARNING, Priority.MEDIUM),
+    LOCKER_FLAPPING(10, Level.WARNING, Priority.HIGH),
+    LOCKER_FLAPPING_STOPPED(11, Level.INFO, Priority.LOW),
+    SLAVE_FAILED(12, Level.ERROR, Priority.HIGH),
+    SLAVE_RECOVERED(13, Level.INFO, Priority.LOW),
+    LOCKER_RESERVED(14, Level.INFO, Priority.LOW),
+    LOCKER_RELEASED(15, Level.INFO, Priority.LOW);
+
+    private static final int CODE_BASE = 256000000;
+    private static final int CODE_SHIFT = 8;
+
+    private static final Map<Integer, AuditEvent> BY_CODE = new HashMap<>();
+
+    static {
+        for (AuditEvent event : values()) {
+            BY_CODE.put(event.code, event);
+        }
+    }
+
+    private final int code;
+    private final Level level;
+
+    AuditEvent(int number, Level level, Priority priority) {
+        this.code = CODE_BASE + (number << CODE_SHIFT) + priority.getValue();
+        this.level = level;
+    }
+
+    /**
+     * @return an event or null if there's no event with such code.
+     */
+    public static AuditEvent fromCode(int code) {
+        return BY_CODE.get(code);
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public enum Level {
+        INFO("info"),
+        WARNING("warning"),
+        ERROR("error"),
+        FATAL("fatal");
+
+        private final String value;
+
+        Level(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public enum Priority {
+        DEFAULT(0),
+        LOW(1),
+        MEDIUM(2),
+        HIGH(3),
+        VERY_HIGH(4),
+        VERY_VERY_HIGH(5),
+        HIGHEST(6);
+
+        private final int value;
+
+        Priority(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package za.co.vaultgroup.example.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.Api;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reports transaction events to VG auditing facility (see `user_audit` RPC) without slowing down event handling.
+ *
+ * A caller only appends a record to a memory-mapped spool (see {@link AuditSpool}),
+ * a background thread ships records with a bounded number of concurrent RPC calls.
+ * Failed records are retried with an exponential backoff. Records that aren't shipped yet survive restarts.
+ */
+@Slf4j
+public class AuditLog {
+    private static final String FACILITY = "dropnshop";
+
+    // It's about 1 MB of disk space.
+    private static final int SPOOL_SLOTS = 1024;
+
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final Api api;
+    private final AuditSpool spool;
+    private final Semaphore inFlightPermits;
+
+    // Sequence of the next record to ship, anything before that is either shipped or being shipped.
+    private long nextSequence;
+
+    // Records that failed to be shipped and must be shipped again.
+    private final Deque<Long> retries = new ArrayDeque<>();
+
+    // Shipping is paused after a failure until that moment.
+    private long pausedUntilMillis = 0;
+    private int failuresInRow = 0;
+
+    public AuditLog(Api api, Path spoolPath, int maxInFlight) throws IOException {
+        this.api = api;
+        this.spool = new AuditSpool(spoolPath, SPOOL_SLOTS);
+        this.inFlightPermits = new Semaphore(maxInFlight);
+        this.nextSequence = spool.getTail();
+
+        Thread thread = new Thread(this::drain, "audit");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Never blocks for longer than it takes to copy a record to the spool.
+     */
+    public void record(AuditEvent event, String description) {
+        boolean isAppended;
+
+        synchronized (this) {
+            isAppended = spool.append(event, System.currentTimeMillis(), description);
+            notifyAll();
+        }
+
+        if (!isAppended) {
+            log.error("Audit spool is full, dropping {} record: {}", event, description);
+        }
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                inFlightPermits.acquire();
+
+                AuditSpool.Record record = null;
+
+                try {
+                    record = next();
+                } finally {
+                    if (record == null) {
+                        inFlightPermits.release();
+                    }
+                }
+
+                ship(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Waits for a record to ship.
+    private synchronized AuditSpool.Record next() throws InterruptedException {
+        while (true) {
+            long delay = pausedUntilMillis - System.currentTimeMillis();
+
+            if (delay > 0) {
+                wait(delay);
+                continue;
+            }
+
+            Long sequence = retries.poll();
+
+            if (sequence == null && nextSequence < spool.getHead()) {
+                sequence = nextSequence++;
+            }
+
+            if (sequence == null) {
+                wait();
+                continue;
+            }
+
+            AuditSpool.Record record = spool.read(sequence);
+
+            if (record != null) {
+                return record;
+            }
+        }
+    }
+
+    private void ship(AuditSpool.Record record) {
+        String description = "[" + Instant.ofEpochMilli(record.getTimestamp()) + "] " + record.getDescription();
+
+        api.userAudit(record.getCode(), record.getEvent().getLevel().getValue(), FACILITY, description)
+                .whenComplete((isSuccessful, e) -> {
+                    onShipped(record.getSequence(), e == null && isSuccessful);
+                    inFlightPermits.release();
+                });
+    }
+
+    private synchronized void onShipped(long sequence, boolean isSuccessful) {
+        if (isSuccessful) {
+            failuresInRow = 0;
+            spool.markShipped(sequence);
+        } else {
+            // Something's wrong with the server, give it some time to recover.
+            failuresInRow++;
+            pausedUntilMillis = System.currentTimeMillis() + Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << Math.min(failuresInRow - 1, 16));
+            retries.add(sequence);
+        }
+
+        notifyAll();
+    }
+}
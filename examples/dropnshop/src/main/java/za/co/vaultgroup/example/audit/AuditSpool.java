@@ -0,0 +1,199 @@
+package za.co.vaultgroup.example.audit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed size ring of audit records kept in a memory-mapped file, so records survive application restarts
+ * and appending one is just a memory copy.
+ *
+ * Every record gets a sequence number, the record is stored in a slot number (sequence % slot count).
+ * A header keeps the sequence of the next record to append (head) and the first record not shipped yet (tail).
+ * Records can be shipped out of order, the tail only moves over records that are all shipped.
+ * An event is kept as its code (see {@link AuditEvent#getCode()}), so a spool stays valid whatever the order of events is.
+ * Not thread-safe, see {@link AuditLog}.
+ */
+@Slf4j
+class AuditSpool {
+    // See `UserAuditLogRequest.description` in service.proto, it's no more than 1024 bytes.
+    // Some room is left for a timestamp that is added when a record is shipped (see AuditLog).
+    static final int MAX_DESCRIPTION_BYTES = 1024 - 32;
+
+    private static final int MAGIC = 0x41554431; // "AUD1"
+
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAGIC_OFFSET = 0;
+    private static final int HEADER_SLOT_COUNT_OFFSET = 4;
+    private static final int HEADER_HEAD_OFFSET = 8;
+    private static final int HEADER_TAIL_OFFSET = 16;
+
+    // Status (1) + reserved (1) + description length (2) + code (4) + timestamp (8) + description.
+    // The reserved byte used to keep an event ordinal, the code is used instead now.
+    private static final int SLOT_HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = SLOT_HEADER_SIZE + MAX_DESCRIPTION_BYTES;
+
+    private static final byte STATUS_EMPTY = 0;
+    private static final byte STATUS_READY = 1;
+    private static final byte STATUS_SHIPPED = 2;
+
+    private final int slotCount;
+    private final MappedByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer descriptionBuffer = ByteBuffer.allocate(MAX_DESCRIPTION_BYTES);
+
+    private long head;
+    private long tail;
+
+    AuditSpool(Path path, int slotCount) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOT_SIZE * slotCount);
+        }
+
+        if (buffer.getInt(HEADER_MAGIC_OFFSET) == MAGIC && buffer.getInt(HEADER_SLOT_COUNT_OFFSET) == slotCount) {
+            this.slotCount = slotCount;
+            this.head = buffer.getLong(HEADER_HEAD_OFFSET);
+            this.tail = buffer.getLong(HEADER_TAIL_OFFSET);
+        } else {
+            // A brand new (or incompatible) spool.
+            this.slotCount = slotCount;
+            this.head = 0;
+            this.tail = 0;
+
+            for (int slot = 0; slot < slotCount; slot++) {
+                buffer.put(slotOffset(slot), STATUS_EMPTY);
+            }
+
+            buffer.putInt(HEADER_SLOT_COUNT_OFFSET, slotCount);
+            buffer.putLong(HEADER_HEAD_OFFSET, head);
+            buffer.putLong(HEADER_TAIL_OFFSET, tail);
+            buffer.putInt(HEADER_MAGIC_OFFSET, MAGIC);
+        }
+    }
+
+    long getHead() {
+        return head;
+    }
+
+    long getTail() {
+        return tail;
+    }
+
+    /**
+     * @return false if there's no free slot (records are not shipped fast enough).
+     */
+    boolean append(AuditEvent event, long timestamp, String description) {
+        if (head - tail >= slotCount) {
+            return false;
+        }
+
+        int offset = slotOffset(head);
+        int length = encode(description);
+
+        buffer.put(offset + 1, (byte) 0);
+        buffer.putShort(offset + 2, (short) length);
+        buffer.putInt(offset + 4, event.getCode());
+        buffer.putLong(offset + 8, timestamp);
+
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + SLOT_HEADER_SIZE + i, descriptionBuffer.get(i));
+        }
+
+        // Status goes last, so a record is never seen half-written.
+        buffer.put(offset, STATUS_READY);
+
+        head++;
+        buffer.putLong(HEADER_HEAD_OFFSET, head);
+        return true;
+    }
+
+    /**
+     * A corrupt record (or one of an event this version doesn't know) is dropped, so it never holds the tail.
+     *
+     * @return a record if it's appended and not shipped yet, null otherwise.
+     */
+    Record read(long sequence) {
+        if (sequence < tail || sequence >= head) {
+            return null;
+        }
+
+        int offset = slotOffset(sequence);
+
+        if (buffer.get(offset) != STATUS_READY) {
+            return null;
+        }
+
+        int length = buffer.getShort(offset + 2);
+        int code = buffer.getInt(offset + 4);
+        long timestamp = buffer.getLong(offset + 8);
+        AuditEvent event = AuditEvent.fromCode(code);
+
+        if (event == null || length < 0 || length > MAX_DESCRIPTION_BYTES) {
+            log.error("Dropping corrupt audit record #{}: code {}, description length {}", sequence, code, length);
+            markShipped(sequence);
+            return null;
+        }
+        byte[] description = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            description[i] = buffer.get(offset + SLOT_HEADER_SIZE + i);
+        }
+
+        return new Record(sequence, event, code, timestamp, new String(description, StandardCharsets.UTF_8));
+    }
+
+    void markShipped(long sequence) {
+        if (sequence < tail || sequence >= head) {
+            return;
+        }
+
+        buffer.put(slotOffset(sequence), STATUS_SHIPPED);
+
+        // Release all the slots that are shipped in a row.
+        while (tail < head && buffer.get(slotOffset(tail)) == STATUS_SHIPPED) {
+            buffer.put(slotOffset(tail), STATUS_EMPTY);
+            tail++;
+        }
+
+        buffer.putLong(HEADER_TAIL_OFFSET, tail);
+    }
+
+    private int slotOffset(long sequence) {
+        return HEADER_SIZE + (int) (sequence % slotCount) * SLOT_SIZE;
+    }
+
+    // Description is encoded into descriptionBuffer, whatever doesn't fit the limit is cut (never in the middle of a character).
+    private int encode(String description) {
+        descriptionBuffer.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(description), descriptionBuffer, true);
+        return descriptionBuffer.position();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Record {
+        private final long sequence;
+        private final AuditEvent event;
+        private final int code;
+        private final long timestamp;
+        private final String description;
+    }
+}
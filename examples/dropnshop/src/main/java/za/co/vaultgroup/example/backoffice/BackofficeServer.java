@@ -0,0 +1,50 @@
+package za.co.vaultgroup.example.backoffice;
+
+import io.grpc.BindableService;
+import io.grpc.netty.NettyServerBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.config.Settings.BackofficeSettings;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts {@link BackofficeService} next to the {@link za.co.vaultgroup.example.Api} client.
+ *
+ * Calls are handled by a small pool of its own with a bounded queue, so a burst of remote calls is rejected
+ * rather than piling up, and it never takes threads (or CPU time beyond that) from the keypad and door events.
+ */
+@Slf4j
+public class BackofficeServer {
+    private final String bindAddress;
+    private final int port;
+
+    @Getter
+    private final ExecutorService executor;
+
+    public BackofficeServer(BackofficeSettings settings) {
+        this.bindAddress = settings.getBindAddress();
+        this.port = settings.getPort();
+        this.executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueSize()), r -> {
+            Thread thread = new Thread(r, "backoffice");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(BindableService service) throws IOException {
+        NettyServerBuilder.forAddress(new InetSocketAddress(bindAddress, port))
+                .executor(executor)
+                .addService(service)
+                .build()
+                .start();
+
+        log.info("Back-office service is listening on {}:{}", bindAddress, port);
+    }
+}
@@ -0,0 +1,354 @@
+package za.co.vaultgroup.example.backoffice;
+
+import backoffice.Backoffice;
+import backoffice.BackofficeServiceGrpc;
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import za.co.vaultgroup.example.app.DropoffStore;
+
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Lets remote systems reserve lockers for orders (see backoffice.proto).
+ *
+ * Calls never take the vault's lock, lockers are changed by compare-and-set on {@link DropoffStore}:
+ * a call that lost a race to the keypad (or another call) just looks at the locker again.
+ */
+@Slf4j
+public class BackofficeService extends BackofficeServiceGrpc.BackofficeServiceImplBase {
+    // Same as a customer's password, see Vault.
+    private static final int PICKUP_CODE_DIGITS = 5;
+
+    // Order ids are kept in a snapshot and audit records.
+    private static final int MAX_ORDER_ID_LENGTH = 64;
+
+    private final DropoffStore store;
+    private final IntPredicate isAllocatable;
+    private final IntPredicate isSessionLocker;
+    private final Listener listener;
+    private final Executor executor;
+    private final int maxWatchers;
+    private final AtomicInteger watchers = new AtomicInteger();
+
+    /**
+     * @param isAllocatable tells whether a locker can take a parcel (it's free, healthy and not involved in a session).
+     * @param isSessionLocker tells whether a customer is using a locker right now, such a reservation is not released.
+     * @param executor sends changes to `watch_occupancy` streams.
+     */
+    public BackofficeService(DropoffStore store, IntPredicate isAllocatable, IntPredicate isSessionLocker, Listener listener,
+                             Executor executor, int maxWatchers) {
+        this.store = Objects.requireNonNull(store);
+        this.isAllocatable = Objects.requireNonNull(isAllocatable);
+        this.isSessionLocker = Objects.requireNonNull(isSessionLocker);
+        this.listener = Objects.requireNonNull(listener);
+        this.executor = Objects.requireNonNull(executor);
+        this.maxWatchers = maxWatchers;
+    }
+
+    @Override
+    public void reserveLocker(Backoffice.ReserveLockerRequest request, StreamObserver<Backoffice.Locker> observer) {
+        String orderId = request.getOrderId();
+        String pickupCode = request.getPickupCode();
+
+        if (orderId.isEmpty() || orderId.length() > MAX_ORDER_ID_LENGTH) {
+            fail(observer, Status.INVALID_ARGUMENT, "order_id must be 1 to " + MAX_ORDER_ID_LENGTH + " characters long");
+            return;
+        }
+
+        if (pickupCode.length() != PICKUP_CODE_DIGITS || !StringUtils.isNumeric(pickupCode)) {
+            fail(observer, Status.INVALID_ARGUMENT, "pickup_code must be " + PICKUP_CODE_DIGITS + " digits");
+            return;
+        }
+
+        int lockersCount = store.getLockersCount();
+
+        if (lockersCount == 0) {
+            fail(observer, Status.UNAVAILABLE, "Lockers are not known yet");
+            return;
+        }
+
+        int lockerId = request.getLockerId();
+
+        if (lockerId != 0) {
+            if (lockerId < 1 || lockerId > lockersCount) {
+                fail(observer, Status.INVALID_ARGUMENT, "No such locker #" + lockerId);
+                return;
+            }
+
+            if (!reserve(lockerId, pickupCode, orderId)) {
+                fail(observer, Status.FAILED_PRECONDITION, "Locker #" + lockerId + " is not free");
+                return;
+            }
+        } else {
+            lockerId = reserveAny(lockersCount, pickupCode, orderId);
+
+            if (lockerId == 0) {
+                fail(observer, Status.RESOURCE_EXHAUSTED, "No free lockers");
+                return;
+            }
+        }
+
+        listener.onReserved(lockerId, orderId);
+        reply(observer, toLocker(lockerId, store.get(lockerId)));
+    }
+
+    /**
+     * Starts at a random locker, so concurrent calls rarely go for the same one (and lockers are used evenly).
+     *
+     * @return a lockerId or 0 if there are no free lockers.
+     */
+    private int reserveAny(int lockersCount, String pickupCode, String orderId) {
+        int start = ThreadLocalRandom.current().nextInt(lockersCount);
+
+        for (int i = 0; i < lockersCount; i++) {
+            int lockerId = (start + i) % lockersCount + 1;
+
+            if (reserve(lockerId, pickupCode, orderId)) {
+                return lockerId;
+            }
+        }
+
+        return 0;
+    }
+
+    private boolean reserve(int lockerId, String pickupCode, String orderId) {
+        while (true) {
+            DropoffStore.Slot slot = store.get(lockerId);
+
+            if (slot == null || slot.isOccupied() || !isAllocatable.test(lockerId)) {
+                return false;
+            }
+
+            if (store.compareAndSet(lockerId, slot, slot.next(pickupCode, orderId))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void releaseLocker(Backoffice.ReleaseLockerRequest request, StreamObserver<Backoffice.Locker> observer) {
+        int lockerId = request.getLockerId();
+
+        while (true) {
+            DropoffStore.Slot slot = store.get(lockerId);
+
+            if (slot == null || !slot.isReserved()) {
+                fail(observer, Status.NOT_FOUND, "Locker #" + lockerId + " is not reserved");
+                return;
+            }
+
+            if (request.getVersion() != 0 && request.getVersion() != slot.getVersion()) {
+                fail(observer, Status.ABORTED, "Locker #" + lockerId + " has changed, its version is " + slot.getVersion());
+                return;
+            }
+
+            // A session that takes the locker after this check changes its version (see DropoffStore.touch()),
+            // so the compare-and-set below fails and the locker is checked again.
+            if (isSessionLocker.test(lockerId)) {
+                fail(observer, Status.FAILED_PRECONDITION, "Locker #" + lockerId + " is being accessed by a customer");
+                return;
+            }
+
+            DropoffStore.Slot update = slot.next(null, null);
+
+            if (store.compareAndSet(lockerId, slot, update)) {
+                listener.onReleased(lockerId, slot.getOrderId());
+                reply(observer, toLocker(lockerId, update));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void getOccupancy(Empty request, StreamObserver<Backoffice.GetOccupancyResponse> observer) {
+        int lockersCount = store.getLockersCount();
+        int free = 0;
+        int occupied = 0;
+        int reserved = 0;
+
+        Backoffice.GetOccupancyResponse.Builder response = Backoffice.GetOccupancyResponse.newBuilder();
+
+        for (int lockerId = 1; lockerId <= lockersCount; lockerId++) {
+            DropoffStore.Slot slot = store.get(lockerId);
+
+            // Lockers were re-initialized meanwhile (there are fewer of them now).
+            if (slot == null) {
+                break;
+            }
+
+            if (slot.isReserved()) {
+                reserved++;
+            } else if (slot.isOccupied()) {
+                occupied++;
+            } else {
+                free++;
+            }
+
+            response.addLockers(toLocker(lockerId, slot));
+        }
+
+        reply(observer, response
+                .setNumLockers(response.getLockersCount())
+                .setFree(free)
+                .setOccupied(occupied)
+                .setReserved(reserved)
+                .build());
+    }
+
+    @Override
+    public void watchOccupancy(Empty request, StreamObserver<Backoffice.Locker> observer) {
+        if (watchers.incrementAndGet() > maxWatchers) {
+            watchers.decrementAndGet();
+            fail(observer, Status.RESOURCE_EXHAUSTED, "Too many watchers");
+            return;
+        }
+
+        Watcher watcher = new Watcher((ServerCallStreamObserver<Backoffice.Locker>) observer);
+        watcher.start();
+    }
+
+    private static Backoffice.Locker toLocker(int lockerId, DropoffStore.Slot slot) {
+        Backoffice.Locker.Builder locker = Backoffice.Locker.newBuilder()
+                .setLockerId(lockerId)
+                .setVersion(slot.getVersion());
+
+        if (slot.isReserved()) {
+            locker.setStatus(Backoffice.LockerStatus.RESERVED).setOrderId(slot.getOrderId());
+        } else if (slot.isOccupied()) {
+            locker.setStatus(Backoffice.LockerStatus.OCCUPIED);
+        } else {
+            locker.setStatus(Backoffice.LockerStatus.FREE);
+        }
+
+        return locker.build();
+    }
+
+    private static <T> void reply(StreamObserver<T> observer, T response) {
+        observer.onNext(response);
+        observer.onCompleted();
+    }
+
+    private static void fail(StreamObserver<?> observer, Status status, String description) {
+        observer.onError(status.withDescription(description).asRuntimeException());
+    }
+
+    /**
+     * A `watch_occupancy` stream. Changed lockers are only marked (by whatever thread has changed them),
+     * their latest state is sent by the executor while the client keeps up, so a slow client costs a bit per locker at most.
+     */
+    private class Watcher implements IntConsumer {
+        private final ServerCallStreamObserver<Backoffice.Locker> observer;
+
+        // Lockers to send, guarded by this.
+        private final BitSet dirty = new BitSet();
+
+        // Only one drain runs at a time, so the observer is never called concurrently.
+        private final AtomicBoolean isScheduled = new AtomicBoolean();
+        private volatile boolean isClosed = false;
+
+        private Watcher(ServerCallStreamObserver<Backoffice.Locker> observer) {
+            this.observer = observer;
+        }
+
+        private void start() {
+            observer.setOnCancelHandler(this::close);
+            observer.setOnReadyHandler(this::schedule);
+
+            synchronized (this) {
+                dirty.set(1, store.getLockersCount() + 1);
+            }
+
+            store.addListener(this);
+            schedule();
+        }
+
+        @Override
+        public void accept(int lockerId) {
+            synchronized (this) {
+                dirty.set(lockerId);
+            }
+
+            schedule();
+        }
+
+        private void schedule() {
+            if (isClosed || !isScheduled.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Marked lockers are sent along with the next change.
+                isScheduled.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!isClosed && observer.isReady()) {
+                    int lockerId;
+
+                    synchronized (this) {
+                        lockerId = dirty.nextSetBit(0);
+
+                        if (lockerId < 0) {
+                            break;
+                        }
+
+                        dirty.clear(lockerId);
+                    }
+
+                    observer.onNext(toLocker(lockerId, store.get(lockerId)));
+                }
+            } catch (Exception e) {
+                log.debug("Failed to send occupancy changes", e);
+                close();
+            } finally {
+                isScheduled.set(false);
+            }
+
+            // A locker could have been marked after the loop has stopped.
+            boolean hasMore;
+
+            synchronized (this) {
+                hasMore = !dirty.isEmpty();
+            }
+
+            if (hasMore && observer.isReady()) {
+                schedule();
+            }
+        }
+
+        // Called on cancellation or a failure to send, whichever is first.
+        private void close() {
+            synchronized (this) {
+                if (isClosed) {
+                    return;
+                }
+                isClosed = true;
+            }
+
+            store.removeListener(this);
+            watchers.decrementAndGet();
+        }
+    }
+
+    public interface Listener {
+        void onReserved(int lockerId, String orderId);
+
+        void onReleased(int lockerId, String orderId);
+    }
+}
@@ -0,0 +1,96 @@
+package za.co.vaultgroup.example.command;
+
+import lombok.Getter;
+import za.co.vaultgroup.example.config.LockerState;
+import za.co.vaultgroup.example.notification.event.EventType;
+
+import java.util.Objects;
+
+/**
+ * An actuation command for a single locker, see {@link CommandQueue}.
+ */
+@Getter
+public class Command {
+    public enum Action {
+        LOCK,
+        UNLOCK,
+        SET_STATE
+    }
+
+    // A unique sequential number, it survives application restarts (see CommandQueue's journal).
+    private final long id;
+    private final int lockerId;
+    private final Action action;
+
+    // Only used by SET_STATE action.
+    private final LockerState state;
+
+    Command(long id, int lockerId, Action action, LockerState state) {
+        this.id = id;
+        this.lockerId = lockerId;
+        this.action = Objects.requireNonNull(action);
+        this.state = state;
+
+        if (action == Action.SET_STATE && state == null) {
+            throw new IllegalArgumentException("Locker state is required");
+        }
+    }
+
+    /**
+     * Whether a command with these parameters brings a locker to the same state, so one of them is redundant.
+     */
+    boolean isSameAs(int lockerId, Action action, LockerState state) {
+        return this.lockerId == lockerId && this.action == action && this.state == state;
+    }
+
+    /**
+     * Whether a command has to be confirmed by a notification (see {@link #isConfirmedBy(EventType)}).
+     * Only locking ones are: an unlock that has been accepted is never sent again, as a customer may have taken
+     * a parcel and left by the time it would be (and there's no notification for a locker becoming ready to open anyway).
+     */
+    boolean needsConfirmation() {
+        return isLocking();
+    }
+
+    /**
+     * Whether a notification proves the command has taken effect.
+     */
+    boolean isConfirmedBy(EventType eventType) {
+        if (isLocking()) {
+            return eventType == EventType.DOOR_LOCKED;
+        } else {
+            return eventType == EventType.DOOR_UNLOCKED || eventType == EventType.DOOR_OPENED;
+        }
+    }
+
+    /**
+     * Whether a locker in this state needs no command to get there, see {@link za.co.vaultgroup.example.Api#getLockerStates()}.
+     */
+    boolean isInEffectIn(LockerState lockerState) {
+        return isLocking() ? lockerState == LockerState.LOCKED : lockerState != LockerState.LOCKED;
+    }
+
+    boolean isLocking() {
+        return action == Action.LOCK || (action == Action.SET_STATE && state == LockerState.LOCKED);
+    }
+
+    String toLine() {
+        return id + " " + lockerId + " " + action + (state == null ? "" : " " + state);
+    }
+
+    static Command fromLine(String line) {
+        String[] parts = line.trim().split(" ");
+
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Malformed command: " + line);
+        }
+
+        LockerState state = parts.length > 3 ? LockerState.valueOf(parts[3]) : null;
+        return new Command(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Action.valueOf(parts[2]), state);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + action + (state == null ? "" : " " + state) + " locker #" + lockerId;
+    }
+}
@@ -0,0 +1,392 @@
+package za.co.vaultgroup.example.command;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.config.LockerState;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+import za.co.vaultgroup.example.storage.Journal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes sure lock/unlock commands eventually take effect even if some RPC calls fail.
+ *
+ * There's only one command pending per locker: re-submitting the same command is a no-op,
+ * a different one replaces whatever is pending. The first attempt is made right away by a calling thread,
+ * the following ones are made in background with an exponential backoff, so the event thread never waits for
+ * a recovering slave board. A lock command is considered done once a matching notification arrives
+ * (see {@link #confirm(LockerStateChangedEvent)}); if it doesn't, actual locker states are checked (a locker that is already
+ * latched never reports that), and only if it's still not in effect the command is sent again. An unlock command is done
+ * once a device has accepted it, it's never sent again after that (see {@link Command#needsConfirmation()}).
+ * Pending commands are kept in a journal file, so they survive application restarts.
+ * Commands to the lockers of a failing slave board are not sent at all (see {@link SlaveBreakers}), they're parked
+ * without using up their attempts however long the outage is, and sent once it's over (see {@link #resume()}).
+ *
+ * Pending commands are split into slices by lockerId, each one with a lock of its own, so event dispatcher's shard threads
+ * confirming commands of different lockers rarely wait for each other (see {@link za.co.vaultgroup.example.notification.EventDispatcher}).
+ */
+@Slf4j
+public class CommandQueue {
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+    private static final long CONFIRMATION_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final Api api;
+    private final Journal journal;
+    private final SlaveBreakers breakers;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "command-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Index is a lockerId modulo the number of slices.
+    private final Slice[] slices;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicBoolean isSaveScheduled = new AtomicBoolean();
+
+    /**
+     * @param sliceCount how many slices (locks) pending commands are split into, usually the number of event shards.
+     */
+    public CommandQueue(Api api, Journal journal, SlaveBreakers breakers, int sliceCount) {
+        if (sliceCount < 1) {
+            throw new IllegalArgumentException("At least one slice is required");
+        }
+
+        this.api = api;
+        this.journal = journal;
+        this.breakers = breakers;
+        this.slices = new Slice[sliceCount];
+
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    /**
+     * Restores the lock commands left pending by a previous run and re-sends them. Unlocks are dropped: a locker is
+     * only opened for a customer who is there, so an unlock left from a previous run would open it for nobody.
+     */
+    public void start() {
+        List<String> lines;
+
+        try {
+            lines = journal.load();
+        } catch (IOException e) {
+            log.error("Failed to load pending commands from {}", journal.getPath(), e);
+            return;
+        }
+
+        int restored = 0;
+
+        for (String line : lines) {
+            Command command;
+
+            try {
+                command = Command.fromLine(line);
+            } catch (IllegalArgumentException e) {
+                log.error("Skipping invalid journal record: {}", line);
+                continue;
+            }
+
+            nextId.accumulateAndGet(command.getId() + 1, Math::max);
+
+            if (!command.isLocking()) {
+                log.info("Dropping command {} left by a previous run", command);
+                continue;
+            }
+
+            Slice slice = sliceOf(command.getLockerId());
+
+            synchronized (slice) {
+                Entry entry = new Entry(slice, command);
+                slice.pending.put(command.getLockerId(), entry);
+                entry.schedule(0);
+            }
+
+            restored++;
+        }
+
+        if (!lines.isEmpty()) {
+            log.info("Restored {} pending command(s)", restored);
+        }
+
+        // Forget the dropped ones.
+        if (restored < lines.size()) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * @return whether the command has been successfully sent at the first attempt.
+     */
+    public boolean setLockState(int lockerId, boolean isLocked) {
+        return submit(lockerId, isLocked ? Command.Action.LOCK : Command.Action.UNLOCK, null).isSent;
+    }
+
+    /**
+     * @return whether the command has been successfully sent at the first attempt.
+     */
+    public boolean setLockerState(int lockerId, LockerState state) {
+        return submit(lockerId, Command.Action.SET_STATE, state).isSent;
+    }
+
+    /**
+     * Locks a locker like {@link #setLockState(int, boolean)} does, for a caller that has to know how it ends.
+     *
+     * @return a future that completes with true once the lock is in effect, or with false once the queue gives up on it
+     *         or it's replaced by another command. It's completed by whatever thread decides that, never under a lock.
+     */
+    public CompletableFuture<Boolean> lock(int lockerId) {
+        return submit(lockerId, Command.Action.LOCK, null).outcome;
+    }
+
+    /**
+     * Sends the parked commands whose lockers are available again, called once a slave board recovers.
+     */
+    public void resume() {
+        for (Slice slice : slices) {
+            synchronized (slice) {
+                for (Entry entry : slice.pending.values()) {
+                    if (entry.isParked && breakers.isLockerAvailable(entry.command.getLockerId())) {
+                        entry.isParked = false;
+                        entry.schedule(0);
+                    }
+                }
+            }
+        }
+    }
+
+    public void confirm(LockerStateChangedEvent event) {
+        Slice slice = sliceOf(event.getLockerId());
+        Entry entry;
+
+        synchronized (slice) {
+            entry = slice.pending.get(event.getLockerId());
+
+            if (entry == null || !entry.command.isConfirmedBy(event.getType())) {
+                return;
+            }
+
+            log.debug("Command {} is confirmed", entry.command);
+            entry.cancel();
+            slice.pending.remove(event.getLockerId());
+            scheduleSave();
+        }
+
+        entry.outcome.complete(true);
+    }
+
+    private Entry submit(int lockerId, Command.Action action, LockerState state) {
+        Slice slice = sliceOf(lockerId);
+        Entry current;
+        Entry entry;
+
+        synchronized (slice) {
+            current = slice.pending.get(lockerId);
+
+            // The very same command is already sent and waiting for confirmation, or will be retried shortly.
+            if (current != null && current.command.isSameAs(lockerId, action, state)) {
+                return current;
+            }
+
+            if (current != null) {
+                current.cancel();
+            }
+
+            entry = new Entry(slice, new Command(nextId.getAndIncrement(), lockerId, action, state));
+            slice.pending.put(lockerId, entry);
+            scheduleSave();
+        }
+
+        if (current != null) {
+            current.outcome.complete(false);
+        }
+
+        attempt(entry);
+        return entry;
+    }
+
+    private void attempt(Entry entry) {
+        Slice slice = entry.slice;
+        int lockerId = entry.command.getLockerId();
+        boolean isRetry;
+
+        synchronized (slice) {
+            // The command is either confirmed or replaced by some other one.
+            if (slice.pending.get(lockerId) != entry) {
+                return;
+            }
+
+            // Checked under the lock, so a slave board can't recover between this check and parking (see resume() method).
+            if (!breakers.isLockerAvailable(lockerId)) {
+                log.debug("Slave board of locker #{} is failing, command {} is parked", lockerId, entry.command);
+                entry.isParked = true;
+                entry.isSent = false;
+                return;
+            }
+
+            isRetry = entry.attempts > 0;
+            entry.attempts++;
+        }
+
+        // No notification doesn't mean the command has no effect, e.g. locking a locker that is already latched.
+        if (isRetry && entry.command.needsConfirmation() && isInEffect(entry.command)) {
+            synchronized (slice) {
+                if (slice.pending.get(lockerId) != entry) {
+                    return;
+                }
+
+                log.debug("Command {} is already in effect", entry.command);
+                slice.pending.remove(lockerId);
+                scheduleSave();
+            }
+
+            entry.outcome.complete(true);
+            return;
+        }
+
+        boolean isSuccessful = execute(entry.command);
+        breakers.record(lockerId, isSuccessful);
+        Boolean outcome = null;
+
+        synchronized (slice) {
+            if (slice.pending.get(lockerId) == entry) {
+                entry.isSent = isSuccessful;
+
+                if (entry.attempts >= MAX_ATTEMPTS) {
+                    log.error("Giving up on command {} after {} attempt(s)", entry.command, entry.attempts);
+                    slice.pending.remove(lockerId);
+                    scheduleSave();
+                    outcome = false;
+                } else if (isSuccessful && !entry.command.needsConfirmation()) {
+                    slice.pending.remove(lockerId);
+                    scheduleSave();
+                    outcome = true;
+                } else if (isSuccessful) {
+                    entry.schedule(CONFIRMATION_TIMEOUT_MILLIS);
+                } else {
+                    entry.schedule(Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << (entry.attempts - 1)));
+                }
+            }
+        }
+
+        if (outcome != null) {
+            entry.outcome.complete(outcome);
+        }
+    }
+
+    private boolean isInEffect(Command command) {
+        List<LockerState> states;
+
+        try {
+            states = api.getLockerStates();
+        } catch (RuntimeException e) {
+            log.debug("Failed to check state of locker #{}", command.getLockerId(), e);
+            return false;
+        }
+
+        // Make sure to convert 1-based lockerId to its 0-based index in a list.
+        int index = command.getLockerId() - 1;
+        return states != null && index >= 0 && index < states.size() && command.isInEffectIn(states.get(index));
+    }
+
+    private boolean execute(Command command) {
+        switch (command.getAction()) {
+            case LOCK:
+                return api.setLockState(command.getLockerId(), true);
+
+            case UNLOCK:
+                return api.setLockState(command.getLockerId(), false);
+
+            case SET_STATE:
+                return api.setLockerState(command.getLockerId(), command.getState());
+
+            default:
+                throw new IllegalArgumentException("Unexpected command action: " + command.getAction());
+        }
+    }
+
+    private Slice sliceOf(int lockerId) {
+        return slices[Math.floorMod(lockerId, slices.length)];
+    }
+
+    private void scheduleSave() {
+        if (isSaveScheduled.compareAndSet(false, true)) {
+            executor.execute(this::save);
+        }
+    }
+
+    private void save() {
+        List<String> lines = new ArrayList<>();
+
+        // Reset before collecting, so a change made meanwhile schedules one more save.
+        isSaveScheduled.set(false);
+
+        for (Slice slice : slices) {
+            synchronized (slice) {
+                for (Entry entry : slice.pending.values()) {
+                    lines.add(entry.command.toLine());
+                }
+            }
+        }
+
+        try {
+            journal.save(lines);
+        } catch (IOException e) {
+            log.error("Failed to save pending commands to {}", journal.getPath(), e);
+        }
+    }
+
+    /**
+     * Pending commands of some lockers, guarded by the slice itself.
+     */
+    private static class Slice {
+        // Key is a lockerId.
+        private final Map<Integer, Entry> pending = new HashMap<>();
+    }
+
+    private class Entry {
+        private final Slice slice;
+        private final Command command;
+        private int attempts = 0;
+
+        // Volatile as it's read by a submitter without holding the lock.
+        private volatile boolean isSent = false;
+
+        // Waits for a slave board to recover, not scheduled meanwhile.
+        private boolean isParked = false;
+        private ScheduledFuture<?> future;
+
+        // See lock() method.
+        private final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+
+        private Entry(Slice slice, Command command) {
+            this.slice = slice;
+            this.command = command;
+        }
+
+        private void schedule(long delayMillis) {
+            future = executor.schedule(() -> attempt(this), delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
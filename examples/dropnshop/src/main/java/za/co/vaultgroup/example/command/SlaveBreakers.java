@@ -0,0 +1,164 @@
+package za.co.vaultgroup.example.command;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.config.Settings.BreakerSettings;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A circuit breaker per slave board, so commands to the lockers of a board that dropped off the bus fail right away
+ * instead of waiting for RPC retries, while the lockers of healthy boards aren't affected.
+ *
+ * A breaker opens after `failure-threshold` failed commands in a row. An open breaker is probed periodically
+ * (half-open state), commands keep failing fast until a probe succeeds and the breaker is closed again.
+ */
+@Slf4j
+public class SlaveBreakers {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean isEnabled;
+    private final int failureThreshold;
+    private final long probeIntervalMillis;
+    private final IntUnaryOperator slaveOf;
+    private final IntPredicate probe;
+    private final Listener listener;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "slave-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Index is a slave board, both grow on demand.
+    private State[] states = new State[INITIAL_CAPACITY];
+    private int[] failures = new int[INITIAL_CAPACITY];
+
+    /**
+     * @param slaveOf returns a slave board of a locker (by lockerId) or -1 if unknown, such lockers are never blocked.
+     * @param probe tells whether a slave board responds again, called by a background thread.
+     * @param listener is told when a slave board fails or recovers, called outside the lock.
+     */
+    public SlaveBreakers(BreakerSettings settings, IntUnaryOperator slaveOf, IntPredicate probe, Listener listener) {
+        this.isEnabled = settings.isEnabled();
+        this.failureThreshold = settings.getFailureThreshold();
+        this.probeIntervalMillis = TimeUnit.SECONDS.toMillis(settings.getProbeIntervalSeconds());
+        this.slaveOf = Objects.requireNonNull(slaveOf);
+        this.probe = Objects.requireNonNull(probe);
+        this.listener = Objects.requireNonNull(listener);
+
+        Arrays.fill(states, State.CLOSED);
+    }
+
+    /**
+     * @return whether commands to the locker are sent, false if its slave board is failing.
+     */
+    public boolean isLockerAvailable(int lockerId) {
+        return isAvailable(slaveOf.applyAsInt(lockerId));
+    }
+
+    public synchronized boolean isAvailable(int slave) {
+        return slave < 0 || slave >= states.length || states[slave] == State.CLOSED;
+    }
+
+    /**
+     * Records an outcome of a command sent to the locker.
+     */
+    public void record(int lockerId, boolean isSuccessful) {
+        int slave = slaveOf.applyAsInt(lockerId);
+
+        if (!isEnabled || slave < 0) {
+            return;
+        }
+
+        synchronized (this) {
+            ensureCapacity(slave);
+
+            if (isSuccessful) {
+                failures[slave] = 0;
+                return;
+            }
+
+            // Commands sent before the breaker opened may still be failing.
+            if (states[slave] != State.CLOSED || ++failures[slave] < failureThreshold) {
+                return;
+            }
+
+            states[slave] = State.OPEN;
+        }
+
+        log.error("Slave board #{} is failing, commands to its lockers fail fast until it responds again", slave);
+        notifyListener(slave, false);
+        schedule(slave);
+    }
+
+    private void schedule(int slave) {
+        executor.schedule(() -> probe(slave), probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe(int slave) {
+        synchronized (this) {
+            states[slave] = State.HALF_OPEN;
+        }
+
+        boolean isResponding;
+
+        try {
+            isResponding = probe.test(slave);
+        } catch (Exception e) {
+            log.debug("Slave board #{} probe failed", slave, e);
+            isResponding = false;
+        }
+
+        synchronized (this) {
+            states[slave] = isResponding ? State.CLOSED : State.OPEN;
+            failures[slave] = 0;
+        }
+
+        if (isResponding) {
+            log.info("Slave board #{} responds again", slave);
+            notifyListener(slave, true);
+        } else {
+            schedule(slave);
+        }
+    }
+
+    private void notifyListener(int slave, boolean isAvailable) {
+        try {
+            listener.onAvailabilityChanged(slave, isAvailable);
+        } catch (Exception e) {
+            log.error("Failed to handle availability change of slave board #{}", slave, e);
+        }
+    }
+
+    // Must be called while holding the lock.
+    private void ensureCapacity(int slave) {
+        if (slave < states.length) {
+            return;
+        }
+
+        int capacity = Math.max(states.length * 2, slave + 1);
+        int length = states.length;
+
+        states = Arrays.copyOf(states, capacity);
+        failures = Arrays.copyOf(failures, capacity);
+        Arrays.fill(states, length, capacity, State.CLOSED);
+    }
+
+    public interface Listener {
+        /**
+         * @param isAvailable false when a slave board has started failing, true when it responds again.
+         */
+        void onAvailabilityChanged(int slave, boolean isAvailable);
+    }
+}
@@ -1,10 +1,29 @@
 package za.co.vaultgroup.example.config;
 
 /**
- * Duration of buzzing sound in milliseconds.
+ * Buzzing sounds, a duration can be overridden in settings (see {@link Tunables}).
+ * Declared in order of importance: when sounds are merged (see {@link za.co.vaultgroup.example.app.Buzzer}),
+ * the latest declared one wins whatever the durations are.
  */
-public final class Buzz {
-    public static final int EVENT = 100;
-    public static final int ERROR = 400;
-    public static final int ANNOYING = 900;
+public enum Buzz {
+    EVENT(100),
+    ERROR(400),
+    ANNOYING(900);
+
+    private final int defaultDuration;
+
+    Buzz(int defaultDuration) {
+        this.defaultDuration = defaultDuration;
+    }
+
+    public int getDefaultDuration() {
+        return defaultDuration;
+    }
+
+    /**
+     * @return duration of buzzing sound in milliseconds.
+     */
+    public int getDuration() {
+        return Tunables.get().getDuration(this);
+    }
 }
@@ -1,8 +1,10 @@
 package za.co.vaultgroup.example.config;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.Arrays;
 import java.util.List;
 
 @Getter
@@ -10,4 +12,74 @@ import java.util.List;
 public class Config {
     private int lockersCount;
     private List<Integer> mapping;
+
+    // Prefix sums over the mapping: firstLockerIds[slave] is a lockerId of the first locker of that slave board,
+    // the last element is the lockerId right after the last locker.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int[] firstLockerIds = {1};
+
+    public void setMapping(List<Integer> mapping) {
+        int[] firstLockerIds = new int[mapping.size() + 1];
+        firstLockerIds[0] = 1;
+
+        for (int slave = 0; slave < mapping.size(); slave++) {
+            firstLockerIds[slave + 1] = firstLockerIds[slave] + mapping.get(slave);
+        }
+
+        this.mapping = mapping;
+        this.firstLockerIds = firstLockerIds;
+    }
+
+    /**
+     * @return zero-based index of a slave board (a column of lockers) the locker belongs to or -1 if unknown.
+     */
+    public int slaveOf(int lockerId) {
+        return LockerCoordinates.slaveOf(coordinatesOf(lockerId));
+    }
+
+    /**
+     * @return one-based position of the locker within its slave board or -1 if unknown.
+     */
+    public int positionOf(int lockerId) {
+        return LockerCoordinates.positionOf(coordinatesOf(lockerId));
+    }
+
+    /**
+     * @return {@link LockerCoordinates} of the locker or {@link LockerCoordinates#UNKNOWN}.
+     */
+    public int coordinatesOf(int lockerId) {
+        int[] firstLockerIds = this.firstLockerIds;
+
+        if (lockerId < 1 || lockerId >= firstLockerIds[firstLockerIds.length - 1]) {
+            return LockerCoordinates.UNKNOWN;
+        }
+
+        int index = Arrays.binarySearch(firstLockerIds, lockerId);
+
+        // The locker is either the first one of a slave board or somewhere after it (see Arrays.binarySearch() for the math).
+        int slave = index >= 0 ? index : -index - 2;
+
+        // Skip slave boards that have no lockers at all.
+        while (firstLockerIds[slave + 1] == lockerId) {
+            slave++;
+        }
+
+        return LockerCoordinates.of(slave, lockerId - firstLockerIds[slave] + 1);
+    }
+
+    /**
+     * @return a lockerId or 0 if there's no such locker.
+     */
+    public int lockerIdOf(int coordinates) {
+        int[] firstLockerIds = this.firstLockerIds;
+        int slave = LockerCoordinates.slaveOf(coordinates);
+        int position = LockerCoordinates.positionOf(coordinates);
+
+        if (slave < 0 || slave + 1 >= firstLockerIds.length || firstLockerIds[slave] + position > firstLockerIds[slave + 1]) {
+            return 0;
+        }
+
+        return firstLockerIds[slave] + position - 1;
+    }
 }
@@ -0,0 +1,9 @@
+package za.co.vaultgroup.example.config;
+
+/**
+ * Colours of locker LEDs (see `set_led` RPC), 0xRRGGBB.
+ */
+public final class Led {
+    public static final int OFF = 0x000000;
+    public static final int GREEN = 0x00FF00;
+}
@@ -0,0 +1,47 @@
+package za.co.vaultgroup.example.config;
+
+/**
+ * A locker position packed into a single int (so it's never boxed): zero-based slave board (column) index
+ * in the upper half and one-based position within the slave board in the lower half.
+ * Use {@link Config#coordinatesOf(int)} and {@link Config#lockerIdOf(int)} to convert from/to a lockerId.
+ */
+public final class LockerCoordinates {
+    /**
+     * Coordinates of a locker that is not in the locker map.
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final int POSITION_BITS = 16;
+    private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+    private static final int MAX_SLAVE = Short.MAX_VALUE;
+
+    private LockerCoordinates() {
+    }
+
+    /**
+     * @param slave zero-based slave board index.
+     * @param position one-based locker position within the slave board.
+     */
+    public static int of(int slave, int position) {
+        if (slave < 0 || slave > MAX_SLAVE || position < 1 || position > POSITION_MASK) {
+            throw new IllegalArgumentException("Invalid locker coordinates: [" + slave + ":" + position + "]");
+        }
+
+        return (slave << POSITION_BITS) | position;
+    }
+
+    public static int slaveOf(int coordinates) {
+        return coordinates == UNKNOWN ? -1 : coordinates >>> POSITION_BITS;
+    }
+
+    public static int positionOf(int coordinates) {
+        return coordinates == UNKNOWN ? -1 : coordinates & POSITION_MASK;
+    }
+
+    /**
+     * @return coordinates formatted the same way the hardware does, e.g. "[0:12]".
+     */
+    public static String toString(int coordinates) {
+        return "[" + slaveOf(coordinates) + ":" + positionOf(coordinates) + "]";
+    }
+}
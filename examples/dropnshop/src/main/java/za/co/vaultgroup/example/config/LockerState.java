@@ -3,5 +3,11 @@ package za.co.vaultgroup.example.config;
 public enum LockerState {
     OPEN,
     CLOSED,
-    LOCKED
+    LOCKED,
+
+    /**
+     * Only supported by multistate (dsv) slaves: the lock button can be used to open and lock a locker
+     * repeatedly without any further keypad input.
+     */
+    READY_OPEN
 }
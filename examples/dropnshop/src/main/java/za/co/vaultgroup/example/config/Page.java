@@ -2,6 +2,7 @@ package za.co.vaultgroup.example.config;
 
 /**
  * A class that represents a text message displayed on an LCD screen (see {@link za.co.vaultgroup.example.app.Screen}).
+ * A page must take the same format arguments as its default message does, even if the text is overridden.
  */
 public enum Page {
     /**
@@ -14,6 +15,11 @@ public enum Page {
      */
     STANDBY("Press number\nto make a choice\n1 to dropoff\n2 to pickup"),
 
+    /**
+     * See {@link za.co.vaultgroup.example.app.VaultState#STANDBY}, used instead of {@link #STANDBY} when courier dropoff is enabled.
+     */
+    STANDBY_COURIER("Press number\n1 to dropoff\n2 to pickup\n3 courier dropoff"),
+
     /**
      * See {@link za.co.vaultgroup.example.app.VaultState#STANDBY}
      * and {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_PASSWORD}
@@ -35,19 +41,35 @@ public enum Page {
      */
     DROPOFF_PASSWORD_TOO_SHORT("Your password is\ntoo short.\nPlease,\nuse exactly 5 digits"),
 
+    /**
+     * See {@link za.co.vaultgroup.example.app.VaultState#COURIER_PHONE}
+     */
+    COURIER_PHONE("Enter recipient's\nphone number"),
+
+    /**
+     * See {@link za.co.vaultgroup.example.app.VaultState#COURIER_PHONE}
+     * and {@link za.co.vaultgroup.example.app.VaultState#ALERT}
+     */
+    COURIER_PHONE_INVALID("Phone number\nis invalid"),
+
     /**
      * See {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_PENDING}
      */
     DROPOFF("Please drop\nyour belongings\nto locker #%d\nand close the locker"),
 
     /**
-     * See {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_PENDING}
+     * See {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_LOCKING}
+     */
+    DROPOFF_LOCKING("Locking locker #%d\nPlease wait"),
+
+    /**
+     * See {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_LOCKING}
      * and {@link za.co.vaultgroup.example.app.VaultState#ALERT}
      */
     DROPOFF_SUCCESS("Thank you!\nHave a good shopping"),
 
     /**
-     * See {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_PENDING}
+     * See {@link za.co.vaultgroup.example.app.VaultState#DROPOFF_LOCKING}
      * and {@link za.co.vaultgroup.example.app.VaultState#ALERT}
      */
     DROPOFF_CANCELLED("Dropoff cancelled"),
@@ -84,6 +106,16 @@ public enum Page {
      */
     PICKUP("Locker is opening...\nPlease pick up\nyour belongings\nfrom locker #%d"),
 
+    /**
+     * See {@link za.co.vaultgroup.example.app.VaultState#ALERT}, multistate mode only.
+     */
+    PICKUP_READY("Locker #%d is ready\nUse lock button\nto open and close it"),
+
+    /**
+     * See {@link za.co.vaultgroup.example.app.VaultState#ALERT}, multistate mode only.
+     */
+    PICKUP_FINISHED("Locker #%d\nis locked again\nThank you!"),
+
     /**
      * See {@link za.co.vaultgroup.example.app.VaultState#ALERT}
      */
@@ -103,13 +135,20 @@ public enum Page {
      * To give it a nice consistent look make sure to put newline characters where you expect a text wrapping,
      * otherwise it'll be a hard wrapping which it's particularly nice. :-)
      */
-    private final String message;
+    private final String defaultMessage;
+
+    Page(String defaultMessage) {
+        this.defaultMessage = defaultMessage;
+    }
 
-    Page(String message) {
-        this.message = message;
+    public String getDefaultMessage() {
+        return defaultMessage;
     }
 
+    /**
+     * @return a message text, it can be overridden in settings (see {@link Tunables}).
+     */
     public String getMessage() {
-        return message;
+        return Tunables.get().getMessage(this);
     }
 }
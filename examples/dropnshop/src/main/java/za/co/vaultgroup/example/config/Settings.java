@@ -10,6 +10,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Getter
@@ -18,8 +23,19 @@ import java.io.InputStream;
 public class Settings {
     private static final String FILENAME = "settings.yaml";
 
+    // Path to an external settings file (e.g. `-Ddropnshop.settings=/etc/dropnshop/settings.yaml`),
+    // unlike the bundled one it's watched for changes (see SettingsWatcher).
+    private static final String PATH_PROPERTY = "dropnshop.settings";
+
     private static final int PORT_MIN = 1024;
     private static final int PORT_MAX = 49151;
+    private static final int PORT_LIMIT = 65535;
+
+    // Same as a customer's password, see Vault.
+    private static final int RETRIEVAL_CODE_DIGITS = 5;
+
+    // A buzzer sound longer than that is surely a typo.
+    private static final int BUZZ_DURATION_LIMIT = 5000;
 
     @JsonProperty("notifications")
     private NotificationSettings notificationSettings;
@@ -27,7 +43,72 @@ public class Settings {
     @JsonProperty("grpc-server")
     private String grpcServer;
 
+    @JsonProperty("tls")
+    private TlsSettings tlsSettings = new TlsSettings();
+
+    @JsonProperty("display")
+    private DisplaySettings displaySettings = new DisplaySettings();
+
+    @JsonProperty("commands")
+    private CommandSettings commandSettings = new CommandSettings();
+
+    @JsonProperty("audit")
+    private AuditSettings auditSettings = new AuditSettings();
+
+    @JsonProperty("courier")
+    private CourierSettings courierSettings = new CourierSettings();
+
+    @JsonProperty("sms")
+    private SmsSettings smsSettings = new SmsSettings();
+
+    @JsonProperty("multistate")
+    private MultistateSettings multistateSettings = new MultistateSettings();
+
+    @JsonProperty("mqtt")
+    private MqttSettings mqttSettings = new MqttSettings();
+
+    @JsonProperty("publisher")
+    private PublisherSettings publisherSettings = new PublisherSettings();
+
+    @JsonProperty("analytics")
+    private AnalyticsSettings analyticsSettings = new AnalyticsSettings();
+
+    @JsonProperty("expiry")
+    private ExpirySettings expirySettings = new ExpirySettings();
+
+    @JsonProperty("tuning")
+    private TuningSettings tuningSettings = new TuningSettings();
+
+    @JsonProperty("snapshot")
+    private SnapshotSettings snapshotSettings = new SnapshotSettings();
+
+    @JsonProperty("recorder")
+    private RecorderSettings recorderSettings = new RecorderSettings();
+
+    @JsonProperty("debounce")
+    private DebounceSettings debounceSettings = new DebounceSettings();
+
+    @JsonProperty("breaker")
+    private BreakerSettings breakerSettings = new BreakerSettings();
+
+    @JsonProperty("backoffice")
+    private BackofficeSettings backofficeSettings = new BackofficeSettings();
+
+    /**
+     * @return a path to an external settings file or null if the bundled one is used.
+     */
+    public static Path getExternalPath() {
+        String path = System.getProperty(PATH_PROPERTY);
+        return StringUtils.isEmpty(path) ? null : Paths.get(path);
+    }
+
     public static Settings get() {
+        Path externalPath = getExternalPath();
+
+        if (externalPath != null) {
+            return load(externalPath);
+        }
+
         try {
             ClassLoader classLoader = Settings.class.getClassLoader();
             InputStream inputStream = classLoader.getResourceAsStream(FILENAME);
@@ -37,27 +118,70 @@ public class Settings {
                 return null;
             }
 
-            ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
-            Settings settings = objectMapper.readValue(inputStream, Settings.class);
-
-            if (validate(settings)) {
-                return settings;
-            } else {
-                log.error("Settings are invalid");
-                return null;
-            }
+            return read(inputStream);
         } catch (Exception e) {
             log.error("Failed to load application settings", e);
             return null;
         }
     }
 
+    /**
+     * Reads settings from an external file.
+     *
+     * @return valid settings or null.
+     */
+    public static Settings load(Path path) {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return read(inputStream);
+        } catch (Exception e) {
+            log.error("Failed to load application settings from {}", path, e);
+            return null;
+        }
+    }
+
+    private static Settings read(InputStream inputStream) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+        Settings settings = objectMapper.readValue(inputStream, Settings.class);
+
+        if (validate(settings)) {
+            return settings;
+        } else {
+            log.error("Settings are invalid");
+            return null;
+        }
+    }
+
     private static boolean validate(Settings settings) {
         if (StringUtils.isEmpty(settings.getGrpcServer())) {
             log.error("Invalid settings: missing required `grpc-server` property");
             return false;
         }
 
+        TlsSettings tlsSettings = settings.getTlsSettings();
+
+        if (tlsSettings == null) {
+            log.error("Invalid settings: `tls` must not be empty");
+            return false;
+        }
+
+        if (tlsSettings.isEnabled()) {
+            // Mutual TLS needs both or none.
+            if (StringUtils.isEmpty(tlsSettings.getCertChain()) != StringUtils.isEmpty(tlsSettings.getPrivateKey())) {
+                log.error("Invalid settings: `tls.cert-chain` and `tls.private-key` must be set together");
+                return false;
+            }
+
+            if (tlsSettings.getSessionCacheSize() < 1 || tlsSettings.getSessionTimeoutSeconds() < 1) {
+                log.error("Invalid settings: `tls.session-cache-size` and `tls.session-timeout-seconds` must be positive");
+                return false;
+            }
+
+            if (tlsSettings.getReloadIntervalSeconds() < 0) {
+                log.error("Invalid settings: `tls.reload-interval-seconds` must not be negative");
+                return false;
+            }
+        }
+
         NotificationSettings notificationSettings = settings.getNotificationSettings();
 
         if (notificationSettings == null) {
@@ -70,6 +194,255 @@ public class Settings {
             return false;
         }
 
+        if (notificationSettings.getEventShards() < 0) {
+            log.error("Invalid settings: `notifications.event-shards` must not be negative");
+            return false;
+        }
+
+        DisplaySettings displaySettings = settings.getDisplaySettings();
+
+        if (displaySettings == null) {
+            log.error("Invalid settings: `display` must not be empty");
+            return false;
+        }
+
+        if (displaySettings.getColumns() < 1 || displaySettings.getRows() < 1) {
+            log.error("Invalid settings: `display.columns` and `display.rows` must be positive");
+            return false;
+        }
+
+        if (displaySettings.getWriteOverhead() < 0) {
+            log.error("Invalid settings: `display.write-overhead` must not be negative");
+            return false;
+        }
+
+        MirrorSettings mirrorSettings = displaySettings.getMirrorSettings();
+
+        if (mirrorSettings != null) {
+            if (StringUtils.isEmpty(mirrorSettings.getHost())) {
+                log.error("Invalid settings: missing required `display.mirror.host` property");
+                return false;
+            }
+
+            if (mirrorSettings.getPort() < 1 || mirrorSettings.getPort() > PORT_LIMIT) {
+                log.error("Invalid settings: `display.mirror.port` must be between 1 and {}", PORT_LIMIT);
+                return false;
+            }
+        }
+
+        CommandSettings commandSettings = settings.getCommandSettings();
+
+        if (commandSettings == null || StringUtils.isEmpty(commandSettings.getJournal())) {
+            log.error("Invalid settings: `commands.journal` must not be empty");
+            return false;
+        }
+
+        AuditSettings auditSettings = settings.getAuditSettings();
+
+        if (auditSettings == null || StringUtils.isEmpty(auditSettings.getSpool())) {
+            log.error("Invalid settings: `audit.spool` must not be empty");
+            return false;
+        }
+
+        if (auditSettings.getMaxInFlight() < 1) {
+            log.error("Invalid settings: `audit.max-in-flight` must be positive");
+            return false;
+        }
+
+        CourierSettings courierSettings = settings.getCourierSettings();
+
+        if (courierSettings == null) {
+            log.error("Invalid settings: `courier` must not be empty");
+            return false;
+        }
+
+        if (courierSettings.isEnabled()) {
+            if (courierSettings.getMinPhoneDigits() < 1 || courierSettings.getMinPhoneDigits() > courierSettings.getMaxPhoneDigits()) {
+                log.error("Invalid settings: `courier.min-phone-digits` must be between 1 and `courier.max-phone-digits`");
+                return false;
+            }
+
+            if (StringUtils.isEmpty(courierSettings.getMessage())) {
+                log.error("Invalid settings: `courier.message` must not be empty");
+                return false;
+            }
+        }
+
+        SmsSettings smsSettings = settings.getSmsSettings();
+
+        if (smsSettings == null || StringUtils.isEmpty(smsSettings.getOutbox())) {
+            log.error("Invalid settings: `sms.outbox` must not be empty");
+            return false;
+        }
+
+        if (smsSettings.getCapacity() < 1 || smsSettings.getRatePerMinute() < 1) {
+            log.error("Invalid settings: `sms.capacity` and `sms.rate-per-minute` must be positive");
+            return false;
+        }
+
+        if (settings.getMultistateSettings() == null) {
+            log.error("Invalid settings: `multistate` must not be empty");
+            return false;
+        }
+
+        MqttSettings mqttSettings = settings.getMqttSettings();
+
+        if (mqttSettings == null) {
+            log.error("Invalid settings: `mqtt` must not be empty");
+            return false;
+        }
+
+        if (mqttSettings.isEnabled()) {
+            if (StringUtils.isAnyEmpty(mqttSettings.getBrokerUrl(), mqttSettings.getClientId(), mqttSettings.getTopic(), mqttSettings.getIntegrationName(), mqttSettings.getIntegrationHost())) {
+                log.error("Invalid settings: `mqtt.broker-url`, `mqtt.client-id`, `mqtt.topic`, `mqtt.integration-name` and `mqtt.integration-host` are required");
+                return false;
+            }
+
+            if (mqttSettings.getIntegrationPort() < 1 || mqttSettings.getIntegrationPort() > PORT_LIMIT) {
+                log.error("Invalid settings: `mqtt.integration-port` must be between 1 and {}", PORT_LIMIT);
+                return false;
+            }
+        }
+
+        if (settings.getPublisherSettings() == null) {
+            log.error("Invalid settings: `publisher` must not be empty");
+            return false;
+        }
+
+        AnalyticsSettings analyticsSettings = settings.getAnalyticsSettings();
+
+        if (analyticsSettings == null || StringUtils.isEmpty(analyticsSettings.getDirectory())) {
+            log.error("Invalid settings: `analytics.directory` must not be empty");
+            return false;
+        }
+
+        ExpirySettings expirySettings = settings.getExpirySettings();
+
+        if (expirySettings == null) {
+            log.error("Invalid settings: `expiry` must not be empty");
+            return false;
+        }
+
+        if (expirySettings.isEnabled()) {
+            if (expirySettings.getMaxDwellHours() < 1) {
+                log.error("Invalid settings: `expiry.max-dwell-hours` must be positive");
+                return false;
+            }
+
+            String retrievalCode = expirySettings.getRetrievalCode();
+
+            if (retrievalCode == null || retrievalCode.length() != RETRIEVAL_CODE_DIGITS || !StringUtils.isNumeric(retrievalCode)) {
+                log.error("Invalid settings: `expiry.retrieval-code` must be {} digits", RETRIEVAL_CODE_DIGITS);
+                return false;
+            }
+        }
+
+        SnapshotSettings snapshotSettings = settings.getSnapshotSettings();
+
+        if (snapshotSettings == null || StringUtils.isEmpty(snapshotSettings.getPath())) {
+            log.error("Invalid settings: `snapshot.path` must not be empty");
+            return false;
+        }
+
+        RecorderSettings recorderSettings = settings.getRecorderSettings();
+
+        if (recorderSettings == null || (recorderSettings.isEnabled() && StringUtils.isEmpty(recorderSettings.getPath()))) {
+            log.error("Invalid settings: `recorder.path` must not be empty");
+            return false;
+        }
+
+        if (recorderSettings.getMaxFiles() <= 0) {
+            log.error("Invalid settings: `recorder.max-files` must be positive");
+            return false;
+        }
+
+        DebounceSettings debounceSettings = settings.getDebounceSettings();
+
+        if (debounceSettings == null) {
+            log.error("Invalid settings: `debounce` must not be empty");
+            return false;
+        }
+
+        if (debounceSettings.isEnabled()) {
+            if (debounceSettings.getQuietMillis() < 1 || debounceSettings.getFlapThreshold() < 1 || debounceSettings.getFlapCooldownSeconds() < 1) {
+                log.error("Invalid settings: `debounce.quiet-millis`, `debounce.flap-threshold` and `debounce.flap-cooldown-seconds` must be positive");
+                return false;
+            }
+        }
+
+        BreakerSettings breakerSettings = settings.getBreakerSettings();
+
+        if (breakerSettings == null) {
+            log.error("Invalid settings: `breaker` must not be empty");
+            return false;
+        }
+
+        if (breakerSettings.isEnabled()) {
+            if (breakerSettings.getFailureThreshold() < 1 || breakerSettings.getProbeIntervalSeconds() < 1) {
+                log.error("Invalid settings: `breaker.failure-threshold` and `breaker.probe-interval-seconds` must be positive");
+                return false;
+            }
+        }
+
+        BackofficeSettings backofficeSettings = settings.getBackofficeSettings();
+
+        if (backofficeSettings == null) {
+            log.error("Invalid settings: `backoffice` must not be empty");
+            return false;
+        }
+
+        if (backofficeSettings.isEnabled()) {
+            if (StringUtils.isEmpty(backofficeSettings.getBindAddress())) {
+                log.error("Invalid settings: `backoffice.bind-address` must not be empty");
+                return false;
+            }
+
+            if (backofficeSettings.getPort() < PORT_MIN || backofficeSettings.getPort() > PORT_MAX) {
+                log.error("Invalid settings: `backoffice.port` must be between {} and {}", PORT_MIN, PORT_MAX);
+                return false;
+            }
+
+            if (backofficeSettings.getThreads() < 1 || backofficeSettings.getQueueSize() < 1 || backofficeSettings.getMaxWatchers() < 0) {
+                log.error("Invalid settings: `backoffice.threads` and `backoffice.queue-size` must be positive, `backoffice.max-watchers` must not be negative");
+                return false;
+            }
+        }
+
+        TuningSettings tuningSettings = settings.getTuningSettings();
+
+        if (tuningSettings == null) {
+            log.error("Invalid settings: `tuning` must not be empty");
+            return false;
+        }
+
+        if (tuningSettings.getTimings() != null) {
+            for (Map.Entry<Timing, Long> entry : tuningSettings.getTimings().entrySet()) {
+                if (entry.getValue() == null || entry.getValue() < 1) {
+                    log.error("Invalid settings: `tuning.timings.{}` must be positive", entry.getKey());
+                    return false;
+                }
+            }
+        }
+
+        if (tuningSettings.getBuzz() != null) {
+            for (Map.Entry<Buzz, Integer> entry : tuningSettings.getBuzz().entrySet()) {
+                if (entry.getValue() == null || entry.getValue() < 1 || entry.getValue() > BUZZ_DURATION_LIMIT) {
+                    log.error("Invalid settings: `tuning.buzz.{}` must be between 1 and {}", entry.getKey(), BUZZ_DURATION_LIMIT);
+                    return false;
+                }
+            }
+        }
+
+        if (tuningSettings.getPages() != null) {
+            for (Map.Entry<Page, String> entry : tuningSettings.getPages().entrySet()) {
+                // Otherwise a page would fail to format with the arguments it's shown with.
+                if (entry.getValue() == null || StringUtils.countMatches(entry.getValue(), '%') != StringUtils.countMatches(entry.getKey().getDefaultMessage(), '%')) {
+                    log.error("Invalid settings: `tuning.pages.{}` must take the same format arguments as \"{}\"", entry.getKey(), entry.getKey().getDefaultMessage());
+                    return false;
+                }
+            }
+        }
+
         return true;
     }
 
@@ -81,5 +454,323 @@ public class Settings {
 
         @JsonProperty("listen-remote")
         private boolean listenRemote = false;
+
+        // How many threads handle door/lock events (see EventDispatcher), zero to use one per CPU core.
+        @JsonProperty("event-shards")
+        private int eventShards = 0;
+    }
+
+    @Getter
+    @Setter
+    public static class DisplaySettings {
+        // It's an actual resolution of LCD screen: 20x4 characters.
+        @JsonProperty("columns")
+        private int columns = 20;
+
+        @JsonProperty("rows")
+        private int rows = 4;
+
+        // See Display#getWriteOverhead().
+        @JsonProperty("write-overhead")
+        private int writeOverhead = 4;
+
+        // Optional, a device to mirror the screen to.
+        @JsonProperty("mirror")
+        private MirrorSettings mirrorSettings;
+    }
+
+    @Getter
+    @Setter
+    public static class MirrorSettings {
+        @JsonProperty("host")
+        private String host;
+
+        @JsonProperty("port")
+        private int port;
+    }
+
+    @Getter
+    @Setter
+    public static class CommandSettings {
+        // A file to keep lock/unlock commands that haven't been confirmed yet.
+        @JsonProperty("journal")
+        private String journal = "dropnshop-commands.journal";
+    }
+
+    @Getter
+    @Setter
+    public static class AuditSettings {
+        // A file to keep audit records that haven't been shipped yet.
+        @JsonProperty("spool")
+        private String spool = "dropnshop-audit.spool";
+
+        // How many `user_audit` calls can be made at once.
+        @JsonProperty("max-in-flight")
+        private int maxInFlight = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class CourierSettings {
+        // Whether couriers can drop parcels off for recipients who then get a pickup code via SMS.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        @JsonProperty("min-phone-digits")
+        private int minPhoneDigits = 10;
+
+        @JsonProperty("max-phone-digits")
+        private int maxPhoneDigits = 15;
+
+        // An SMS text, the first argument is a locker number and the second one is a pickup code.
+        @JsonProperty("message")
+        private String message = "Your parcel is waiting in locker #%d. Pickup code: %s";
+    }
+
+    @Getter
+    @Setter
+    public static class SmsSettings {
+        // A file to keep SMS messages that haven't been sent yet, encrypted by a key kept next to it (`.key` suffix).
+        @JsonProperty("outbox")
+        private String outbox = "dropnshop-sms.journal";
+
+        // How many messages can wait to be sent.
+        @JsonProperty("capacity")
+        private int capacity = 100;
+
+        @JsonProperty("rate-per-minute")
+        private int ratePerMinute = 6;
+    }
+
+    @Getter
+    @Setter
+    public static class TlsSettings {
+        // Whether calls to `grpc-server` are encrypted, only worth it when the controller runs on another box.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // PEM file with CA certificate(s) the server certificate is checked against, system ones are used if not set.
+        @JsonProperty("trust-cert-collection")
+        private String trustCertCollection;
+
+        // Optional, PEM certificate chain and PKCS#8 private key the application authenticates itself with (mutual TLS).
+        @JsonProperty("cert-chain")
+        private String certChain;
+
+        @JsonProperty("private-key")
+        private String privateKey;
+
+        // Optional, a host name expected in the server certificate when it's different from `grpc-server` one (e.g. an IP address is used).
+        @JsonProperty("authority-override")
+        private String authorityOverride;
+
+        // Optional, e.g. [TLSv1.2], all the protocols supported are allowed if not set.
+        // Sessions are only resumed over TLSv1.2 with OpenSSL, so limiting to it saves a full handshake on every reconnect.
+        @JsonProperty("protocols")
+        private List<String> protocols;
+
+        // Sessions are kept, so a reconnect resumes a session instead of a full handshake.
+        @JsonProperty("session-cache-size")
+        private int sessionCacheSize = 64;
+
+        @JsonProperty("session-timeout-seconds")
+        private int sessionTimeoutSeconds = 86400;
+
+        // How often the files above are checked for changes (renewed certificates are picked up without restart), 0 disables that.
+        @JsonProperty("reload-interval-seconds")
+        private int reloadIntervalSeconds = 60;
+    }
+
+    @Getter
+    @Setter
+    public static class MultistateSettings {
+        // Whether slave boards support `set_locker_state` (dsv firmware), so a locker can be accessed repeatedly
+        // after a single keypad authentication.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+    }
+
+    @Getter
+    @Setter
+    public static class MqttSettings {
+        // Whether notifications are received from an MQTT broker instead of UDP (see `notifications.*`).
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // A broker the application subscribes to.
+        @JsonProperty("broker-url")
+        private String brokerUrl = "tcp://localhost:1883";
+
+        @JsonProperty("client-id")
+        private String clientId = "dropnshop";
+
+        @JsonProperty("topic")
+        private String topic = "dropnshop/notifications";
+
+        // Optional, instances within the same group share notifications instead of getting a copy each.
+        @JsonProperty("shared-group")
+        private String sharedGroup;
+
+        // How the hardware sees the broker (see `register_mqtt_integration` RPC).
+        @JsonProperty("integration-name")
+        private String integrationName = "dropnshop";
+
+        @JsonProperty("integration-host")
+        private String integrationHost = "localhost";
+
+        @JsonProperty("integration-port")
+        private int integrationPort = 1883;
+    }
+
+    @Getter
+    @Setter
+    public static class PublisherSettings {
+        // Whether business events (parcel stored, parcel collected, etc.) are published via `send_notification` RPC.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // Optional, see `IntegrationItem` in service.proto.
+        @JsonProperty("bind-addr")
+        private String bindAddr;
+
+        @JsonProperty("send-addr")
+        private String sendAddr;
+    }
+
+    @Getter
+    @Setter
+    public static class AnalyticsSettings {
+        // Whether every transaction is recorded (to `directory`, relative to the working directory).
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // Transaction history, a subdirectory per day.
+        @JsonProperty("directory")
+        private String directory = "analytics";
+    }
+
+    @Getter
+    @Setter
+    public static class ExpirySettings {
+        // Whether parcels that stay in lockers for too long are handed over to staff.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        @JsonProperty("max-dwell-hours")
+        private int maxDwellHours = 72;
+
+        // Replaces a customer's password once a parcel expires, so only staff can retrieve it (via usual pickup).
+        @JsonProperty("retrieval-code")
+        private String retrievalCode;
+    }
+
+    /**
+     * Values that can be changed without restarting the application (see {@link Tunables}),
+     * anything that isn't listed keeps its default value.
+     */
+    @Getter
+    @Setter
+    public static class TuningSettings {
+        // Milliseconds, key is a `Timing` constant (e.g. DROPOFF_PENDING).
+        @JsonProperty("timings")
+        private Map<Timing, Long> timings;
+
+        // Milliseconds, key is a `Buzz` constant (e.g. ERROR).
+        @JsonProperty("buzz")
+        private Map<Buzz, Integer> buzz;
+
+        // Key is a `Page` constant (e.g. GREETING).
+        @JsonProperty("pages")
+        private Map<Page, String> pages;
+    }
+
+    @Getter
+    @Setter
+    public static class SnapshotSettings {
+        // Session state (stored parcels, a transaction in progress) that survives a crash.
+        @JsonProperty("path")
+        private String path = "vault.snapshot";
+    }
+
+    @Getter
+    @Setter
+    public static class RecorderSettings {
+        // Whether raw UDP notifications are recorded, so the traffic can be replayed later (see ReplayDriver).
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // A base name: every application start begins a new log with a timestamp in its name (see EventRecorder).
+        @JsonProperty("path")
+        private String path = "notifications.log";
+
+        // How many of the latest logs are kept, older ones are deleted.
+        @JsonProperty("max-files")
+        private int maxFiles = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class DebounceSettings {
+        // Whether door events pass a debounce stage, so a faulty door sensor can't flood the application (and the controller).
+        // Off unless enabled explicitly: the second and the following events of a burst are handled `quiet-millis` later.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // Door events of a locker closer than that to the previous one are collapsed, only the final state is handled
+        // once the door is quiet.
+        @JsonProperty("quiet-millis")
+        private int quietMillis = 50;
+
+        // A locker with more door events per second is flapping, it's not offered for dropoffs until it's quiet again.
+        @JsonProperty("flap-threshold")
+        private int flapThreshold = 10;
+
+        // How long a flapping locker has to stay below the threshold to be used again.
+        @JsonProperty("flap-cooldown-seconds")
+        private int flapCooldownSeconds = 300;
+    }
+
+    @Getter
+    @Setter
+    public static class BreakerSettings {
+        // Whether commands to the lockers of a failing slave board fail fast instead of waiting for RPC retries.
+        @JsonProperty("enabled")
+        private boolean enabled = true;
+
+        // How many commands to a slave board fail in a row before its lockers are taken out of use.
+        @JsonProperty("failure-threshold")
+        private int failureThreshold = 3;
+
+        // How often a failing slave board is checked (see `get_slave_firmware` RPC) to find out whether it's back.
+        @JsonProperty("probe-interval-seconds")
+        private int probeIntervalSeconds = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class BackofficeSettings {
+        // Whether remote systems can reserve lockers (see backoffice.proto), calls are not authenticated,
+        // so only enable it on a trusted network.
+        @JsonProperty("enabled")
+        private boolean enabled = false;
+
+        // Only local clients (e.g. an SSH tunnel or a proxy) can connect by default, `0.0.0.0` listens on all interfaces.
+        @JsonProperty("bind-address")
+        private String bindAddress = "localhost";
+
+        @JsonProperty("port")
+        private int port = 9090;
+
+        // Calls are handled by these threads only, so they never compete with the keypad for more than that.
+        @JsonProperty("threads")
+        private int threads = 2;
+
+        // Calls waiting for a thread, any more are rejected.
+        @JsonProperty("queue-size")
+        private int queueSize = 256;
+
+        // How many `watch_occupancy` streams can be open at once.
+        @JsonProperty("max-watchers")
+        private int maxWatchers = 16;
     }
 }
@@ -0,0 +1,95 @@
+package za.co.vaultgroup.example.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * Reloads an external settings file once it's changed.
+ *
+ * New settings are validated first, invalid ones are ignored (and the current ones stay in effect).
+ * Valid ones are published as a new {@link Tunables} snapshot and passed to a listener.
+ */
+@Slf4j
+public class SettingsWatcher {
+    // Editors often write a file in several steps, so wait until it settles.
+    private static final long SETTLE_DELAY_MILLIS = 200;
+
+    private final Path path;
+    private final Consumer<Settings> listener;
+
+    public SettingsWatcher(Path path, Consumer<Settings> listener) {
+        this.path = path.toAbsolutePath();
+        this.listener = listener;
+    }
+
+    public void start() throws IOException {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+
+        // Only a directory can be watched.
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(() -> watch(watchService), "settings-watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        log.info("Watching {} for changes", path);
+    }
+
+    private void watch(WatchService watchService) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.take();
+                boolean isChanged = false;
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (path.getFileName().equals(event.context())) {
+                        isChanged = true;
+                    }
+                }
+
+                key.reset();
+
+                if (isChanged) {
+                    Thread.sleep(SETTLE_DELAY_MILLIS);
+
+                    // Drop the events caused by the same change.
+                    WatchKey pendingKey = watchService.poll();
+                    if (pendingKey != null) {
+                        pendingKey.pollEvents();
+                        pendingKey.reset();
+                    }
+
+                    reload();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void reload() {
+        Settings settings = Settings.load(path);
+
+        if (settings == null) {
+            log.error("Settings in {} are invalid, keeping the current ones", path);
+            return;
+        }
+
+        Tunables.publish(settings);
+        log.info("Settings reloaded from {}", path);
+
+        try {
+            listener.accept(settings);
+        } catch (Exception e) {
+            log.error("Failed to apply reloaded settings", e);
+        }
+    }
+}
@@ -7,7 +7,9 @@ public enum Timing {
     REINITIALIZATION(TimeUnit.SECONDS, 3),
     GREETING(TimeUnit.SECONDS, 3),
     DROPOFF_PENDING(TimeUnit.MINUTES, 2),
+    DROPOFF_LOCKING(TimeUnit.SECONDS, 30),
     PICKUP_PENDING(TimeUnit.MINUTES, 2),
+    REPEAT_ACCESS_SESSION(TimeUnit.MINUTES, 15),
     ALERT_SHORT(TimeUnit.SECONDS, 3),
     ALERT_LONG(TimeUnit.SECONDS, 5);
 
@@ -27,7 +29,10 @@ public enum Timing {
         return value;
     }
 
+    /**
+     * @return the value in milliseconds, it can be overridden in settings (see {@link Tunables}).
+     */
     public long toMilliseconds() {
-        return timeUnit.toMillis(value);
+        return Tunables.get().getMilliseconds(this);
     }
 }
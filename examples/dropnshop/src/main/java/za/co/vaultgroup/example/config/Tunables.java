@@ -0,0 +1,66 @@
+package za.co.vaultgroup.example.config;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of settings that can be changed while the application is running
+ * (see {@link SettingsWatcher}): timeouts, buzzer sounds and page texts.
+ *
+ * The current snapshot is read through a single volatile field, so readers never see a half-applied change
+ * and never take a lock. A new snapshot is only published once the settings it's made of are validated.
+ */
+public final class Tunables {
+    private static volatile Tunables current = new Tunables(new EnumMap<>(Timing.class), new EnumMap<>(Buzz.class), new EnumMap<>(Page.class));
+
+    private final Map<Timing, Long> timings;
+    private final Map<Buzz, Integer> durations;
+    private final Map<Page, String> messages;
+
+    private Tunables(Map<Timing, Long> timings, Map<Buzz, Integer> durations, Map<Page, String> messages) {
+        this.timings = Collections.unmodifiableMap(timings);
+        this.durations = Collections.unmodifiableMap(durations);
+        this.messages = Collections.unmodifiableMap(messages);
+    }
+
+    public static Tunables get() {
+        return current;
+    }
+
+    public static void publish(Settings settings) {
+        Settings.TuningSettings tuningSettings = settings.getTuningSettings();
+        Map<Timing, Long> timings = new EnumMap<>(Timing.class);
+        Map<Buzz, Integer> durations = new EnumMap<>(Buzz.class);
+        Map<Page, String> messages = new EnumMap<>(Page.class);
+
+        if (tuningSettings.getTimings() != null) {
+            timings.putAll(tuningSettings.getTimings());
+        }
+
+        if (tuningSettings.getBuzz() != null) {
+            durations.putAll(tuningSettings.getBuzz());
+        }
+
+        if (tuningSettings.getPages() != null) {
+            messages.putAll(tuningSettings.getPages());
+        }
+
+        current = new Tunables(timings, durations, messages);
+    }
+
+    public long getMilliseconds(Timing timing) {
+        Long milliseconds = timings.get(timing);
+        return milliseconds == null ? timing.getTimeUnit().toMillis(timing.getValue()) : milliseconds;
+    }
+
+    public int getDuration(Buzz buzz) {
+        Integer duration = durations.get(buzz);
+        return duration == null ? buzz.getDefaultDuration() : duration;
+    }
+
+    public String getMessage(Page page) {
+        String message = messages.get(page);
+        return message == null ? page.getDefaultMessage() : message;
+    }
+}
@@ -0,0 +1,27 @@
+package za.co.vaultgroup.example.display;
+
+/**
+ * A character display that {@link za.co.vaultgroup.example.app.Screen} renders pages to.
+ * Only the characters that have actually changed are written, so implementations should expect partial row updates.
+ */
+public interface Display {
+    /**
+     * @return how many characters fit a single row.
+     */
+    int getColumns();
+
+    /**
+     * @return how many rows a display has.
+     */
+    int getRows();
+
+    /**
+     * A fixed cost of a single {@link #write(int, int, String)} call expressed in characters.
+     * Two changed spans of a row separated by no more unchanged characters than that are written at once.
+     */
+    int getWriteOverhead();
+
+    void clear();
+
+    void write(int row, int column, String text);
+}
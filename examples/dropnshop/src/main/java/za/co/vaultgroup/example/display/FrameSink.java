@@ -0,0 +1,16 @@
+package za.co.vaultgroup.example.display;
+
+import java.util.List;
+
+/**
+ * A secondary consumer of whatever is shown at the {@link Display}, e.g. a tablet mirroring the LCD screen.
+ * A frame is rendered once and then passed to all the sinks as is.
+ */
+public interface FrameSink {
+    /**
+     * Must never block, it's called from the event handling thread.
+     *
+     * @param rows an immutable list of fully padded rows.
+     */
+    void accept(List<String> rows);
+}
@@ -0,0 +1,46 @@
+package za.co.vaultgroup.example.display;
+
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.config.Settings.DisplaySettings;
+
+/**
+ * An LCD screen connected to the master board, see {@link Api#writeScreen(int, int, String)}.
+ */
+public class LcdDisplay implements Display {
+    private final Api api;
+    private final int columns;
+    private final int rows;
+    private final int writeOverhead;
+
+    public LcdDisplay(Api api, DisplaySettings settings) {
+        this.api = api;
+        this.columns = settings.getColumns();
+        this.rows = settings.getRows();
+        this.writeOverhead = settings.getWriteOverhead();
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getWriteOverhead() {
+        return writeOverhead;
+    }
+
+    @Override
+    public void clear() {
+        api.clearScreen();
+    }
+
+    @Override
+    public void write(int row, int column, String text) {
+        api.writeScreen(row, column, text);
+    }
+}
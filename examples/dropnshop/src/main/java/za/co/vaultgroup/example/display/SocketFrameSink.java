@@ -0,0 +1,140 @@
+package za.co.vaultgroup.example.display;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes frames to a remote device (e.g. an Android tablet) over a TCP connection.
+ * Every frame is sent as a single line of JSON: {"rows":["...","...",...]}.
+ * Frames are sent asynchronously and only the latest one is kept if the connection is slow.
+ * When a device is unreachable, connection attempts are made with an exponential backoff (the latest frame is kept
+ * for the next one) and only the first failure in a row is logged as a warning.
+ */
+@Slf4j
+public class SocketFrameSink implements FrameSink {
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final String host;
+    private final int port;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "frame-sink");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The latest frame that hasn't been sent yet (if any).
+    private final AtomicReference<List<String>> pending = new AtomicReference<>();
+
+    // Only accessed from the executor's thread.
+    private Socket socket;
+    private int failuresInRow = 0;
+    private long retryAtNanos;
+
+    public SocketFrameSink(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void accept(List<String> rows) {
+        // Only schedule sending if there's no frame waiting already, otherwise just replace it.
+        if (pending.getAndSet(rows) == null) {
+            executor.execute(this::send);
+        }
+    }
+
+    private void send() {
+        // A retry is scheduled already, it sends whatever frame is the latest by then.
+        if (failuresInRow > 0 && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+
+        List<String> rows = pending.getAndSet(null);
+
+        if (rows == null) {
+            return;
+        }
+
+        try {
+            OutputStream outputStream = connect().getOutputStream();
+            outputStream.write(objectMapper.writeValueAsBytes(new Frame(rows)));
+            outputStream.write('\n');
+            outputStream.flush();
+            failuresInRow = 0;
+        } catch (IOException e) {
+            disconnect();
+            failuresInRow++;
+
+            if (failuresInRow == 1) {
+                log.warn("Failed to send a frame to {}:{} ({}), retrying in background", host, port, e.getMessage());
+            } else {
+                log.debug("Failed to send a frame to {}:{} ({}), {} failure(s) in a row", host, port, e.getMessage(), failuresInRow);
+            }
+
+            // Keep the frame unless there's a newer one already, it's sent once the backoff is over.
+            pending.compareAndSet(null, rows);
+
+            long delayMillis = Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << Math.min(failuresInRow - 1, 16));
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            executor.schedule(this::send, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        if (socket == null) {
+            Socket newSocket = new Socket();
+
+            try {
+                newSocket.setTcpNoDelay(true);
+                newSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                newSocket.close();
+                throw e;
+            }
+
+            socket = newSocket;
+
+            if (failuresInRow > 0) {
+                log.info("Connected to {}:{} to mirror the screen after {} failed attempt(s)", host, port, failuresInRow);
+            } else {
+                log.info("Connected to {}:{} to mirror the screen", host, port);
+            }
+        }
+
+        return socket;
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Do nothing.
+            }
+            socket = null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Frame {
+        @JsonProperty("rows")
+        private final List<String> rows;
+    }
+}
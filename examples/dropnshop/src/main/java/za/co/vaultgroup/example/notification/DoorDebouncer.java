@@ -0,0 +1,176 @@
+package za.co.vaultgroup.example.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.config.Settings.DebounceSettings;
+import za.co.vaultgroup.example.notification.event.EventType;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collapses bursts of door opened/closed events of a locker into the final state, and flags lockers whose door
+ * sensor is flapping (a faulty switch can send hundreds of events per second).
+ *
+ * The first event after a quiet period is passed on right away, so a healthy door gets no extra latency.
+ * Events that follow it closer than `quiet-millis` are held back, once the door is quiet the latest one is passed on
+ * unless it's the same state that was passed on last. Lock events are never held back.
+ *
+ * There's one instance per shard of {@link EventDispatcher}, it's only called by the shard's thread
+ * (flushes are scheduled on the same thread too), so per-locker state is kept in plain arrays indexed by a lockerId.
+ */
+@Slf4j
+class DoorDebouncer {
+    // Events of lockers with bigger ids (not expected from a hardware) are passed on as is.
+    private static final int MAX_LOCKER_ID = 65535;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Flapping is detected by the number of door events within that window.
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ScheduledExecutorService lane;
+    private final Consumer<LockerStateChangedEvent> downstream;
+    private final EventDispatcher.FlappingListener flappingListener;
+    private final long quietNanos;
+    private final int flapThreshold;
+    private final long cooldownNanos;
+
+    // All the arrays below are indexed by a lockerId and grow on demand.
+    private long[] lastEventNanos = new long[INITIAL_CAPACITY];
+    private long[] windowStartNanos = new long[INITIAL_CAPACITY];
+    private int[] windowCounts = new int[INITIAL_CAPACITY];
+    private long[] flappingUntilNanos = new long[INITIAL_CAPACITY];
+    private boolean[] flapping = new boolean[INITIAL_CAPACITY];
+
+    // The latest event held back during a burst, a flush is scheduled when it's set.
+    private LockerStateChangedEvent[] pending = new LockerStateChangedEvent[INITIAL_CAPACITY];
+
+    // The latest door event passed on, null if there's none yet.
+    private LockerStateChangedEvent[] passed = new LockerStateChangedEvent[INITIAL_CAPACITY];
+
+    /**
+     * @param lane the shard's own executor, flushes are scheduled there.
+     * @param downstream gets the events that are passed on.
+     */
+    DoorDebouncer(DebounceSettings settings, ScheduledExecutorService lane, Consumer<LockerStateChangedEvent> downstream,
+                  EventDispatcher.FlappingListener flappingListener) {
+        this.lane = Objects.requireNonNull(lane);
+        this.downstream = Objects.requireNonNull(downstream);
+        this.flappingListener = Objects.requireNonNull(flappingListener);
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(settings.getQuietMillis());
+        this.flapThreshold = settings.getFlapThreshold();
+        this.cooldownNanos = TimeUnit.SECONDS.toNanos(settings.getFlapCooldownSeconds());
+    }
+
+    void accept(LockerStateChangedEvent event) {
+        EventType type = event.getType();
+        int lockerId = event.getLockerId();
+
+        if ((type != EventType.DOOR_OPENED && type != EventType.DOOR_CLOSED) || lockerId < 0 || lockerId > MAX_LOCKER_ID) {
+            downstream.accept(event);
+            return;
+        }
+
+        ensureCapacity(lockerId);
+
+        long now = System.nanoTime();
+        count(lockerId, now);
+
+        boolean isQuiet = passed[lockerId] == null || now - lastEventNanos[lockerId] >= quietNanos;
+        lastEventNanos[lockerId] = now;
+
+        if (pending[lockerId] == null) {
+            if (isQuiet) {
+                pass(lockerId, event);
+                return;
+            }
+
+            lane.schedule(() -> flush(lockerId), quietNanos, TimeUnit.NANOSECONDS);
+        }
+
+        pending[lockerId] = event;
+    }
+
+    private void flush(int lockerId) {
+        long quietFor = System.nanoTime() - lastEventNanos[lockerId];
+
+        // More events came in since the flush was scheduled.
+        if (quietFor < quietNanos) {
+            lane.schedule(() -> flush(lockerId), quietNanos - quietFor, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        LockerStateChangedEvent event = pending[lockerId];
+        pending[lockerId] = null;
+
+        if (event.getType() != passed[lockerId].getType()) {
+            pass(lockerId, event);
+        }
+    }
+
+    private void pass(int lockerId, LockerStateChangedEvent event) {
+        passed[lockerId] = event;
+        downstream.accept(event);
+    }
+
+    private void count(int lockerId, long now) {
+        if (windowCounts[lockerId] == 0 || now - windowStartNanos[lockerId] >= RATE_WINDOW_NANOS) {
+            windowStartNanos[lockerId] = now;
+            windowCounts[lockerId] = 0;
+        }
+
+        if (++windowCounts[lockerId] <= flapThreshold) {
+            return;
+        }
+
+        // A locker stays flagged while the storm goes on.
+        flappingUntilNanos[lockerId] = now + cooldownNanos;
+
+        if (!flapping[lockerId]) {
+            flapping[lockerId] = true;
+            log.warn("Door sensor of locker #{} is flapping (more than {} events per second)", lockerId, flapThreshold);
+            notifyFlapping(lockerId, true);
+            lane.schedule(() -> checkFlapping(lockerId), cooldownNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void checkFlapping(int lockerId) {
+        long remaining = flappingUntilNanos[lockerId] - System.nanoTime();
+
+        if (remaining > 0) {
+            lane.schedule(() -> checkFlapping(lockerId), remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        flapping[lockerId] = false;
+        log.info("Door sensor of locker #{} is quiet again", lockerId);
+        notifyFlapping(lockerId, false);
+    }
+
+    private void notifyFlapping(int lockerId, boolean isFlapping) {
+        try {
+            flappingListener.onFlappingChanged(lockerId, isFlapping);
+        } catch (Exception e) {
+            log.error("Failed to handle flapping of locker #{}", lockerId, e);
+        }
+    }
+
+    private void ensureCapacity(int lockerId) {
+        if (lockerId < passed.length) {
+            return;
+        }
+
+        int capacity = Math.min(Math.max(passed.length * 2, lockerId + 1), MAX_LOCKER_ID + 1);
+
+        lastEventNanos = Arrays.copyOf(lastEventNanos, capacity);
+        windowStartNanos = Arrays.copyOf(windowStartNanos, capacity);
+        windowCounts = Arrays.copyOf(windowCounts, capacity);
+        flappingUntilNanos = Arrays.copyOf(flappingUntilNanos, capacity);
+        flapping = Arrays.copyOf(flapping, capacity);
+        pending = Arrays.copyOf(pending, capacity);
+        passed = Arrays.copyOf(passed, capacity);
+    }
+}
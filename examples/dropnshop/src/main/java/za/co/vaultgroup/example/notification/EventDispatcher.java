@@ -0,0 +1,131 @@
+package za.co.vaultgroup.example.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.config.Settings.DebounceSettings;
+import za.co.vaultgroup.example.notification.event.Event;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Spreads incoming events over several threads (lanes), so a wall with many slave boards doesn't handle
+ * every door notification one at a time.
+ *
+ * Door/lock events go to a shard lane picked by a slave board number (see {@link LockerStateChangedEvent#getSlave()}),
+ * so all the events of a locker are handled by the same thread in the order they arrived. Every shard has its own
+ * handler (see constructor), that's where per-locker state lives, so shards never share it.
+ * Keypad events and door/lock events of lockers involved in a customer session go to a single session lane,
+ * it keeps them ordered and never runs two of them at once.
+ *
+ * Unless disabled, door events pass a {@link DoorDebouncer} first (one per shard), so a storm of events
+ * from a faulty door sensor is collapsed before it reaches the handlers.
+ */
+@Slf4j
+public class EventDispatcher implements Consumer<Event> {
+    private final ScheduledExecutorService session;
+    private final ScheduledExecutorService[] shards;
+    private final Consumer<LockerStateChangedEvent>[] shardHandlers;
+    // Null when debouncing is disabled.
+    private final DoorDebouncer[] debouncers;
+    private final Consumer<Event> sessionHandler;
+    private final IntPredicate isSessionLocker;
+
+    /**
+     * @param shardCount how many shard lanes (threads) to use, slave boards are spread over them evenly.
+     * @param shardHandlerFactory creates a handler for every shard (by a shard index), a handler is only called by its shard's thread.
+     * @param sessionHandler handles keypad events and door/lock events of session lockers in the session lane.
+     * @param isSessionLocker tells whether a door/lock event of a locker (by lockerId) should be passed to the session lane too,
+     *                        called by shard threads.
+     * @param debounceSettings how door events are debounced.
+     * @param flappingListener is told when a locker's door sensor starts or stops flapping, called by shard threads.
+     */
+    @SuppressWarnings("unchecked")
+    public EventDispatcher(int shardCount, IntFunction<Consumer<LockerStateChangedEvent>> shardHandlerFactory,
+                           Consumer<Event> sessionHandler, IntPredicate isSessionLocker,
+                           DebounceSettings debounceSettings, FlappingListener flappingListener) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.session = createLane("session");
+        this.shards = new ScheduledExecutorService[shardCount];
+        this.shardHandlers = new Consumer[shardCount];
+        this.debouncers = debounceSettings.isEnabled() ? new DoorDebouncer[shardCount] : null;
+        this.sessionHandler = Objects.requireNonNull(sessionHandler);
+        this.isSessionLocker = Objects.requireNonNull(isSessionLocker);
+
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+
+            shards[i] = createLane("shard-" + i);
+            shardHandlers[i] = Objects.requireNonNull(shardHandlerFactory.apply(i));
+
+            if (debouncers != null) {
+                debouncers[i] = new DoorDebouncer(debounceSettings, shards[i], ev -> deliver(shard, ev), flappingListener);
+            }
+        }
+    }
+
+    private static ScheduledExecutorService createLane(String name) {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public void accept(Event event) {
+        if (event instanceof LockerStateChangedEvent) {
+            LockerStateChangedEvent ev = (LockerStateChangedEvent) event;
+            // Events of lockers with unknown coordinates (not expected from a hardware) go to the first shard.
+            int shard = Math.max(ev.getSlave(), 0) % shards.length;
+
+            shards[shard].execute(() -> {
+                if (debouncers == null) {
+                    deliver(shard, ev);
+                } else {
+                    debouncers[shard].accept(ev);
+                }
+            });
+        } else {
+            session.execute(() -> run(sessionHandler, event));
+        }
+    }
+
+    /**
+     * Called by the shard's thread.
+     */
+    private void deliver(int shard, LockerStateChangedEvent event) {
+        run(shardHandlers[shard], event);
+
+        // Session lane is a queue, so events of a locker reach it in the same order.
+        if (isSessionLocker.test(event.getLockerId())) {
+            session.execute(() -> run(sessionHandler, event));
+        }
+    }
+
+    private static <T extends Event> void run(Consumer<T> handler, T event) {
+        try {
+            handler.accept(event);
+        } catch (Exception e) {
+            log.error("Failed to handle event of type {}", event.getType(), e);
+        }
+    }
+
+    public interface FlappingListener {
+        /**
+         * @param isFlapping true when the door sensor of the locker has started flapping, false when it's quiet again.
+         */
+        void onFlappingChanged(int lockerId, boolean isFlapping);
+    }
+}
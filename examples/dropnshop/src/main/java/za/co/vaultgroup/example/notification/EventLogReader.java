@@ -0,0 +1,85 @@
+package za.co.vaultgroup.example.notification;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a log written by {@link EventRecorder} one record at a time.
+ * A record that was cut off (e.g. the application was killed in the middle of a write) ends the log.
+ */
+public class EventLogReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Enough for any notification, see NotificationServer.
+    private static final int MAX_RECORD_SIZE = 32768;
+
+    private final DataInputStream in;
+    private final long startedAtMillis;
+
+    // The current record.
+    private final byte[] data = new byte[MAX_RECORD_SIZE];
+    private long nanos;
+    private int length;
+
+    public EventLogReader(Path path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+
+        if (in.readInt() != EventRecorder.MAGIC) {
+            in.close();
+            throw new IOException("Not a notification log: " + path);
+        }
+
+        startedAtMillis = in.readLong();
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    /**
+     * @return whether there's one more record (see {@link #getNanos()}, {@link #getData()} and {@link #getLength()}).
+     */
+    public boolean next() throws IOException {
+        try {
+            nanos = in.readLong();
+            length = in.readInt();
+
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                throw new IOException("Corrupted notification log, record length is " + length);
+            }
+
+            in.readFully(data, 0, length);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return nanoseconds since the recording started.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return a buffer that is reused for every record, only {@link #getLength()} bytes of it are valid.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,135 @@
+package za.co.vaultgroup.example.notification;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends every raw notification to a binary log, so the traffic can be replayed later
+ * (see {@link za.co.vaultgroup.example.tools.ReplayDriver}).
+ *
+ * A log starts with a header: magic (4 bytes) and a wall-clock time the recording started at (8 bytes, epoch millis).
+ * Then every record is: nanoseconds since the recording started (8 bytes), length (4 bytes) and a datagram itself.
+ * Records are buffered in memory and flushed to disk every second.
+ *
+ * Every application start begins a new log named after the time it's started at (e.g. `notifications-20240131-235959.log`
+ * for `notifications.log`), so the traffic that preceded a crash is still there after a restart.
+ * Only the given number of the latest logs is kept.
+ */
+@Slf4j
+public class EventRecorder {
+    static final int MAGIC = 0x45564c31; // "EVL1"
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final String TIMESTAMP_FORMAT = "yyyyMMdd-HHmmss";
+
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param path a base path of the logs, see {@link #resolve(Path, long)}.
+     */
+    public EventRecorder(Path path, int maxFiles) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        long startedAtMillis = System.currentTimeMillis();
+        Path logPath = resolve(path, startedAtMillis);
+
+        // Made before this one is created, so a new log is never deleted.
+        deleteOldLogs(path, maxFiles - 1);
+
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeLong(startedAtMillis);
+
+        executor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("Recording notifications to {}", logPath);
+    }
+
+    /**
+     * @return a path of the log started at the given time: the timestamp is inserted before an extension (if any).
+     */
+    static Path resolve(Path path, long startedAtMillis) {
+        String[] parts = split(path);
+        return path.resolveSibling(parts[0] + "-" + new SimpleDateFormat(TIMESTAMP_FORMAT).format(new Date(startedAtMillis)) + parts[1]);
+    }
+
+    public synchronized void record(byte[] data, int offset, int length) {
+        try {
+            out.writeLong(System.nanoTime() - startNanos);
+            out.writeInt(length);
+            out.write(data, offset, length);
+        } catch (IOException e) {
+            log.error("Failed to record a notification", e);
+        }
+    }
+
+    private static void deleteOldLogs(Path path, int count) {
+        String[] parts = split(path);
+        Path directory = path.toAbsolutePath().getParent();
+        List<Path> logs = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, parts[0] + "-*" + parts[1])) {
+            for (Path file : stream) {
+                logs.add(file);
+            }
+        } catch (IOException e) {
+            log.error("Failed to list notification logs in {}", directory, e);
+            return;
+        }
+
+        // Timestamps sort the same way as the time goes.
+        Collections.sort(logs);
+
+        for (int i = 0; i < logs.size() - Math.max(0, count); i++) {
+            try {
+                Files.deleteIfExists(logs.get(i));
+                log.info("Deleted old notification log {}", logs.get(i));
+            } catch (IOException e) {
+                log.error("Failed to delete notification log {}", logs.get(i), e);
+            }
+        }
+    }
+
+    /**
+     * @return a file name without an extension and the extension (including the dot, or an empty string).
+     */
+    private static String[] split(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+
+        return dot > 0 ? new String[]{name.substring(0, dot), name.substring(dot)} : new String[]{name, ""};
+    }
+
+    private synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            log.error("Failed to flush recorded notifications", e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package za.co.vaultgroup.example.notification;
+
+import java.io.IOException;
+
+/**
+ * A source of asynchronous notifications from a hardware.
+ */
+public interface EventSource {
+    /**
+     * Starts receiving notifications, they're queued until {@link #run()} is called.
+     */
+    void bind() throws IOException;
+
+    /**
+     * Handles incoming notifications one at a time in a calling thread, never returns.
+     */
+    void run() throws IOException;
+}
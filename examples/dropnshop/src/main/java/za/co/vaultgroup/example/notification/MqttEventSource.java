@@ -0,0 +1,194 @@
+package za.co.vaultgroup.example.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.Capabilities;
+import za.co.vaultgroup.example.Capability;
+import za.co.vaultgroup.example.config.Settings.MqttSettings;
+import za.co.vaultgroup.example.notification.event.Event;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Receives notifications from an MQTT broker over a single persistent connection instead of UDP datagrams.
+ *
+ * The application registers itself as an MQTT integration (see {@link #register(Capabilities)}),
+ * so the hardware publishes notifications to the broker, and subscribes to them with QoS 1.
+ * A shared subscription group can be configured to split notifications between several application instances.
+ *
+ * Incoming messages are put to a bounded queue and handled in batches. A message is only acknowledged once it's handled
+ * (manual acks), so the broker re-sends whatever was still queued if the application stops or the connection is lost.
+ * Once the queue is full, MQTT client's thread is blocked, so the broker stops sending messages (back-pressure).
+ */
+@Slf4j
+public class MqttEventSource implements EventSource {
+    private static final int QOS = 1;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long DISCONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final MqttSettings settings;
+    private final Api api;
+    private final NotificationParser parser;
+    private final BlockingQueue<MqttMessage> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private MqttClient client;
+
+    public MqttEventSource(MqttSettings settings, Api api, Consumer<Event> handler) {
+        this.settings = settings;
+        this.api = api;
+        this.parser = new NotificationParser(handler);
+    }
+
+    @Override
+    public void bind() throws IOException {
+        if (client != null) {
+            return;
+        }
+
+        try {
+            client = new MqttClient(settings.getBrokerUrl(), settings.getClientId(), new MemoryPersistence());
+            client.setCallback(new Callback());
+            client.setManualAcks(true);
+
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setAutomaticReconnect(true);
+            options.setCleanSession(false);
+            options.setMaxInflight(QUEUE_CAPACITY);
+
+            client.connect(options);
+            client.subscribe(getSubscriptionTopic(), QOS);
+            log.info("Subscribed to {} at MQTT broker {}", getSubscriptionTopic(), settings.getBrokerUrl());
+        } catch (MqttException e) {
+            throw new IOException("Failed to connect to MQTT broker " + settings.getBrokerUrl(), e);
+        }
+    }
+
+    /**
+     * Asks the hardware to publish notifications to our broker, must be called once capabilities are known.
+     */
+    public void register(Capabilities capabilities) {
+        if (!capabilities.has(Capability.MQTT_INTEGRATION)) {
+            log.error("Device doesn't support MQTT integration (protocol version {})", capabilities.getProtocolVersion());
+            return;
+        }
+
+        try {
+            if (api.registerMqttIntegration(settings.getIntegrationName(), settings.getIntegrationHost(), settings.getIntegrationPort())) {
+                log.info("Registered MQTT integration `{}`", settings.getIntegrationName());
+                Runtime.getRuntime().addShutdownHook(new Thread(this::unregister, "mqtt-unregister"));
+            }
+        } catch (Exception e) {
+            log.error("Failed to register MQTT integration", e);
+        }
+    }
+
+    @Override
+    public void run() throws IOException {
+        bind();
+        List<MqttMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                for (MqttMessage message : batch) {
+                    byte[] payload = message.getPayload();
+                    parser.parse(payload, 0, payload.length);
+                    acknowledge(message);
+                }
+
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Disconnects from the broker right away, the messages that haven't been handled yet aren't acknowledged,
+     * so the broker re-sends them once a client with the same id connects again.
+     */
+    public void close() throws IOException {
+        if (client == null) {
+            return;
+        }
+
+        try {
+            client.disconnectForcibly(0, DISCONNECT_TIMEOUT_MILLIS);
+            client.close();
+        } catch (MqttException e) {
+            throw new IOException("Failed to disconnect from MQTT broker " + settings.getBrokerUrl(), e);
+        }
+    }
+
+    private void acknowledge(MqttMessage message) {
+        try {
+            client.messageArrivedComplete(message.getId(), message.getQos());
+        } catch (MqttException e) {
+            // The connection is lost meanwhile, the broker re-sends the message after reconnect.
+            log.debug("Failed to acknowledge MQTT message #{}", message.getId(), e);
+        }
+    }
+
+    private void unregister() {
+        try {
+            api.unregisterMqttIntegration(settings.getIntegrationName());
+        } catch (Exception e) {
+            log.error("Failed to unregister MQTT integration", e);
+        }
+    }
+
+    private String getSubscriptionTopic() {
+        if (StringUtils.isEmpty(settings.getSharedGroup())) {
+            return settings.getTopic();
+        }
+
+        return "$share/" + settings.getSharedGroup() + "/" + settings.getTopic();
+    }
+
+    private class Callback implements MqttCallbackExtended {
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            // A subscription must be renewed after every reconnect.
+            if (reconnect) {
+                try {
+                    client.subscribe(getSubscriptionTopic(), QOS);
+                } catch (MqttException e) {
+                    log.error("Failed to subscribe to {}", getSubscriptionTopic(), e);
+                }
+            }
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            log.error("Connection to MQTT broker lost ({}), reconnecting", cause.getMessage());
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) throws InterruptedException {
+            // Blocks while the queue is full, the message is acknowledged once it's handled (see run() method).
+            queue.put(message);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            // We don't publish anything.
+        }
+    }
+}
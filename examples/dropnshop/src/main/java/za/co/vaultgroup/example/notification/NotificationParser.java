@@ -0,0 +1,172 @@
+package za.co.vaultgroup.example.notification;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import za.co.vaultgroup.example.config.LockerCoordinates;
+import za.co.vaultgroup.example.notification.event.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns raw JSON notifications from a hardware into {@link Event events}, no matter how they're delivered
+ * (see {@link NotificationServer} and {@link MqttEventSource}).
+ */
+@Slf4j
+public class NotificationParser {
+    private static final String TYPE_KEY = "key";
+    private static final String TYPE_DOOR_OPENED = "door_opened";
+    private static final String TYPE_DOOR_CLOSED = "door_closed";
+    private static final String TYPE_DOOR_LOCKED = "door_locked";
+    private static final String TYPE_DOOR_UNLOCKED = "door_unlocked";
+
+    // A locker position is described by two numbers: 0-based column (aka slave board) number and 1-based locker number within that column/slave.
+    private static final Pattern LOCKER_OFFSET_PATTERN = Pattern.compile("\\[(\\d+):(\\d+)]");
+
+    private final Consumer<Event> handler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public NotificationParser(Consumer<Event> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Parses a notification and passes a resulting event (if any) to the handler.
+     */
+    public void parse(byte[] data, int offset, int length) {
+        try {
+            handle(objectMapper.readValue(data, offset, length, Notification.class));
+        } catch (IOException e) {
+            log.error("Failed to parse incoming notification: {}", new String(data, offset, length));
+        }
+    }
+
+    private void handle(Notification notification) {
+        String type = notification.getType();
+        List<KeyValue> values = notification.getValues();
+
+        if (StringUtils.isNotEmpty(type) && CollectionUtils.isNotEmpty(values)) {
+            switch (type) {
+                case TYPE_KEY:
+                    handleKeyNotification(values);
+                    break;
+
+                case TYPE_DOOR_OPENED:
+                    handleDoorNotification(EventType.DOOR_OPENED, values);
+                    break;
+
+                case TYPE_DOOR_CLOSED:
+                    handleDoorNotification(EventType.DOOR_CLOSED, values);
+                    break;
+
+                case TYPE_DOOR_LOCKED:
+                    handleDoorNotification(EventType.DOOR_LOCKED, values);
+                    break;
+
+                case TYPE_DOOR_UNLOCKED:
+                    handleDoorNotification(EventType.DOOR_UNLOCKED, values);
+                    break;
+
+                default:
+                    log.error("Unknown notification type: {}", type);
+                    break;
+            }
+        }
+    }
+
+    private void handleKeyNotification(List<KeyValue> values) {
+        Optional<String> optKeyCode = values.stream()
+                .filter(kv -> "value".equals(kv.getKey()))
+                .map(KeyValue::getValue)
+                .findFirst();
+
+        if (optKeyCode.isPresent()) {
+            try {
+                int code = Integer.parseInt(optKeyCode.get());
+                handle(KeyPressedEvent.of((char) code));
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid key notification: invalid key code value");
+            }
+        } else {
+            log.error("Invalid key notification: missing key code value");
+        }
+    }
+
+    private void handleDoorNotification(EventType eventType, List<KeyValue> values) {
+        Optional<String> optLockerId = values.stream()
+                .filter(kv -> "locker".equals(kv.getKey()))
+                .map(KeyValue::getValue)
+                .findFirst();
+
+        Optional<String> optOffset = values.stream()
+                .filter(kv -> "offset".equals(kv.getKey()))
+                .map(KeyValue::getValue)
+                .findFirst();
+
+        if (optLockerId.isPresent() && optOffset.isPresent()) {
+            try {
+                int lockerId = Integer.parseInt(optLockerId.get());
+                int coordinates = parseLockerOffset(optOffset.get());
+                handle(LockerStateChangedEvent.of(eventType, lockerId, coordinates));
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid locker state change notification: invalid locker ordinal or offset");
+            }
+        } else {
+            log.error("Invalid locker state change notification: missing locker ordinal or offset");
+        }
+    }
+
+    /**
+     * @return {@link LockerCoordinates}.
+     */
+    private int parseLockerOffset(String string) {
+        Matcher matcher = LOCKER_OFFSET_PATTERN.matcher(string);
+
+        if (matcher.matches()) {
+            int slave = Integer.parseInt(matcher.group(1));
+            int locker = Integer.parseInt(matcher.group(2));
+
+            // Also validates both numbers.
+            return LockerCoordinates.of(slave, locker);
+        }
+
+        throw new IllegalArgumentException();
+    }
+
+    private void handle(Event event) {
+        try {
+            handler.accept(event);
+        } catch (Exception e) {
+            log.error("Failed to handle event of type {}", event.getType(), e);
+        }
+    }
+
+    @Getter
+    @Setter
+    private static class Notification {
+        @JsonProperty("type")
+        private String type;
+
+        @JsonProperty("vals")
+        private List<KeyValue> values;
+    }
+
+    @Getter
+    @Setter
+    private static class KeyValue {
+        @JsonProperty("k")
+        private String key;
+
+        @JsonProperty("v")
+        private String value;
+    }
+}
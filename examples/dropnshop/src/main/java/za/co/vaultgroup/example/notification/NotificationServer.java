@@ -1,201 +1,116 @@
 package za.co.vaultgroup.example.notification;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
-import za.co.vaultgroup.example.notification.event.*;
+import za.co.vaultgroup.example.notification.event.Event;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
-import java.util.List;
-import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A UDP server that is listening for asynchronous notifications from a hardware.
  */
 @Slf4j
-public class NotificationServer {
-    private static final String TYPE_KEY = "key";
-    private static final String TYPE_DOOR_OPENED = "door_opened";
-    private static final String TYPE_DOOR_CLOSED = "door_closed";
-    private static final String TYPE_DOOR_LOCKED = "door_locked";
-    private static final String TYPE_DOOR_UNLOCKED = "door_unlocked";
-
-    // A locker position is described by two numbers: 0-based column (aka slave board) number and 1-based locker number within that column/slave.
-    private static final Pattern LOCKER_OFFSET_PATTERN = Pattern.compile("\\[(\\d+):(\\d+)]");
-
+public class NotificationServer implements EventSource {
     // Buffer must be big enough to fit any possible notification JSON message.
     private static final int BUFFER_SIZE = 32768;
 
     // A server port to listen.
-    private final int port;
+    private int port;
 
     // Whether remote connections allowed (could be useful for testing; for production it must be always false).
-    private final boolean listenRemote;
+    private boolean listenRemote;
+
+    private final NotificationParser parser;
+
+    // Replaced when settings are changed, see rebind() method.
+    private volatile DatagramSocket socket;
 
-    private final Consumer<Event> handler;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Only set if notifications are recorded for later replay.
+    private EventRecorder recorder;
 
     public NotificationServer(int port, boolean listenRemote, Consumer<Event> handler) {
         this.port = port;
         this.listenRemote = listenRemote;
-        this.handler = handler;
+        this.parser = new NotificationParser(handler);
     }
 
-    public void run() throws IOException {
-        DatagramSocket socket = createSocket();
-        byte[] buffer = new byte[BUFFER_SIZE];
-
-        log.info("Started listening udp:{} for notifications", port);
-
-        while (true) {
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-            socket.receive(packet);
-
-            try {
-                handle(objectMapper.readValue(packet.getData(), packet.getOffset(), packet.getLength(), Notification.class));
-            } catch (IOException e) {
-                log.error("Failed to parse incoming notification: {}", new String(packet.getData(), packet.getOffset(), packet.getLength()));
-            }
-        }
+    public void setRecorder(EventRecorder recorder) {
+        this.recorder = recorder;
     }
 
-    private DatagramSocket createSocket() throws SocketException {
-        if (listenRemote) {
-            return new DatagramSocket(port);
-        } else {
-            return new DatagramSocket(port, InetAddress.getLoopbackAddress());
+    /**
+     * Starts listening, so incoming notifications are queued until {@link #run()} is called.
+     */
+    @Override
+    public synchronized void bind() throws SocketException {
+        if (socket == null) {
+            socket = createSocket(port, listenRemote);
+            log.info("Started listening udp:{} for notifications", port);
         }
     }
 
-    private void handle(Notification notification) {
-        String type = notification.getType();
-        List<KeyValue> values = notification.getValues();
-
-        if (StringUtils.isNotEmpty(type) && CollectionUtils.isNotEmpty(values)) {
-            switch (type) {
-                case TYPE_KEY:
-                    handleKeyNotification(values);
-                    break;
-
-                case TYPE_DOOR_OPENED:
-                    handleDoorNotification(EventType.DOOR_OPENED, values);
-                    break;
-
-                case TYPE_DOOR_CLOSED:
-                    handleDoorNotification(EventType.DOOR_CLOSED, values);
-                    break;
-
-                case TYPE_DOOR_LOCKED:
-                    handleDoorNotification(EventType.DOOR_LOCKED, values);
-                    break;
-
-                case TYPE_DOOR_UNLOCKED:
-                    handleDoorNotification(EventType.DOOR_UNLOCKED, values);
-                    break;
+    /**
+     * Moves to another port without restarting the application (see {@link za.co.vaultgroup.example.config.SettingsWatcher}).
+     * A new socket is bound first, so the current one keeps working if the port is not available.
+     * If it's not listening yet, the new port is just used once it starts.
+     */
+    public synchronized void rebind(int port, boolean listenRemote) throws SocketException {
+        if (port == this.port && listenRemote == this.listenRemote) {
+            return;
+        }
 
-                default:
-                    log.error("Unknown notification type: {}", type);
-                    break;
-            }
+        if (socket == null) {
+            this.port = port;
+            this.listenRemote = listenRemote;
+            return;
         }
-    }
 
-    private void handleKeyNotification(List<KeyValue> values) {
-        Optional<String> optKeyCode = values.stream()
-                .filter(kv -> "value".equals(kv.getKey()))
-                .map(KeyValue::getValue)
-                .findFirst();
+        DatagramSocket oldSocket = socket;
+        socket = createSocket(port, listenRemote);
+        this.port = port;
+        this.listenRemote = listenRemote;
 
-        if (optKeyCode.isPresent()) {
-            try {
-                int code = Integer.parseInt(optKeyCode.get());
-                handle(new KeyPressedEvent((char) code));
-            } catch (IllegalArgumentException e) {
-                log.error("Invalid key notification: invalid key code value");
-            }
-        } else {
-            log.error("Invalid key notification: missing key code value");
-        }
+        // Wakes up run() method so it switches to the new socket.
+        oldSocket.close();
+        log.info("Started listening udp:{} for notifications", port);
     }
 
-    private void handleDoorNotification(EventType eventType, List<KeyValue> values) {
-        Optional<String> optLockerId = values.stream()
-                .filter(kv -> "locker".equals(kv.getKey()))
-                .map(KeyValue::getValue)
-                .findFirst();
+    @Override
+    public void run() throws IOException {
+        bind();
+        byte[] buffer = new byte[BUFFER_SIZE];
 
-        Optional<String> optOffset = values.stream()
-                .filter(kv -> "offset".equals(kv.getKey()))
-                .map(KeyValue::getValue)
-                .findFirst();
+        while (true) {
+            DatagramSocket currentSocket = socket;
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
-        if (optLockerId.isPresent() && optOffset.isPresent()) {
             try {
-                int lockerId = Integer.parseInt(optLockerId.get());
-                Pair<Integer, Integer> offset = parseLockerOffset(optOffset.get());
-                handle(new LockerStateChangedEvent(eventType, lockerId, offset));
-            } catch (IllegalArgumentException e) {
-                log.error("Invalid locker state change notification: invalid locker ordinal or offset");
+                currentSocket.receive(packet);
+            } catch (SocketException e) {
+                if (currentSocket != socket) {
+                    // Closed by rebind().
+                    continue;
+                }
+                throw e;
             }
-        } else {
-            log.error("Invalid locker state change notification: missing locker ordinal or offset");
-        }
-    }
 
-    private Pair<Integer, Integer> parseLockerOffset(String string) {
-        Matcher matcher = LOCKER_OFFSET_PATTERN.matcher(string);
-
-        if (matcher.matches()) {
-            int slave = Integer.parseInt(matcher.group(1));
-            int locker = Integer.parseInt(matcher.group(2));
-
-            if (slave < 0 || locker < 1) {
-                throw new IllegalArgumentException();
+            if (recorder != null) {
+                recorder.record(packet.getData(), packet.getOffset(), packet.getLength());
             }
 
-            return Pair.of(slave, locker);
+            parser.parse(packet.getData(), packet.getOffset(), packet.getLength());
         }
-
-        throw new IllegalArgumentException();
     }
 
-    private void handle(Event event) {
-        try {
-            handler.accept(event);
-        } catch (Exception e) {
-            log.error("Failed to handle event of type " + event.getType(), e);
+    private static DatagramSocket createSocket(int port, boolean listenRemote) throws SocketException {
+        if (listenRemote) {
+            return new DatagramSocket(port);
+        } else {
+            return new DatagramSocket(port, InetAddress.getLoopbackAddress());
         }
     }
-
-    @Getter
-    @Setter
-    private static class Notification {
-        @JsonProperty("type")
-        private String type;
-
-        @JsonProperty("vals")
-        private List<KeyValue> values;
-    }
-
-    @Getter
-    @Setter
-    private static class KeyValue {
-        @JsonProperty("k")
-        private String key;
-
-        @JsonProperty("v")
-        private String value;
-    }
 }
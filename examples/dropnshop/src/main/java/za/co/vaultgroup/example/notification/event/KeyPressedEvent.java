@@ -2,8 +2,23 @@ package za.co.vaultgroup.example.notification.event;
 
 import lombok.Getter;
 
+/**
+ * Instances are immutable and there's only one per key (see {@link #of(char)}).
+ */
 @Getter
 public class KeyPressedEvent extends Event {
+    // Index is a key code, only valid keys have an event.
+    private static final KeyPressedEvent[] EVENTS = new KeyPressedEvent[128];
+
+    static {
+        for (char code = '0'; code <= '9'; code++) {
+            EVENTS[code] = new KeyPressedEvent(code);
+        }
+
+        EVENTS['#'] = new KeyPressedEvent('#');
+        EVENTS['*'] = new KeyPressedEvent('*');
+    }
+
     private final char code;
 
     public static EventType eventTypeFromCode(char code) {
@@ -18,7 +33,17 @@ public class KeyPressedEvent extends Event {
         throw new IllegalArgumentException("Unexpected key pressed: " + (int) code);
     }
 
-    public KeyPressedEvent(char code) {
+    public static KeyPressedEvent of(char code) {
+        KeyPressedEvent event = code < EVENTS.length ? EVENTS[code] : null;
+
+        if (event == null) {
+            throw new IllegalArgumentException("Unexpected key pressed: " + (int) code);
+        }
+
+        return event;
+    }
+
+    private KeyPressedEvent(char code) {
         super(eventTypeFromCode(code));
         this.code = code;
     }
@@ -1,29 +1,82 @@
 package za.co.vaultgroup.example.notification.event;
 
 import lombok.Getter;
-import org.apache.commons.lang3.tuple.Pair;
-
-import java.util.Objects;
+import za.co.vaultgroup.example.config.LockerCoordinates;
 
+/**
+ * Instances are immutable and shared (see {@link #of(EventType, int, int)}), so they can be safely passed between threads.
+ */
 @Getter
 public class LockerStateChangedEvent extends Event {
+    // Lockers with bigger ids are still fine, their events are just not cached.
+    private static final int MAX_CACHED_LOCKER_ID = 1024;
+
+    // Index is an event type index (see typeIndexOf() method) then a lockerId, filled lazily.
+    // Races are harmless: all fields are final, so the worst case is an event created twice.
+    private static final LockerStateChangedEvent[][] CACHE = new LockerStateChangedEvent[4][MAX_CACHED_LOCKER_ID + 1];
+
     private final int lockerId;
-    private final Pair<Integer, Integer> offset;
 
-    public LockerStateChangedEvent(EventType type, int lockerId, Pair<Integer, Integer> offset) {
+    // See LockerCoordinates.
+    private final int coordinates;
+
+    public LockerStateChangedEvent(EventType type, int lockerId, int coordinates) {
         super(type);
 
+        // Throws for anything but door/lock events.
+        typeIndexOf(type);
+
+        this.lockerId = lockerId;
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * @return a cached event if there's one, otherwise a new one.
+     */
+    public static LockerStateChangedEvent of(EventType type, int lockerId, int coordinates) {
+        int typeIndex = typeIndexOf(type);
+
+        if (lockerId < 0 || lockerId > MAX_CACHED_LOCKER_ID) {
+            return new LockerStateChangedEvent(type, lockerId, coordinates);
+        }
+
+        LockerStateChangedEvent event = CACHE[typeIndex][lockerId];
+
+        // Coordinates of a locker only change if the locker map does.
+        if (event == null || event.coordinates != coordinates) {
+            event = new LockerStateChangedEvent(type, lockerId, coordinates);
+            CACHE[typeIndex][lockerId] = event;
+        }
+
+        return event;
+    }
+
+    private static int typeIndexOf(EventType type) {
         switch (type) {
             case DOOR_OPENED:
+                return 0;
             case DOOR_CLOSED:
+                return 1;
             case DOOR_LOCKED:
+                return 2;
             case DOOR_UNLOCKED:
-                this.lockerId = lockerId;
-                this.offset = Objects.requireNonNull(offset);
-                break;
-
+                return 3;
             default:
                 throw new IllegalArgumentException("Unexpected event type");
         }
     }
+
+    /**
+     * @return zero-based index of a slave board the locker belongs to.
+     */
+    public int getSlave() {
+        return LockerCoordinates.slaveOf(coordinates);
+    }
+
+    /**
+     * @return one-based position of the locker within its slave board.
+     */
+    public int getPosition() {
+        return LockerCoordinates.positionOf(coordinates);
+    }
 }
@@ -0,0 +1,20 @@
+package za.co.vaultgroup.example.publisher;
+
+/**
+ * Events published to downstream consumers (see {@link EventPublisher}).
+ */
+public enum BusinessEvent {
+    PARCEL_STORED("parcel_stored"),
+    PARCEL_COLLECTED("parcel_collected"),
+    LOCKER_FAULT("locker_fault");
+
+    private final String messageType;
+
+    BusinessEvent(String messageType) {
+        this.messageType = messageType;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+}
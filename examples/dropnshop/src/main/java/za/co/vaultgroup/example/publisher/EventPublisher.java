@@ -0,0 +1,151 @@
+package za.co.vaultgroup.example.publisher;
+
+import cv_saas.Service;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.Capabilities;
+import za.co.vaultgroup.example.Capability;
+import za.co.vaultgroup.example.config.Settings.PublisherSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes {@link BusinessEvent business events} via `send_notification` RPC, so downstream consumers
+ * (e.g. dashboards) get real-time occupancy without polling the application.
+ *
+ * Every possible message (an event for a locker) is built once at startup, so publishing is just putting
+ * an immutable message to a queue. A background thread takes messages in batches and sends them
+ * with a bounded number of concurrent calls. Messages are dropped if the queue is full.
+ */
+@Slf4j
+public class EventPublisher {
+    private static final String APP_NAME = "dropnshop";
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int MAX_BATCH_SIZE = 32;
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private final Api api;
+    private final Capabilities capabilities;
+    private final PublisherSettings settings;
+    private final BlockingQueue<Service.NotificationMessageRequest> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Semaphore inFlightPermits = new Semaphore(MAX_IN_FLIGHT);
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // Indexed by event ordinal and lockerId, null until initialized.
+    private volatile Service.NotificationMessageRequest[][] messages;
+
+    public EventPublisher(Api api, Capabilities capabilities, PublisherSettings settings) {
+        this.api = api;
+        this.capabilities = capabilities;
+        this.settings = settings;
+    }
+
+    /**
+     * Builds all the messages, must be called once vault dimensions and capabilities are known.
+     *
+     * @param mapping number of lockers in each slave board.
+     */
+    public void initialize(List<Integer> mapping) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+
+        if (!capabilities.has(Capability.SEND_NOTIFICATION)) {
+            log.error("Device doesn't support notifications (protocol version {}), publishing disabled", capabilities.getProtocolVersion());
+            return;
+        }
+
+        int lockersCount = mapping.stream().mapToInt(Integer::intValue).sum();
+        Service.NotificationMessageRequest[][] newMessages = new Service.NotificationMessageRequest[BusinessEvent.values().length][lockersCount + 1];
+        Service.KVPairItem appItem = toItem("app", APP_NAME);
+
+        for (BusinessEvent event : BusinessEvent.values()) {
+            // Common part of all the messages for this event.
+            Service.NotificationMessageRequest.Builder builder = Service.NotificationMessageRequest.newBuilder()
+                    .setMsgType(event.getMessageType())
+                    .addVals(appItem);
+
+            if (StringUtils.isNotEmpty(settings.getBindAddr()) || StringUtils.isNotEmpty(settings.getSendAddr())) {
+                builder.setIntegration(Service.IntegrationItem.newBuilder()
+                        .setBindAddr(StringUtils.defaultString(settings.getBindAddr()))
+                        .setSendAddr(StringUtils.defaultString(settings.getSendAddr())));
+            }
+
+            Service.NotificationMessageRequest prototype = builder.build();
+            int lockerId = 1;
+
+            for (int slave = 0; slave < mapping.size(); slave++) {
+                for (int position = 1; position <= mapping.get(slave); position++, lockerId++) {
+                    newMessages[event.ordinal()][lockerId] = prototype.toBuilder()
+                            .addVals(toItem("locker", Integer.toString(lockerId)))
+                            .addVals(toItem("offset", "[" + slave + ":" + position + "]"))
+                            .build();
+                }
+            }
+        }
+
+        messages = newMessages;
+
+        Thread thread = new Thread(this::drain, "publisher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void publish(BusinessEvent event, int lockerId) {
+        Service.NotificationMessageRequest[][] currentMessages = messages;
+
+        if (currentMessages == null || lockerId < 1 || lockerId >= currentMessages[event.ordinal()].length) {
+            return;
+        }
+
+        if (!queue.offer(currentMessages[event.ordinal()][lockerId])) {
+            log.warn("Publisher queue is full, {} message(s) dropped so far", droppedCount.incrementAndGet());
+        }
+    }
+
+    private void drain() {
+        List<Service.NotificationMessageRequest> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                for (Service.NotificationMessageRequest message : batch) {
+                    inFlightPermits.acquire();
+                    api.sendNotification(message).whenComplete((isSuccessful, e) -> {
+                        inFlightPermits.release();
+
+                        if (Api.isUnimplemented(e)) {
+                            disable();
+                        }
+                    });
+                }
+
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // A device doesn't implement `send_notification` after all, nothing is queued anymore.
+    private void disable() {
+        capabilities.reportUnimplemented(Capability.SEND_NOTIFICATION);
+        messages = null;
+        queue.clear();
+    }
+
+    private static Service.KVPairItem toItem(String key, String value) {
+        return Service.KVPairItem.newBuilder()
+                .setK(key)
+                .setV(value)
+                .build();
+    }
+}
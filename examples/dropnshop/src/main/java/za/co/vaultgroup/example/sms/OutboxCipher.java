@@ -0,0 +1,122 @@
+package za.co.vaultgroup.example.sms;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Encrypts outbox records (AES-GCM), so pickup codes and cell numbers are not readable from the journal.
+ *
+ * The key is kept in a file of its own, which is deleted as soon as the outbox is empty (see {@link #destroy()}),
+ * so whatever is left of sent messages on the disk can't be decrypted any more. A new key is made for the next message.
+ * Not thread-safe.
+ */
+class OutboxCipher {
+    private static final String ALGORITHM = "AES";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEY_BITS = 128;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final Path path;
+    private final SecureRandom random = new SecureRandom();
+
+    // Null until it's loaded or made.
+    private SecretKey key;
+
+    OutboxCipher(Path path) {
+        this.path = path;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Makes a key if there's none yet.
+     */
+    String encrypt(String text) throws IOException, GeneralSecurityException {
+        if (key == null && !load()) {
+            make();
+        }
+
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] encrypted = cipher.doFinal(text.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer buffer = ByteBuffer.allocate(iv.length + encrypted.length);
+        buffer.put(iv).put(encrypted);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * @throws GeneralSecurityException if there's no key or the record is encrypted by another (destroyed) one.
+     */
+    String decrypt(String encoded) throws IOException, GeneralSecurityException {
+        if (key == null && !load()) {
+            throw new GeneralSecurityException("No key");
+        }
+
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+
+        if (bytes.length < IV_BYTES) {
+            throw new GeneralSecurityException("Record is too short");
+        }
+
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 0, IV_BYTES));
+        return new String(cipher.doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forgets the key and deletes its file, so nothing encrypted so far can be decrypted.
+     */
+    void destroy() throws IOException {
+        key = null;
+        Files.deleteIfExists(path);
+    }
+
+    private boolean load() throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        key = new SecretKeySpec(Files.readAllBytes(path), ALGORITHM);
+        return true;
+    }
+
+    private void make() throws IOException, GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance(ALGORITHM);
+        generator.init(KEY_BITS, random);
+        SecretKey newKey = generator.generateKey();
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        // Only readable by the owner, where a file system supports that.
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.deleteIfExists(path);
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+
+        Files.write(path, newKey.getEncoded());
+        key = newKey;
+    }
+}
@@ -0,0 +1,283 @@
+package za.co.vaultgroup.example.sms;
+
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.storage.Journal;
+import za.co.vaultgroup.example.time.Scheduler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers SMS messages via VG server (see `send_sms` RPC) in background, so a slow server never blocks a caller.
+ *
+ * The outbox is bounded and persistent (messages survive restarts), the same message to the same number
+ * is only queued once. Messages are sent one at a time, no faster than a token bucket allows,
+ * failed ones are retried with an exponential backoff.
+ *
+ * Messages carry pickup codes, so they're encrypted in the journal (see {@link OutboxCipher}) and cell numbers
+ * are masked in logs (see {@link #mask(String)}).
+ */
+@Slf4j
+public class SmsOutbox {
+    static final int BURST = 3;
+    static final int MAX_ATTEMPTS = 10;
+    static final long INITIAL_RETRY_DELAY_MILLIS = 5000;
+    static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // How many trailing digits of a cell number are logged.
+    private static final int VISIBLE_DIGITS = 3;
+
+    private final Api api;
+    private final Journal journal;
+    private final OutboxCipher cipher;
+    private final Scheduler scheduler;
+    private final int capacity;
+    private final TokenBucket tokenBucket;
+
+    // Key is a cell number and a text, so duplicates are ignored. Iteration order is the order of submission.
+    private final Map<String, Message> messages = new LinkedHashMap<>();
+
+    private long nextId = 1;
+    private boolean isSending = false;
+    private boolean isSaveScheduled = false;
+
+    /**
+     * @param scheduler runs the outbox one task at a time, it's never blocked as `send_sms` RPC is asynchronous.
+     */
+    public SmsOutbox(Api api, Journal journal, Scheduler scheduler, int capacity, int messagesPerMinute) {
+        this.api = api;
+        this.journal = journal;
+        this.cipher = new OutboxCipher(journal.getPath().resolveSibling(journal.getPath().getFileName() + ".key"));
+        this.scheduler = scheduler;
+        this.capacity = capacity;
+        this.tokenBucket = new TokenBucket(BURST, messagesPerMinute, scheduler::currentTimeMillis);
+    }
+
+    /**
+     * @return a cell number with all but the last few digits hidden, so logs don't collect customers' numbers.
+     */
+    public static String mask(String cellNum) {
+        return "***" + cellNum.substring(Math.max(0, cellNum.length() - VISIBLE_DIGITS));
+    }
+
+    /**
+     * Restores the messages left unsent by a previous run.
+     */
+    public void start() {
+        try {
+            List<String> lines = journal.load();
+
+            synchronized (this) {
+                for (String line : lines) {
+                    try {
+                        Message message = Message.fromLine(line, cipher);
+                        messages.put(message.getKey(), message);
+                        nextId = Math.max(nextId, message.id + 1);
+                    } catch (IllegalArgumentException | GeneralSecurityException e) {
+                        log.error("Skipping invalid outbox record");
+                    }
+                }
+
+                if (!messages.isEmpty()) {
+                    log.info("Restored {} unsent SMS message(s)", messages.size());
+                }
+
+                // Rewrites what's left with the current key (or destroys the key of an empty outbox).
+                scheduleSave();
+            }
+        } catch (IOException e) {
+            log.error("Failed to load SMS outbox from {}", journal.getPath(), e);
+        }
+
+        scheduler.schedule(this::pump, 0);
+    }
+
+    /**
+     * @return how many messages wait to be sent.
+     */
+    public synchronized int getPendingCount() {
+        return messages.size();
+    }
+
+    /**
+     * @return false if the outbox is full.
+     */
+    public synchronized boolean send(String cellNum, String text) {
+        Message message = new Message(nextId, cellNum, text);
+
+        if (messages.containsKey(message.getKey())) {
+            return true;
+        }
+
+        if (messages.size() >= capacity) {
+            log.error("SMS outbox is full, dropping a message to {}", mask(cellNum));
+            return false;
+        }
+
+        nextId++;
+        messages.put(message.getKey(), message);
+        scheduleSave();
+        scheduler.schedule(this::pump, 0);
+        return true;
+    }
+
+    // Only called by the scheduler.
+    private void pump() {
+        Message message = null;
+        long now = scheduler.currentTimeMillis();
+        long wakeUpAt = Long.MAX_VALUE;
+
+        synchronized (this) {
+            if (isSending) {
+                return;
+            }
+
+            for (Message candidate : messages.values()) {
+                if (candidate.notBeforeMillis <= now) {
+                    message = candidate;
+                    break;
+                }
+                wakeUpAt = Math.min(wakeUpAt, candidate.notBeforeMillis);
+            }
+
+            if (message != null) {
+                long delay = tokenBucket.getMillisUntilNext();
+
+                if (delay > 0) {
+                    scheduler.schedule(this::pump, delay);
+                    return;
+                }
+
+                tokenBucket.tryTake();
+                isSending = true;
+            }
+        }
+
+        if (message == null) {
+            // Nothing to send right now, wake up once the earliest retry is due.
+            if (wakeUpAt != Long.MAX_VALUE) {
+                scheduler.schedule(this::pump, wakeUpAt - now);
+            }
+            return;
+        }
+
+        Message sentMessage = message;
+        api.sendSms(message.cellNum, message.text).whenComplete((isSuccessful, e) ->
+                scheduler.schedule(() -> onSent(sentMessage, e == null && isSuccessful), 0));
+    }
+
+    private void onSent(Message message, boolean isSuccessful) {
+        synchronized (this) {
+            isSending = false;
+            message.attempts++;
+
+            if (isSuccessful) {
+                log.info("SMS message to {} is sent", mask(message.cellNum));
+                messages.remove(message.getKey());
+            } else if (message.attempts >= MAX_ATTEMPTS) {
+                log.error("Giving up on SMS message to {} after {} attempt(s)", mask(message.cellNum), message.attempts);
+                messages.remove(message.getKey());
+            } else {
+                message.notBeforeMillis = scheduler.currentTimeMillis() + Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << (message.attempts - 1));
+            }
+
+            scheduleSave();
+        }
+
+        pump();
+    }
+
+    // Must be called while holding the lock.
+    private void scheduleSave() {
+        if (!isSaveScheduled) {
+            isSaveScheduled = true;
+            scheduler.schedule(this::save, 0);
+        }
+    }
+
+    // Only called by the scheduler, like pump(), so records are never encrypted by a key that's being destroyed.
+    private void save() {
+        List<Message> unsent;
+
+        synchronized (this) {
+            isSaveScheduled = false;
+            unsent = new ArrayList<>(messages.values());
+        }
+
+        try {
+            List<String> lines = new ArrayList<>();
+
+            for (Message message : unsent) {
+                lines.add(message.toLine(cipher));
+            }
+
+            journal.save(lines);
+
+            // Nothing left to send, whatever remains of sent messages on the disk becomes unreadable.
+            if (unsent.isEmpty()) {
+                cipher.destroy();
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            log.error("Failed to save SMS outbox to {}", journal.getPath(), e);
+        }
+    }
+
+    private static class Message {
+        private final long id;
+        private final String cellNum;
+        private final String text;
+        private int attempts = 0;
+        private long notBeforeMillis = 0;
+
+        private Message(long id, String cellNum, String text) {
+            this.id = id;
+            this.cellNum = cellNum;
+            this.text = text;
+        }
+
+        private String getKey() {
+            return cellNum + '\n' + text;
+        }
+
+        // A cell number and a text are encrypted together, a cell number never contains a line break.
+        private String toLine(OutboxCipher cipher) throws IOException, GeneralSecurityException {
+            return id + " " + attempts + " " + cipher.encrypt(cellNum + '\n' + text);
+        }
+
+        private static Message fromLine(String line, OutboxCipher cipher) throws IOException, GeneralSecurityException {
+            String[] parts = line.trim().split(" ");
+            String cellNum;
+            String text;
+
+            if (parts.length == 3) {
+                String decrypted = cipher.decrypt(parts[2]);
+                int separator = decrypted.indexOf('\n');
+
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Malformed outbox record");
+                }
+
+                cellNum = decrypted.substring(0, separator);
+                text = decrypted.substring(separator + 1);
+            } else if (parts.length == 4) {
+                // Written by a version that didn't encrypt records, it's encrypted on the next save.
+                cellNum = parts[2];
+                text = new String(Base64.getDecoder().decode(parts[3]), StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException("Malformed outbox record");
+            }
+
+            Message message = new Message(Long.parseLong(parts[0]), cellNum, text);
+            message.attempts = Integer.parseInt(parts[1]);
+            return message;
+        }
+    }
+}
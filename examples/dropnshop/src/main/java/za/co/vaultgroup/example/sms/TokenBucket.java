@@ -0,0 +1,62 @@
+package za.co.vaultgroup.example.sms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A classic token bucket rate limiter: allows bursts up to the bucket capacity and a steady rate after that.
+ * Not thread-safe.
+ */
+class TokenBucket {
+    private final int capacity;
+    private final double refillIntervalMillis;
+    private final LongSupplier clock;
+
+    private double tokens;
+    private long lastRefillMillis;
+
+    /**
+     * @param clock current time in millis, see {@link za.co.vaultgroup.example.time.Scheduler#currentTimeMillis()}.
+     */
+    TokenBucket(int capacity, int tokensPerMinute, LongSupplier clock) {
+        this.capacity = capacity;
+        this.refillIntervalMillis = (double) TimeUnit.MINUTES.toMillis(1) / tokensPerMinute;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefillMillis = clock.getAsLong();
+    }
+
+    boolean tryTake() {
+        refill();
+
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return how long to wait until the next token is available.
+     */
+    long getMillisUntilNext() {
+        refill();
+
+        if (tokens >= 1) {
+            return 0;
+        }
+
+        return (long) Math.ceil((1 - tokens) * refillIntervalMillis);
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+
+        // A wall clock may go back, a bucket never gets emptier because of that.
+        if (now > lastRefillMillis) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillMillis) / refillIntervalMillis);
+            lastRefillMillis = now;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package za.co.vaultgroup.example.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A small text file that keeps some state across application restarts, one record per line.
+ * The whole file is rewritten on every save, so it's only suitable for a handful of records.
+ * A new content is written to a temporary file first and then atomically moved over the old one,
+ * so a power cut never leaves a half-written journal behind.
+ */
+public class Journal {
+    private final Path path;
+    private final Path temporaryPath;
+
+    public Journal(Path path) {
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public List<String> load() throws IOException {
+        if (Files.exists(path)) {
+            return Files.readAllLines(path, StandardCharsets.UTF_8);
+        }
+
+        return Collections.emptyList();
+    }
+
+    public void save(Collection<String> lines) throws IOException {
+        StringBuilder builder = new StringBuilder();
+
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            // Make sure data is on disk before the file becomes visible under its actual name.
+            channel.force(true);
+        }
+
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
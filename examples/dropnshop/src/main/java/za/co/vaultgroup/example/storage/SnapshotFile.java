@@ -0,0 +1,122 @@
+package za.co.vaultgroup.example.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the latest version of some state in a memory-mapped file that has two slots.
+ * A new version always overwrites the older slot, so a crash in the middle of a write never destroys
+ * the previous version. Every slot is protected by a checksum, a torn write is just ignored on load.
+ * Not thread-safe.
+ */
+public class SnapshotFile {
+    private static final int MAGIC = 0x534e4131; // "SNA1"
+
+    // Magic (4) + sequence (8) + length (4) + checksum (8).
+    private static final int SLOT_HEADER_SIZE = 24;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SEQUENCE_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 12;
+    private static final int CHECKSUM_OFFSET = 16;
+
+    private final int maxPayloadSize;
+    private final int slotSize;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    // Sequence of the latest saved version, 0 if there's none.
+    private long sequence;
+
+    public SnapshotFile(Path path, int maxPayloadSize) throws IOException {
+        this.maxPayloadSize = maxPayloadSize;
+        this.slotSize = SLOT_HEADER_SIZE + maxPayloadSize;
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A mapping stays valid after the channel is closed.
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+        }
+    }
+
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    /**
+     * @return the latest valid version or null if there's none.
+     */
+    public byte[] load() {
+        byte[] latest = null;
+
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = slot * slotSize;
+
+            if (buffer.getInt(offset + MAGIC_OFFSET) != MAGIC) {
+                continue;
+            }
+
+            long slotSequence = buffer.getLong(offset + SEQUENCE_OFFSET);
+            int length = buffer.getInt(offset + LENGTH_OFFSET);
+
+            if (slotSequence <= sequence || length < 0 || length > maxPayloadSize) {
+                continue;
+            }
+
+            byte[] payload = new byte[length];
+
+            for (int i = 0; i < length; i++) {
+                payload[i] = buffer.get(offset + SLOT_HEADER_SIZE + i);
+            }
+
+            if (checksum(slotSequence, payload) == buffer.getLong(offset + CHECKSUM_OFFSET)) {
+                sequence = slotSequence;
+                latest = payload;
+            }
+        }
+
+        return latest;
+    }
+
+    public void save(byte[] payload) {
+        if (payload.length > maxPayloadSize) {
+            throw new IllegalArgumentException("Snapshot is too big: " + payload.length + " bytes");
+        }
+
+        long newSequence = sequence + 1;
+
+        // Slots are used in turns, so the latest version is never overwritten.
+        int offset = (int) (newSequence % 2) * slotSize;
+
+        for (int i = 0; i < payload.length; i++) {
+            buffer.put(offset + SLOT_HEADER_SIZE + i, payload[i]);
+        }
+
+        buffer.putLong(offset + SEQUENCE_OFFSET, newSequence);
+        buffer.putInt(offset + LENGTH_OFFSET, payload.length);
+        buffer.putLong(offset + CHECKSUM_OFFSET, checksum(newSequence, payload));
+        buffer.putInt(offset + MAGIC_OFFSET, MAGIC);
+        buffer.force();
+
+        sequence = newSequence;
+    }
+
+    private long checksum(long sequence, byte[] payload) {
+        crc.reset();
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (sequence >>> shift));
+        }
+
+        crc.update(payload, 0, payload.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,23 @@
+package za.co.vaultgroup.example.time;
+
+/**
+ * A clock and delayed tasks, so time-based flows (see {@link za.co.vaultgroup.example.config.Timing})
+ * can run either in real time ({@link SystemScheduler}) or in simulated time ({@link VirtualScheduler}).
+ */
+public interface Scheduler {
+    /**
+     * @return current time (epoch millis) according to this scheduler.
+     */
+    long currentTimeMillis();
+
+    Task schedule(Runnable runnable, long delayMillis);
+
+    Task scheduleWithFixedDelay(Runnable runnable, long initialDelayMillis, long delayMillis);
+
+    interface Task {
+        /**
+         * Does nothing if a task is already executed (or being executed).
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,45 @@
+package za.co.vaultgroup.example.time;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock time, tasks are executed by a single background thread.
+ */
+public class SystemScheduler implements Scheduler {
+    private final ScheduledExecutorService executor;
+
+    public SystemScheduler(String threadName) {
+        ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Timeouts are mostly cancelled, don't keep them in the queue until they're due.
+        threadPool.setRemoveOnCancelPolicy(true);
+        this.executor = Executors.unconfigurableScheduledExecutorService(threadPool);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public Task schedule(Runnable runnable, long delayMillis) {
+        return toTask(executor.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public Task scheduleWithFixedDelay(Runnable runnable, long initialDelayMillis, long delayMillis) {
+        return toTask(executor.scheduleWithFixedDelay(runnable, initialDelayMillis, delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    private static Task toTask(ScheduledFuture<?> future) {
+        return () -> future.cancel(false);
+    }
+}
@@ -0,0 +1,136 @@
+package za.co.vaultgroup.example.time;
+
+import java.util.PriorityQueue;
+
+/**
+ * Simulated time that only moves when it's explicitly advanced, so a two-minute timeout takes no time at all.
+ * Tasks are executed by the thread that advances the time, in order of their due time (and then in order of scheduling).
+ * Used by tools, see {@link za.co.vaultgroup.example.tools.SoakTest}.
+ */
+public class VirtualScheduler implements Scheduler {
+    private final PriorityQueue<VirtualTask> queue = new PriorityQueue<>();
+
+    private long now;
+    private long sequence = 0;
+
+    public VirtualScheduler(long startMillis) {
+        this.now = startMillis;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public Task schedule(Runnable runnable, long delayMillis) {
+        return add(runnable, delayMillis, -1);
+    }
+
+    @Override
+    public Task scheduleWithFixedDelay(Runnable runnable, long initialDelayMillis, long delayMillis) {
+        return add(runnable, initialDelayMillis, delayMillis);
+    }
+
+    /**
+     * Moves the time forward executing all the tasks that become due.
+     */
+    public void advanceBy(long millis) {
+        long until;
+
+        synchronized (this) {
+            until = now + millis;
+        }
+
+        while (runNext(until)) {
+            // Keep going.
+        }
+
+        synchronized (this) {
+            now = Math.max(now, until);
+        }
+    }
+
+    /**
+     * Moves the time forward to the given moment (epoch millis), does nothing if it's already past.
+     */
+    public void advanceTo(long millis) {
+        advanceBy(Math.max(0, millis - currentTimeMillis()));
+    }
+
+    /**
+     * Executes the tasks that are due right now (without moving the time).
+     */
+    public void runDue() {
+        advanceBy(0);
+    }
+
+    /**
+     * @return the number of pending tasks.
+     */
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    private synchronized VirtualTask add(Runnable runnable, long delayMillis, long periodMillis) {
+        VirtualTask task = new VirtualTask(runnable, now + Math.max(0, delayMillis), periodMillis, sequence++);
+        queue.add(task);
+        return task;
+    }
+
+    private boolean runNext(long until) {
+        VirtualTask task;
+
+        synchronized (this) {
+            task = queue.peek();
+
+            if (task == null || task.dueMillis > until) {
+                return false;
+            }
+
+            queue.poll();
+            now = Math.max(now, task.dueMillis);
+        }
+
+        // Executed without holding the lock, so a task can schedule another one.
+        if (!task.isCancelled) {
+            task.runnable.run();
+
+            if (task.periodMillis >= 0 && !task.isCancelled) {
+                synchronized (this) {
+                    task.dueMillis = now + task.periodMillis;
+                    task.sequence = sequence++;
+                    queue.add(task);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static class VirtualTask implements Task, Comparable<VirtualTask> {
+        private final Runnable runnable;
+        private final long periodMillis;
+        private long dueMillis;
+        private long sequence;
+        private volatile boolean isCancelled = false;
+
+        private VirtualTask(Runnable runnable, long dueMillis, long periodMillis, long sequence) {
+            this.runnable = runnable;
+            this.dueMillis = dueMillis;
+            this.periodMillis = periodMillis;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+        }
+
+        @Override
+        public int compareTo(VirtualTask other) {
+            int result = Long.compare(dueMillis, other.dueMillis);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package za.co.vaultgroup.example.tls;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells when certificate or key files are changed (e.g. renewed).
+ *
+ * Files are polled rather than watched (unlike {@link za.co.vaultgroup.example.config.SettingsWatcher}):
+ * certificates are usually replaced by swapping a symlink or renaming a directory, which directory watching
+ * misses, and they change rarely anyway.
+ */
+@Slf4j
+public class CertificateWatcher {
+    private final List<Path> files;
+    private final long intervalSeconds;
+    private final Runnable listener;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "certificate-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed from the executor's thread.
+    private long[] lastModified;
+
+    public CertificateWatcher(List<Path> files, long intervalSeconds, Runnable listener) {
+        this.files = files;
+        this.intervalSeconds = intervalSeconds;
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        lastModified = getLastModified();
+        executor.scheduleWithFixedDelay(this::check, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void check() {
+        long[] current = getLastModified();
+
+        for (int i = 0; i < current.length; i++) {
+            // A missing file (0) is likely to be in the middle of replacement, wait for it to appear.
+            if (current[i] == 0) {
+                return;
+            }
+        }
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != lastModified[i]) {
+                lastModified = current;
+                log.info("Certificate files are changed, reloading");
+
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    log.error("Failed to reload certificates", e);
+                }
+                return;
+            }
+        }
+    }
+
+    private long[] getLastModified() {
+        long[] result = new long[files.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            // Resolves symlinks, so a swapped link is noticed too.
+            result[i] = files.get(i).toFile().lastModified();
+        }
+
+        return result;
+    }
+}
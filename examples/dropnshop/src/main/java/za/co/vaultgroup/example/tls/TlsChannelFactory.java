@@ -0,0 +1,115 @@
+package za.co.vaultgroup.example.tls;
+
+import io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import za.co.vaultgroup.example.config.Settings.TlsSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds channels to the controller encrypted according to `tls` settings.
+ *
+ * Native OpenSSL (BoringSSL from netty-tcnative) is used if it's available, it's much cheaper than JDK's TLS
+ * on a small board. All channels share the same {@link SslContext} (until certificates are reloaded), so does
+ * its session cache, so when a connection is lost the new one resumes the session instead of a full handshake.
+ * Note that with OpenSSL sessions are only resumed over TLSv1.2 (see `tls.protocols` setting).
+ */
+@Slf4j
+public class TlsChannelFactory {
+    // Netty only caches client sessions with OpenSSL if this is set, it's read once the first SSL context is created.
+    private static final String CLIENT_SESSION_CACHE_PROPERTY = "io.netty.handler.ssl.openssl.sessionCacheClient";
+
+    static {
+        if (System.getProperty(CLIENT_SESSION_CACHE_PROPERTY) == null) {
+            System.setProperty(CLIENT_SESSION_CACHE_PROPERTY, "true");
+        }
+    }
+
+    private final String target;
+    private final TlsSettings settings;
+
+    // Replaced when certificates are reloaded.
+    private volatile SslContext sslContext;
+
+    public TlsChannelFactory(String target, TlsSettings settings) throws IOException {
+        this.target = target;
+        this.settings = settings;
+
+        reload();
+    }
+
+    /**
+     * @return OpenSSL if the native library is available, otherwise JDK.
+     */
+    public static SslProvider getProvider() {
+        return OpenSsl.isAvailable() && SslProvider.isAlpnSupported(SslProvider.OPENSSL) ? SslProvider.OPENSSL : SslProvider.JDK;
+    }
+
+    /**
+     * Reads certificate files again, channels built afterwards use them (existing ones are not affected).
+     * The current certificates stay in effect if new ones are invalid.
+     */
+    public void reload() throws IOException {
+        SslContextBuilder builder = GrpcSslContexts.configure(SslContextBuilder.forClient(), getProvider())
+                .sessionCacheSize(settings.getSessionCacheSize())
+                .sessionTimeout(settings.getSessionTimeoutSeconds());
+
+        if (settings.getProtocols() != null && !settings.getProtocols().isEmpty()) {
+            builder.protocols(settings.getProtocols());
+        }
+
+        if (StringUtils.isNotEmpty(settings.getTrustCertCollection())) {
+            builder.trustManager(new File(settings.getTrustCertCollection()));
+        }
+
+        if (StringUtils.isNotEmpty(settings.getCertChain())) {
+            builder.keyManager(new File(settings.getCertChain()), new File(settings.getPrivateKey()));
+        }
+
+        sslContext = builder.build();
+    }
+
+    /**
+     * @return the current context, it changes once certificates are reloaded.
+     */
+    public SslContext getSslContext() {
+        return sslContext;
+    }
+
+    public NettyChannelBuilder newChannelBuilder() {
+        NettyChannelBuilder builder = NettyChannelBuilder.forTarget(target)
+                .sslContext(sslContext);
+
+        if (StringUtils.isNotEmpty(settings.getAuthorityOverride())) {
+            builder.overrideAuthority(settings.getAuthorityOverride());
+        }
+
+        return builder;
+    }
+
+    /**
+     * @return certificate and key files in use (so they can be watched for changes).
+     */
+    public List<Path> getFiles() {
+        List<Path> files = new ArrayList<>();
+
+        for (String file : new String[] {settings.getTrustCertCollection(), settings.getCertChain(), settings.getPrivateKey()}) {
+            if (StringUtils.isNotEmpty(file)) {
+                files.add(Paths.get(file));
+            }
+        }
+
+        return files;
+    }
+}
@@ -0,0 +1,68 @@
+package za.co.vaultgroup.example.tools;
+
+/**
+ * Counts values in logarithmic buckets (16 sub-buckets per power of two, so within ~6% of an actual value),
+ * millions of samples take a few kilobytes and recording one never allocates.
+ */
+class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long totalCount = 0;
+    private long max = 0;
+
+    void record(long value) {
+        long positive = Math.max(0, value);
+        counts[indexOf(positive)]++;
+        totalCount++;
+        max = Math.max(max, positive);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @return an upper bound of the bucket the percentile falls into.
+     */
+    long getPercentile(double percentile) {
+        long threshold = (long) Math.ceil(totalCount * percentile / 100.0);
+        long count = 0;
+
+        for (int index = 0; index < counts.length; index++) {
+            count += counts[index];
+
+            if (count >= threshold && count > 0) {
+                return Math.min(max, upperBoundOf(index));
+            }
+        }
+
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // The highest bit tells a power of two, the next 4 bits tell a sub-bucket within it.
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
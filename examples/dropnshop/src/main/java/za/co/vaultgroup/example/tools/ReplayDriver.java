@@ -0,0 +1,185 @@
+package za.co.vaultgroup.example.tools;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.app.Vault;
+import za.co.vaultgroup.example.config.Settings;
+import za.co.vaultgroup.example.config.Timing;
+import za.co.vaultgroup.example.config.Tunables;
+import za.co.vaultgroup.example.notification.EventLogReader;
+import za.co.vaultgroup.example.notification.NotificationParser;
+import za.co.vaultgroup.example.time.VirtualScheduler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays notifications recorded by {@link za.co.vaultgroup.example.notification.EventRecorder}
+ * against a vault that talks to an in-memory device (see {@link StubCommsService}),
+ * so an incident can be reproduced and the event handling can be profiled without hardware.
+ *
+ * Usage: ReplayDriver <log> [--fast] [--mapping 10-10-10] [--seed 42]
+ *
+ * With `--fast` notifications are handled as fast as possible, otherwise original pauses between them are kept.
+ * Either way the vault runs in simulated time (see {@link VirtualScheduler}) that is moved to every notification's
+ * recorded time before it's handled, so timeouts fire exactly where they did originally and fast replays are repeatable.
+ * Dropoff lockers and pickup codes are picked by a random seeded with `--seed`, so the same log and seed always
+ * lead to the same lockers and codes.
+ * Vault's own files (journals, spool, snapshot, etc.) are kept in a temporary directory, so production state is never touched.
+ */
+@Slf4j
+public class ReplayDriver {
+    private static final String FAST_OPTION = "--fast";
+    private static final String MAPPING_OPTION = "--mapping";
+    private static final String SEED_OPTION = "--seed";
+    private static final String DEFAULT_MAPPING = "16";
+    private static final long DEFAULT_SEED = 42;
+
+    private static final long READY_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayDriver <log> [" + FAST_OPTION + "] [" + MAPPING_OPTION + " 10-10-10] [" + SEED_OPTION + " 42]");
+            System.exit(1);
+        }
+
+        Path logPath = Paths.get(args[0]);
+        boolean isFast = false;
+        String mapping = DEFAULT_MAPPING;
+        long seed = DEFAULT_SEED;
+
+        for (int i = 1; i < args.length; i++) {
+            if (FAST_OPTION.equals(args[i])) {
+                isFast = true;
+            } else if (MAPPING_OPTION.equals(args[i]) && i + 1 < args.length) {
+                mapping = args[++i];
+            } else if (SEED_OPTION.equals(args[i]) && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            }
+        }
+
+        Settings settings = Settings.get();
+
+        if (settings == null) {
+            System.exit(1);
+        }
+
+        isolate(settings, Files.createTempDirectory("dropnshop-replay"));
+        Tunables.publish(settings);
+
+        StubCommsService device = new StubCommsService(parseMapping(mapping));
+        String name = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(name).directExecutor().addService(device).build().start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        EventLogReader reader = new EventLogReader(logPath);
+        long startedAtMillis = reader.getStartedAtMillis();
+
+        VirtualScheduler scheduler = new VirtualScheduler(startedAtMillis);
+        Vault vault = new Vault(settings, new Api(channel), scheduler, new Random(seed));
+        vault.start();
+
+        // Greeting is shown for a while, let the simulated time go until the vault is ready.
+        long readyDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(READY_TIMEOUT_SECONDS);
+
+        while (!vault.awaitReady(1, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() > readyDeadline) {
+                log.error("Vault is not ready in {} seconds", READY_TIMEOUT_SECONDS);
+                System.exit(1);
+            }
+
+            scheduler.advanceBy(Timing.ALERT_SHORT.toMilliseconds());
+        }
+
+        // Latencies of handling every notification (nanoseconds).
+        List<Long> latencies = new ArrayList<>();
+
+        NotificationParser parser = new NotificationParser(event -> {
+            long start = System.nanoTime();
+            device.apply(event);
+            vault.handle(event);
+            latencies.add(System.nanoTime() - start);
+        });
+
+        long replayStartNanos = System.nanoTime();
+        int count = 0;
+
+        try {
+            log.info("Replaying notifications recorded at {}", Instant.ofEpochMilli(startedAtMillis));
+
+            while (reader.next()) {
+                if (!isFast) {
+                    long delay = reader.getNanos() - (System.nanoTime() - replayStartNanos);
+
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                }
+
+                scheduler.advanceTo(startedAtMillis + TimeUnit.NANOSECONDS.toMillis(reader.getNanos()));
+                parser.parse(reader.getData(), 0, reader.getLength());
+                scheduler.runDue();
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+
+        long elapsedNanos = System.nanoTime() - replayStartNanos;
+
+        System.out.printf("Replayed %d notification(s), %d event(s) in %d ms, %d RPC call(s)%n",
+                count, latencies.size(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), device.getCallCount());
+
+        if (!latencies.isEmpty()) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("Handling latency: p50 %d us, p99 %d us, max %d us%n",
+                    TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 50)),
+                    TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 99)),
+                    TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length - 1]));
+        }
+
+        channel.shutdownNow();
+        server.shutdownNow();
+        System.exit(0);
+    }
+
+    /**
+     * Keeps all the files a vault writes in the given directory and turns off anything that talks to the outside world.
+     */
+    static void isolate(Settings settings, Path directory) {
+        settings.getCommandSettings().setJournal(directory.resolve("commands.journal").toString());
+        settings.getAuditSettings().setSpool(directory.resolve("audit.spool").toString());
+        settings.getSmsSettings().setOutbox(directory.resolve("sms.journal").toString());
+        settings.getAnalyticsSettings().setDirectory(directory.resolve("analytics").toString());
+        settings.getSnapshotSettings().setPath(directory.resolve("vault.snapshot").toString());
+        settings.getRecorderSettings().setEnabled(false);
+        settings.getMqttSettings().setEnabled(false);
+        settings.getPublisherSettings().setEnabled(false);
+        settings.getDisplaySettings().setMirrorSettings(null);
+        settings.getBackofficeSettings().setEnabled(false);
+    }
+
+    static List<Integer> parseMapping(String mapping) {
+        List<Integer> result = new ArrayList<>();
+
+        for (String count : mapping.split("-")) {
+            result.add(Integer.parseInt(count.trim()));
+        }
+
+        return result;
+    }
+
+    static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile / 100.0) - 1)];
+    }
+}
@@ -0,0 +1,250 @@
+package za.co.vaultgroup.example.tools;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.app.Vault;
+import za.co.vaultgroup.example.config.Config;
+import za.co.vaultgroup.example.config.Settings;
+import za.co.vaultgroup.example.config.Timing;
+import za.co.vaultgroup.example.config.Tunables;
+import za.co.vaultgroup.example.notification.event.Event;
+import za.co.vaultgroup.example.notification.event.EventType;
+import za.co.vaultgroup.example.notification.event.KeyPressedEvent;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+import za.co.vaultgroup.example.time.VirtualScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a vault through a large number of dropoffs and pickups (some of them time out) in simulated time
+ * (see {@link VirtualScheduler}), so a day of traffic with all its two-minute timeouts takes seconds.
+ * The vault talks to an in-memory device (see {@link StubCommsService}).
+ * Reports latency and allocated bytes of handling a single event.
+ * Run it with --log-level off and with --log-level info (or debug) to see what logging costs the event thread.
+ *
+ * Usage: SoakTest [transactions] [--mapping 10-10-10] [--log-level info]
+ */
+@Slf4j
+public class SoakTest {
+    private static final String MAPPING_OPTION = "--mapping";
+    private static final String LOG_LEVEL_OPTION = "--log-level";
+    private static final String DEFAULT_MAPPING = "16-16";
+    private static final int DEFAULT_TRANSACTIONS = 100000;
+
+    // Share of transactions where a customer never opens (or closes) a locker.
+    private static final double TIMEOUT_RATE = 0.1;
+
+    private static final long READY_TIMEOUT_SECONDS = 30;
+
+    private final Vault vault;
+    private final StubCommsService device;
+    private final VirtualScheduler scheduler;
+    private final Random random = new Random(42);
+
+    // Key is a lockerId, value is a password.
+    private final Map<Integer, String> parcels = new HashMap<>();
+    private final List<Event> deviceEvents = new ArrayList<>();
+    private final Config config = new Config();
+
+    private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Histogram latencies = new Histogram();
+    private final Histogram allocations = new Histogram();
+
+    private int dropoffs = 0;
+    private int pickups = 0;
+    private int timeouts = 0;
+
+    private SoakTest(Vault vault, StubCommsService device, VirtualScheduler scheduler, List<Integer> mapping) {
+        this.vault = vault;
+        this.device = device;
+        this.scheduler = scheduler;
+        this.config.setMapping(mapping);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int transactions = DEFAULT_TRANSACTIONS;
+        String mapping = DEFAULT_MAPPING;
+
+        for (int i = 0; i < args.length; i++) {
+            if (MAPPING_OPTION.equals(args[i]) && i + 1 < args.length) {
+                mapping = args[++i];
+            } else if (LOG_LEVEL_OPTION.equals(args[i]) && i + 1 < args.length) {
+                Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+                root.setLevel(Level.toLevel(args[++i], Level.INFO));
+            } else {
+                transactions = Integer.parseInt(args[i]);
+            }
+        }
+
+        Settings settings = Settings.get();
+
+        if (settings == null) {
+            System.exit(1);
+        }
+
+        ReplayDriver.isolate(settings, Files.createTempDirectory("dropnshop-soak"));
+        Tunables.publish(settings);
+
+        List<Integer> lockerMapping = ReplayDriver.parseMapping(mapping);
+        StubCommsService device = new StubCommsService(lockerMapping);
+        String name = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(name).directExecutor().addService(device).build().start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        VirtualScheduler scheduler = new VirtualScheduler(System.currentTimeMillis());
+        Vault vault = new Vault(settings, new Api(channel), scheduler, new Random(42));
+        vault.start();
+
+        // Greeting is shown for a while, let the simulated time go until the vault is ready.
+        long readyDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(READY_TIMEOUT_SECONDS);
+
+        while (!vault.awaitReady(1, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() > readyDeadline) {
+                log.error("Vault is not ready in {} seconds", READY_TIMEOUT_SECONDS);
+                System.exit(1);
+            }
+
+            scheduler.advanceBy(Timing.ALERT_SHORT.toMilliseconds());
+        }
+
+        SoakTest test = new SoakTest(vault, device, scheduler, lockerMapping);
+        long start = System.nanoTime();
+        long simulatedStart = scheduler.currentTimeMillis();
+
+        for (int i = 0; i < transactions; i++) {
+            // Keep the vault about half full.
+            if (test.parcels.isEmpty() || (test.parcels.size() < device.getLockersCount() / 2 && test.random.nextBoolean())) {
+                test.dropoff();
+            } else {
+                test.pickup();
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long simulatedMillis = scheduler.currentTimeMillis() - simulatedStart;
+
+        System.out.printf("Log level: %s%n", ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).getLevel());
+        System.out.printf("%d transaction(s): %d dropoff(s), %d pickup(s), %d timeout(s)%n", transactions, test.dropoffs, test.pickups, test.timeouts);
+        System.out.printf("Simulated %d h in %d ms (%dx)%n", TimeUnit.MILLISECONDS.toHours(simulatedMillis),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), simulatedMillis / Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        test.print("Handling latency (ns)", test.latencies);
+        test.print("Allocated per event (bytes)", test.allocations);
+
+        channel.shutdownNow();
+        server.shutdownNow();
+        System.exit(0);
+    }
+
+    private void dropoff() {
+        String password = generatePassword();
+
+        device.resetLastUnlockedLockerId();
+        press("1");
+        press(password);
+        press("#");
+
+        int lockerId = device.getLastUnlockedLockerId();
+
+        if (lockerId == 0) {
+            // No free lockers.
+            scheduler.advanceBy(Timing.ALERT_LONG.toMilliseconds());
+            return;
+        }
+
+        if (random.nextDouble() < TIMEOUT_RATE) {
+            scheduler.advanceBy(Timing.DROPOFF_PENDING.toMilliseconds());
+            timeouts++;
+        } else {
+            door(EventType.DOOR_OPENED, lockerId);
+            door(EventType.DOOR_CLOSED, lockerId);
+            parcels.put(lockerId, password);
+            dropoffs++;
+        }
+
+        scheduler.advanceBy(Timing.ALERT_LONG.toMilliseconds());
+    }
+
+    private void pickup() {
+        List<Integer> lockerIds = new ArrayList<>(parcels.keySet());
+        int lockerId = lockerIds.get(random.nextInt(lockerIds.size()));
+
+        press("2");
+        press(Integer.toString(lockerId));
+        press("#");
+        press(parcels.get(lockerId));
+        press("#");
+
+        if (random.nextDouble() < TIMEOUT_RATE) {
+            scheduler.advanceBy(Timing.PICKUP_PENDING.toMilliseconds());
+            timeouts++;
+        } else {
+            door(EventType.DOOR_OPENED, lockerId);
+            door(EventType.DOOR_CLOSED, lockerId);
+            parcels.remove(lockerId);
+            pickups++;
+        }
+
+        scheduler.advanceBy(Timing.ALERT_LONG.toMilliseconds());
+    }
+
+    private String generatePassword() {
+        String password;
+
+        do {
+            password = String.format("%05d", random.nextInt(100000));
+        } while (password.chars().distinct().count() == 1 || "12345".equals(password) || "54321".equals(password));
+
+        return password;
+    }
+
+    private void press(String keys) {
+        for (char key : keys.toCharArray()) {
+            handle(KeyPressedEvent.of(key));
+        }
+    }
+
+    private void door(EventType type, int lockerId) {
+        handle(LockerStateChangedEvent.of(type, lockerId, config.coordinatesOf(lockerId)));
+    }
+
+    private void handle(Event event) {
+        device.apply(event);
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        vault.handle(event);
+        latencies.record(System.nanoTime() - start);
+        allocations.record(threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore);
+
+        // Confirmations a real device would send for lock/unlock commands.
+        device.drainEvents(deviceEvents);
+
+        for (Event deviceEvent : deviceEvents) {
+            device.apply(deviceEvent);
+            vault.handle(deviceEvent);
+        }
+
+        deviceEvents.clear();
+        scheduler.runDue();
+    }
+
+    private void print(String title, Histogram histogram) {
+        System.out.printf("%s: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d (%d events)%n", title,
+                histogram.getPercentile(50), histogram.getPercentile(90), histogram.getPercentile(99),
+                histogram.getPercentile(99.9), histogram.getMax(), histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,247 @@
+package za.co.vaultgroup.example.tools;
+
+import com.google.protobuf.Empty;
+import cv_saas.CommsServiceGrpc;
+import cv_saas.Service;
+import io.grpc.stub.StreamObserver;
+import za.co.vaultgroup.example.config.Config;
+import za.co.vaultgroup.example.notification.event.Event;
+import za.co.vaultgroup.example.notification.event.EventType;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory device that answers every RPC the application uses, so a vault can run without hardware.
+ * Door states follow the notifications passed to {@link #apply(Event)}, lock states follow lock/unlock calls.
+ * Notifications a real device would send in response to lock/unlock calls are queued (see {@link #drainEvents(List)}).
+ */
+class StubCommsService extends CommsServiceGrpc.CommsServiceImplBase {
+    private static final String VERSION = "stub";
+    private static final String PROTOCOL_VERSION = "1.0.2";
+
+    private static final int DOOR_CLOSED = 0;
+    private static final int DOOR_OPEN = 1;
+
+    private static final int LOCKER_UNLOCKED = 0;
+    private static final int LOCKER_LOCKED = 1;
+
+    private static final Service.GeneralResponse SUCCESS = Service.GeneralResponse.newBuilder()
+            .setResp(Service.BasicResponse.newBuilder().setSuccess(true))
+            .build();
+
+    private final List<Integer> mapping;
+    private final Config config = new Config();
+    private final int[] doors;
+    private final int[] locks;
+
+    private final AtomicLong callCount = new AtomicLong();
+
+    private final List<Event> events = new ArrayList<>();
+
+    // The last locker unlocked, 0 if none.
+    private int lastUnlockedLockerId = 0;
+
+    StubCommsService(List<Integer> mapping) {
+        int count = mapping.stream().mapToInt(Integer::intValue).sum();
+
+        this.mapping = mapping;
+        this.config.setMapping(mapping);
+        this.doors = new int[count];
+        this.locks = new int[count];
+
+        Arrays.fill(locks, LOCKER_LOCKED);
+    }
+
+    int getLockersCount() {
+        return doors.length;
+    }
+
+    /**
+     * @return how many RPC calls have been made.
+     */
+    long getCallCount() {
+        return callCount.get();
+    }
+
+    synchronized int getLastUnlockedLockerId() {
+        return lastUnlockedLockerId;
+    }
+
+    synchronized void resetLastUnlockedLockerId() {
+        lastUnlockedLockerId = 0;
+    }
+
+    /**
+     * Moves the notifications caused by lock/unlock calls to the given list.
+     */
+    synchronized void drainEvents(List<Event> target) {
+        target.addAll(events);
+        events.clear();
+    }
+
+    synchronized void apply(Event event) {
+        if (!(event instanceof LockerStateChangedEvent)) {
+            return;
+        }
+
+        int index = ((LockerStateChangedEvent) event).getLockerId() - 1;
+
+        if (index < 0 || index >= doors.length) {
+            return;
+        }
+
+        switch (event.getType()) {
+            case DOOR_OPENED:
+                doors[index] = DOOR_OPEN;
+                break;
+            case DOOR_CLOSED:
+                doors[index] = DOOR_CLOSED;
+                break;
+            case DOOR_LOCKED:
+                locks[index] = LOCKER_LOCKED;
+                break;
+            case DOOR_UNLOCKED:
+                locks[index] = LOCKER_UNLOCKED;
+                break;
+        }
+    }
+
+    @Override
+    public void getVersion(Empty request, StreamObserver<Service.GetVersionResponse> observer) {
+        reply(observer, Service.GetVersionResponse.newBuilder()
+                .setResp(SUCCESS.getResp())
+                .setVersion(VERSION)
+                .build());
+    }
+
+    @Override
+    public void getProtocolVersion(Empty request, StreamObserver<Service.GetProtocolVersionResponse> observer) {
+        reply(observer, Service.GetProtocolVersionResponse.newBuilder()
+                .setResp(SUCCESS.getResp())
+                .setVersion(PROTOCOL_VERSION)
+                .build());
+    }
+
+    @Override
+    public void getLockerMap(Empty request, StreamObserver<Service.GetLockerMapResponse> observer) {
+        reply(observer, Service.GetLockerMapResponse.newBuilder()
+                .setResp(SUCCESS.getResp())
+                .addAllLockers(mapping)
+                .setNumLockers(doors.length)
+                .build());
+    }
+
+    @Override
+    public void getSlaveFirmware(Empty request, StreamObserver<Service.GetSlaveFirmwareResponse> observer) {
+        Service.GetSlaveFirmwareResponse.Builder builder = Service.GetSlaveFirmwareResponse.newBuilder()
+                .setResp(SUCCESS.getResp());
+
+        for (int slave = 0; slave < mapping.size(); slave++) {
+            builder.addFirmware(VERSION);
+        }
+
+        reply(observer, builder.build());
+    }
+
+    @Override
+    public void getLockerStates(Empty request, StreamObserver<Service.GetLockerStatesResponse> observer) {
+        Service.GetLockerStatesResponse.Builder builder = Service.GetLockerStatesResponse.newBuilder()
+                .setResp(SUCCESS.getResp());
+
+        synchronized (this) {
+            for (int i = 0; i < doors.length; i++) {
+                builder.addDoorMap(doors[i]);
+                builder.addLockerMap(Service.LockerStateResponseMessage.newBuilder()
+                        .setInitialized(true)
+                        .setState(Service.LockerStateMessage.newBuilder().setState(locks[i])));
+            }
+        }
+
+        reply(observer, builder.build());
+    }
+
+    @Override
+    public void lockLocker(Service.LockRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        setLock(request.getLockerNum(), LOCKER_LOCKED);
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void unlockLocker(Service.LockRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        setLock(request.getLockerNum(), LOCKER_UNLOCKED);
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void setLockerState(Service.SetLockerStateRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        setLock(request.getLockerNum(), request.getState());
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void toggleBuzzer(Service.ToggleBuzzerRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void lcdClearScreen(Empty request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void lcdClearLine(Service.LcdClearLineRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void lcdWriteData(Service.LcdWriteDataRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void userAudit(Service.UserAuditLogRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void sendSms(Service.SendSmsRequest request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void setLed(Service.SetLedMessage request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void ping(Empty request, StreamObserver<Service.GeneralResponse> observer) {
+        reply(observer, SUCCESS);
+    }
+
+    @Override
+    public void sendNotification(Service.NotificationMessageRequest request, StreamObserver<Service.BasicResponse> observer) {
+        reply(observer, SUCCESS.getResp());
+    }
+
+    private synchronized void setLock(int lockerId, int state) {
+        if (lockerId >= 1 && lockerId <= locks.length) {
+            locks[lockerId - 1] = state;
+
+            if (state == LOCKER_UNLOCKED) {
+                lastUnlockedLockerId = lockerId;
+            }
+
+            events.add(LockerStateChangedEvent.of(state == LOCKER_UNLOCKED ? EventType.DOOR_UNLOCKED : EventType.DOOR_LOCKED, lockerId, config.coordinatesOf(lockerId)));
+        }
+    }
+
+    private <T> void reply(StreamObserver<T> observer, T response) {
+        callCount.incrementAndGet();
+        observer.onNext(response);
+        observer.onCompleted();
+    }
+}
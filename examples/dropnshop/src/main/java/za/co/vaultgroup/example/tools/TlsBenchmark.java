@@ -0,0 +1,238 @@
+package za.co.vaultgroup.example.tools;
+
+import com.google.protobuf.Empty;
+import cv_saas.CommsServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.config.Settings.TlsSettings;
+import za.co.vaultgroup.example.tls.TlsChannelFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of plaintext and TLS calls against a local server (see {@link StubCommsService}):
+ * a call over an established connection, and the first call over a new connection, with a session resumed
+ * (a shared session cache, as {@link TlsChannelFactory} does) and with a full handshake every time.
+ * Handshakes alone are measured in memory too, as connection setup on a loopback is noisy.
+ *
+ * Usage: TlsBenchmark [calls] [--cert server.pem --key server.key] [--protocol TLSv1.2]
+ *
+ * A self-signed certificate for localhost is generated unless one is given
+ * (on Java 9+ that needs `--add-exports java.base/sun.security.x509=ALL-UNNAMED`).
+ */
+public class TlsBenchmark {
+    private static final String CERT_OPTION = "--cert";
+    private static final String KEY_OPTION = "--key";
+    private static final String PROTOCOL_OPTION = "--protocol";
+    private static final int DEFAULT_CALLS = 20000;
+    private static final int WARMUP_CALLS = 2000;
+    private static final int CONNECTIONS = 200;
+    private static final int HANDSHAKES = 2000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String HOST = "localhost";
+
+    public static void main(String[] args) throws Exception {
+        int calls = DEFAULT_CALLS;
+        File cert = null;
+        File key = null;
+        List<String> protocols = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (CERT_OPTION.equals(args[i]) && i + 1 < args.length) {
+                cert = new File(args[++i]);
+            } else if (KEY_OPTION.equals(args[i]) && i + 1 < args.length) {
+                key = new File(args[++i]);
+            } else if (PROTOCOL_OPTION.equals(args[i]) && i + 1 < args.length) {
+                protocols = Collections.singletonList(args[++i]);
+            } else {
+                calls = Integer.parseInt(args[i]);
+            }
+        }
+
+        if (cert == null || key == null) {
+            SelfSignedCertificate selfSigned = new SelfSignedCertificate(HOST);
+            cert = selfSigned.certificate();
+            key = selfSigned.privateKey();
+        }
+
+        StubCommsService device = new StubCommsService(Collections.singletonList(16));
+        SslContext serverContext = GrpcSslContexts.configure(SslContextBuilder.forServer(cert, key), TlsChannelFactory.getProvider()).build();
+        Server plaintextServer = NettyServerBuilder.forPort(0).addService(device).build().start();
+        Server tlsServer = NettyServerBuilder.forPort(0)
+                .sslContext(serverContext)
+                .addService(device)
+                .build()
+                .start();
+
+        String plaintextTarget = HOST + ":" + plaintextServer.getPort();
+        String tlsTarget = HOST + ":" + tlsServer.getPort();
+
+        TlsSettings tlsSettings = new TlsSettings();
+        tlsSettings.setEnabled(true);
+        tlsSettings.setTrustCertCollection(cert.getPath());
+        tlsSettings.setReloadIntervalSeconds(0);
+        tlsSettings.setProtocols(protocols);
+
+        System.out.printf("TLS provider: %s, protocols: %s%n", TlsChannelFactory.getProvider(), protocols == null ? "any" : protocols);
+
+        TlsChannelFactory factory = new TlsChannelFactory(tlsTarget, tlsSettings);
+
+        print("Plaintext call (ns)", measureCalls(ManagedChannelBuilder.forTarget(plaintextTarget).usePlaintext().build(), calls));
+        print("TLS call (ns)", measureCalls(factory.newChannelBuilder().build(), calls));
+
+        print("Plaintext connect and call (ns)", measureConnections(() -> ManagedChannelBuilder.forTarget(plaintextTarget).usePlaintext().build()));
+        print("TLS connect and call, session resumed (ns)", measureConnections(() -> factory.newChannelBuilder().build()));
+        print("TLS connect and call, full handshake (ns)", measureConnections(() -> {
+            // A new context has an empty session cache.
+            factory.reload();
+            return factory.newChannelBuilder().build();
+        }));
+
+        // Same settings as the channels above.
+        print("TLS handshake, session resumed (ns)", measureHandshakes(factory::getSslContext, serverContext));
+        print("TLS handshake, full (ns)", measureHandshakes(() -> {
+            factory.reload();
+            return factory.getSslContext();
+        }, serverContext));
+
+        plaintextServer.shutdownNow();
+        tlsServer.shutdownNow();
+        System.exit(0);
+    }
+
+    private static Histogram measureCalls(ManagedChannel channel, int calls) throws InterruptedException {
+        Api api = new Api(channel);
+        Histogram histogram = new Histogram();
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            api.getVersion();
+        }
+
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            api.getVersion();
+            histogram.record(System.nanoTime() - start);
+        }
+
+        channel.shutdownNow().awaitTermination(1, TimeUnit.SECONDS);
+        return histogram;
+    }
+
+    private static Histogram measureConnections(ChannelSupplier supplier) throws Exception {
+        Histogram histogram = new Histogram();
+
+        // The first connections warm up the code paths, so they are not counted.
+        for (int i = 0; i < CONNECTIONS * 2; i++) {
+            ManagedChannel channel = supplier.get();
+            long start = System.nanoTime();
+
+            CommsServiceGrpc.newBlockingStub(channel).getVersion(Empty.getDefaultInstance());
+
+            if (i >= CONNECTIONS) {
+                histogram.record(System.nanoTime() - start);
+            }
+
+            channel.shutdownNow().awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        return histogram;
+    }
+
+    /**
+     * @param clientContexts returns the same context to resume sessions, a new one for full handshakes.
+     */
+    private static Histogram measureHandshakes(ContextSupplier clientContexts, SslContext serverContext) throws Exception {
+        Histogram histogram = new Histogram();
+
+        for (int i = 0; i < HANDSHAKES * 2; i++) {
+            SslContext clientContext = clientContexts.get();
+            long start = System.nanoTime();
+
+            // Sessions are cached per peer host and port.
+            handshake(clientContext.newEngine(ByteBufAllocator.DEFAULT, HOST, 1), serverContext.newEngine(ByteBufAllocator.DEFAULT));
+
+            if (i >= HANDSHAKES) {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Passes handshake messages between two engines until both are done.
+     */
+    private static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        ByteBuffer clientToServer = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer serverToClient = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer application = ByteBuffer.allocate(BUFFER_SIZE);
+
+        client.beginHandshake();
+        server.beginHandshake();
+
+        while (isHandshaking(client) || isHandshaking(server) || clientToServer.position() > 0 || serverToClient.position() > 0) {
+            client.wrap(empty, clientToServer);
+            runTasks(client);
+            server.wrap(empty, serverToClient);
+            runTasks(server);
+
+            clientToServer.flip();
+            server.unwrap(clientToServer, application);
+            clientToServer.compact();
+            runTasks(server);
+
+            serverToClient.flip();
+            client.unwrap(serverToClient, application);
+            serverToClient.compact();
+            runTasks(client);
+
+            application.clear();
+        }
+
+        client.closeOutbound();
+        server.closeOutbound();
+    }
+
+    private static boolean isHandshaking(SSLEngine engine) {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return status != HandshakeStatus.NOT_HANDSHAKING && status != HandshakeStatus.FINISHED;
+    }
+
+    private static void runTasks(SSLEngine engine) {
+        Runnable task;
+
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    private static void print(String title, Histogram histogram) {
+        System.out.printf("%s: p50 %d, p90 %d, p99 %d, max %d (%d samples)%n", title,
+                histogram.getPercentile(50), histogram.getPercentile(90), histogram.getPercentile(99),
+                histogram.getMax(), histogram.getTotalCount());
+    }
+
+    private interface ChannelSupplier {
+        ManagedChannel get() throws Exception;
+    }
+
+    private interface ContextSupplier {
+        SslContext get() throws Exception;
+    }
+}
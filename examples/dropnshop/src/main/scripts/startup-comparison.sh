@@ -0,0 +1,45 @@
+#!/bin/sh
+#
+# Compares how long the jar and the native executable take to start and how much memory (peak RSS) they need,
+# see `native` profile in pom.xml.
+#
+# Both are run in a startup-only mode (see `dropnshop.cds-training` in Application): settings are read,
+# the vault is created, then the process exits. It's done in a temporary directory, so no state is touched.
+#
+# Usage: startup-comparison.sh <jar> <native executable> [runs]
+
+set -e
+
+JAR=$(readlink -f "$1")
+EXECUTABLE=$(readlink -f "$2")
+RUNS=${3:-5}
+
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+cd "$WORK"
+
+# Prints average wall time and peak RSS (reported by the application itself) of a command.
+measure() {
+    label=$1
+    shift
+
+    total=0
+    rss=0
+    i=0
+
+    while [ "$i" -lt "$RUNS" ]; do
+        start=$(date +%s%N)
+        output=$("$@" 2>&1)
+        end=$(date +%s%N)
+
+        total=$((total + (end - start) / 1000000))
+        rss=$(echo "$output" | sed -n 's/.*peak RSS \([0-9]*\) kB.*/\1/p' | tail -n 1)
+        i=$((i + 1))
+    done
+
+    printf '%-8s startup %6d ms, peak RSS %8s kB\n' "$label" $((total / RUNS)) "${rss:-?}"
+}
+
+echo "Startup comparison, average of $RUNS run(s):"
+measure jar java -Ddropnshop.cds-training=true -jar "$JAR"
+measure native "$EXECUTABLE" -Ddropnshop.cds-training=true
@@ -0,0 +1,98 @@
+package za.co.vaultgroup.example.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class AnalyticsReportTest {
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 30);
+    private static final LocalDate SECOND_DAY = FIRST_DAY.plusDays(1);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void countsPickupsByDwellTime() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, FIRST_DAY)) {
+            partition.append(at(FIRST_DAY, 9), TransactionType.PICKUP, 1, 0, 1, 60);
+            // Exactly on a bucket bound.
+            partition.append(at(FIRST_DAY, 10), TransactionType.PICKUP, 2, 0, 2, (int) TimeUnit.MINUTES.toSeconds(15));
+            // Not a pickup.
+            partition.append(at(FIRST_DAY, 11), TransactionType.DROPOFF, 3, 0, 3, -1);
+        }
+
+        try (Partition partition = Partition.openForWriting(root, SECOND_DAY)) {
+            partition.append(at(SECOND_DAY, 9), TransactionType.PICKUP, 1, 0, 1, (int) TimeUnit.HOURS.toSeconds(2));
+            partition.append(at(SECOND_DAY, 10), TransactionType.PICKUP, 2, 0, 2, (int) TimeUnit.DAYS.toSeconds(30));
+            // Stored before the history starts.
+            partition.append(at(SECOND_DAY, 11), TransactionType.PICKUP, 3, 0, 3, -1);
+        }
+
+        assertArrayEquals(new long[]{2, 0, 1, 0, 0, 0, 0, 1}, report().getDwellHistogram());
+    }
+
+    @Test
+    void countsDropoffsAndPickupsByHour() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, FIRST_DAY)) {
+            partition.append(at(FIRST_DAY, 0), TransactionType.DROPOFF, 1, 0, 1, -1);
+            partition.append(at(FIRST_DAY, 9) + TimeUnit.MINUTES.toMillis(59), TransactionType.PICKUP, 1, 0, 1, 60);
+            partition.append(at(FIRST_DAY, 9), TransactionType.DROPOFF_STARTED, 2, 0, 2, -1);
+        }
+
+        try (Partition partition = Partition.openForWriting(root, SECOND_DAY)) {
+            partition.append(at(SECOND_DAY, 9), TransactionType.DROPOFF, 2, 0, 2, -1);
+            partition.append(at(SECOND_DAY, 23), TransactionType.PICKUP, 2, 0, 2, 60);
+            partition.append(at(SECOND_DAY, 23), TransactionType.DROPOFF_TIMEOUT, 3, 0, 3, -1);
+        }
+
+        long[] expected = new long[24];
+        expected[0] = 1;
+        expected[9] = 2;
+        expected[23] = 1;
+        assertArrayEquals(expected, report().getHourlyThroughput());
+    }
+
+    @Test
+    void countsDropoffsBySlaveBoard() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, FIRST_DAY)) {
+            partition.append(at(FIRST_DAY, 9), TransactionType.DROPOFF, 1, 0, 1, -1);
+            partition.append(at(FIRST_DAY, 10), TransactionType.PICKUP, 1, 0, 1, 60);
+            // A locker that isn't in the mapping.
+            partition.append(at(FIRST_DAY, 11), TransactionType.DROPOFF, 99, -1, -1, -1);
+        }
+
+        try (Partition partition = Partition.openForWriting(root, SECOND_DAY)) {
+            partition.append(at(SECOND_DAY, 9), TransactionType.DROPOFF, 21, 2, 1, -1);
+            partition.append(at(SECOND_DAY, 10), TransactionType.DROPOFF, 22, 2, 2, -1);
+        }
+
+        assertArrayEquals(new long[]{1, 0, 2}, report().getColumnUtilisation());
+    }
+
+    @Test
+    void skipsMissingDays() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, SECOND_DAY)) {
+            partition.append(at(SECOND_DAY, 9), TransactionType.DROPOFF, 1, 0, 1, -1);
+        }
+
+        AnalyticsReport report = new AnalyticsReport(root, ZONE, FIRST_DAY.minusDays(7), SECOND_DAY.plusDays(7));
+        assertArrayEquals(new long[]{1}, report.getColumnUtilisation());
+    }
+
+    private AnalyticsReport report() {
+        return new AnalyticsReport(root, ZONE, FIRST_DAY, SECOND_DAY);
+    }
+
+    private static long at(LocalDate date, int hour) {
+        return date.atTime(hour, 0).atZone(ZONE).toInstant().toEpochMilli();
+    }
+}
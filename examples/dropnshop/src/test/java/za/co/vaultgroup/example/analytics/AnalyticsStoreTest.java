@@ -0,0 +1,79 @@
+package za.co.vaultgroup.example.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import za.co.vaultgroup.example.config.Config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnalyticsStoreTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 30);
+
+    @TempDir
+    Path root;
+
+    private final Config config = new Config();
+    private final AtomicLong clock = new AtomicLong();
+
+    @BeforeEach
+    void configure() {
+        config.setMapping(Arrays.asList(4, 4));
+        config.setLockersCount(8);
+    }
+
+    @Test
+    void measuresDwellTimeOfPickup() throws Exception {
+        AnalyticsStore store = open(FIRST_DAY, 9);
+        store.record(TransactionType.DROPOFF, 5);
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(30));
+        store.record(TransactionType.PICKUP, 5);
+        store.close();
+
+        Partition.Reader reader = Partition.openForReading(root, FIRST_DAY);
+        assertEquals(2, reader.getCount());
+        assertEquals(-1, reader.getDwell(0));
+        assertEquals(TimeUnit.MINUTES.toSeconds(30), reader.getDwell(1));
+        // The first locker of the second slave board.
+        assertEquals(1, reader.getSlave(0));
+    }
+
+    @Test
+    void recoversStoredParcelsAfterRestart() throws Exception {
+        AnalyticsStore store = open(FIRST_DAY, 9);
+        store.record(TransactionType.DROPOFF, 1);
+        store.record(TransactionType.DROPOFF, 2);
+        store.record(TransactionType.DROPOFF, 3);
+        // Taken before the restart, a later pickup from the same locker has no known dropoff.
+        store.record(TransactionType.PICKUP, 2);
+        store.record(TransactionType.PARCEL_EXPIRED, 3);
+        store.close();
+
+        // The application restarts two days later.
+        LocalDate thirdDay = FIRST_DAY.plusDays(2);
+        AnalyticsStore restarted = open(thirdDay, 9);
+        restarted.record(TransactionType.PICKUP, 1);
+        restarted.record(TransactionType.PICKUP, 2);
+        restarted.record(TransactionType.PICKUP, 3);
+        restarted.close();
+
+        Partition.Reader reader = Partition.openForReading(root, thirdDay);
+        assertEquals(3, reader.getCount());
+        assertEquals(TimeUnit.DAYS.toSeconds(2), reader.getDwell(0));
+        assertEquals(-1, reader.getDwell(1));
+        assertEquals(-1, reader.getDwell(2));
+    }
+
+    private AnalyticsStore open(LocalDate date, int hour) {
+        AnalyticsStore store = new AnalyticsStore(root, config, clock::get);
+        clock.set(date.atTime(hour, 0).atZone(store.getZone()).toInstant().toEpochMilli());
+        return store;
+    }
+}
@@ -0,0 +1,81 @@
+package za.co.vaultgroup.example.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PartitionTest {
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 31);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void readsWhatIsWritten() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, DATE)) {
+            partition.append(1000, TransactionType.DROPOFF, 7, 0, 7, -1);
+            partition.append(2000, TransactionType.PICKUP, 7, 0, 7, 1);
+        }
+
+        Partition.Reader reader = Partition.openForReading(root, DATE);
+        assertEquals(2, reader.getCount());
+        assertEquals(2000, reader.getTimestamp(1));
+        assertEquals(TransactionType.PICKUP, reader.getType(1));
+        assertEquals(7, reader.getLocker(1));
+        assertEquals(0, reader.getSlave(1));
+        assertEquals(1, reader.getDwell(1));
+    }
+
+    @Test
+    void ignoresPartiallyWrittenTransaction() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, DATE)) {
+            partition.append(1000, TransactionType.DROPOFF, 7, 0, 7, -1);
+        }
+
+        // A crash in the middle of the second transaction: only its timestamp and type are written.
+        Path directory = Partition.directoryOf(root, DATE);
+        Files.write(directory.resolve(Partition.Column.TIMESTAMP.getFileName()), new byte[Long.BYTES], StandardOpenOption.APPEND);
+        Files.write(directory.resolve(Partition.Column.TYPE.getFileName()), new byte[]{TransactionType.PICKUP.getCode()}, StandardOpenOption.APPEND);
+
+        assertEquals(1, Partition.openForReading(root, DATE).getCount());
+    }
+
+    @Test
+    void cutsPartiallyWrittenTransactionOffWhenOpenedForWriting() throws IOException {
+        try (Partition partition = Partition.openForWriting(root, DATE)) {
+            partition.append(1000, TransactionType.DROPOFF, 7, 0, 7, -1);
+        }
+
+        Path directory = Partition.directoryOf(root, DATE);
+        Files.write(directory.resolve(Partition.Column.TIMESTAMP.getFileName()), new byte[Long.BYTES], StandardOpenOption.APPEND);
+        Files.write(directory.resolve(Partition.Column.TYPE.getFileName()), new byte[]{TransactionType.PICKUP.getCode()}, StandardOpenOption.APPEND);
+
+        try (Partition partition = Partition.openForWriting(root, DATE)) {
+            assertEquals(1, partition.getCount());
+            partition.append(3000, TransactionType.PICKUP, 7, 0, 7, 2);
+        }
+
+        // Every column is exactly two values long, so the new transaction isn't mixed up with the remains of the old one.
+        for (Partition.Column column : Partition.Column.values()) {
+            assertEquals(2L * column.getSize(), Files.size(directory.resolve(column.getFileName())), column.name());
+        }
+
+        Partition.Reader reader = Partition.openForReading(root, DATE);
+        assertEquals(2, reader.getCount());
+        assertEquals(3000, reader.getTimestamp(1));
+        assertEquals(2, reader.getDwell(1));
+    }
+
+    @Test
+    void hasNothingToReadForMissingDay() throws IOException {
+        assertNull(Partition.openForReading(root, DATE));
+    }
+}
@@ -0,0 +1,128 @@
+package za.co.vaultgroup.example.app;
+
+import cv_saas.CommsServiceGrpc;
+import cv_saas.Service;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.config.Buzz;
+import za.co.vaultgroup.example.config.Settings;
+import za.co.vaultgroup.example.config.Tunables;
+import za.co.vaultgroup.example.time.VirtualScheduler;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link Buzzer} in simulated time against a local stub of `toggle_buzzer` RPC.
+ */
+class BuzzerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final long WINDOW_MILLIS = 50;
+
+    private final BlockingQueue<Integer> durations = new LinkedBlockingQueue<>();
+    private final CountDownLatch isReleased = new CountDownLatch(1);
+    private volatile boolean isBlocking = false;
+
+    private final VirtualScheduler scheduler = new VirtualScheduler(0);
+    private Server server;
+    private ManagedChannel channel;
+    private Buzzer buzzer;
+
+    @BeforeEach
+    void startDevice() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(new StubBuzzerService()).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        buzzer = new Buzzer(new Api(channel), scheduler);
+    }
+
+    @AfterEach
+    void stopDevice() {
+        isReleased.countDown();
+        channel.shutdownNow();
+        server.shutdownNow();
+        Tunables.publish(new Settings());
+    }
+
+    @Test
+    void playsMostImportantSoundOfWindow() throws InterruptedException {
+        buzzer.buzz(Buzz.EVENT);
+        buzzer.buzz(Buzz.ERROR);
+        buzzer.buzz(Buzz.EVENT);
+        scheduler.advanceBy(WINDOW_MILLIS);
+
+        assertEquals(Buzz.ERROR.getDefaultDuration(), durations.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNull(durations.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(3, buzzer.getRequestedCount());
+        assertEquals(2, buzzer.getSavedCount());
+    }
+
+    @Test
+    void keepsDurationOfMostImportantSound() throws InterruptedException {
+        // An error is tuned to be shorter than an event, it still wins.
+        Map<Buzz, Integer> tuned = new EnumMap<>(Buzz.class);
+        tuned.put(Buzz.ERROR, 60);
+        Settings settings = new Settings();
+        settings.getTuningSettings().setBuzz(tuned);
+        Tunables.publish(settings);
+
+        buzzer.buzz(Buzz.ERROR);
+        buzzer.buzz(Buzz.EVENT);
+        scheduler.advanceBy(WINDOW_MILLIS);
+
+        assertEquals(60, durations.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void neverHoldsSchedulerWhileDeviceIsSlow() throws InterruptedException {
+        isBlocking = true;
+        CountDownLatch isTimeoutHandled = new CountDownLatch(1);
+        scheduler.schedule(isTimeoutHandled::countDown, 2 * WINDOW_MILLIS);
+
+        buzzer.buzz(Buzz.EVENT);
+        scheduler.advanceBy(2 * WINDOW_MILLIS);
+
+        // The call is still in progress, but the timeout scheduled after it is already handled.
+        assertTrue(isTimeoutHandled.await(0, TimeUnit.SECONDS));
+        isReleased.countDown();
+        assertEquals(Buzz.EVENT.getDefaultDuration(), durations.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Answers `toggle_buzzer` only, optionally waiting until a test releases it.
+     */
+    private class StubBuzzerService extends CommsServiceGrpc.CommsServiceImplBase {
+        @Override
+        public void toggleBuzzer(Service.ToggleBuzzerRequest request, StreamObserver<Service.GeneralResponse> observer) {
+            if (isBlocking) {
+                try {
+                    isReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            durations.add(request.getDurationMillis());
+            observer.onNext(Service.GeneralResponse.newBuilder()
+                    .setResp(Service.BasicResponse.newBuilder().setSuccess(true))
+                    .build());
+            observer.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package za.co.vaultgroup.example.app;
+
+/**
+ * Lets tests of other packages drive {@link DropoffStore} the way the vault does.
+ */
+public final class DropoffStores {
+    private DropoffStores() {
+    }
+
+    public static DropoffStore initialized(int lockersCount) {
+        DropoffStore store = new DropoffStore();
+        store.initialize(lockersCount);
+        return store;
+    }
+
+    /**
+     * A dropoff from the keypad, see {@link DropoffStore#putIfFree(int, String)}.
+     */
+    public static boolean putIfFree(DropoffStore store, int lockerId, String password) {
+        return store.putIfFree(lockerId, password);
+    }
+
+    /**
+     * A session taking a locker, see {@link DropoffStore#touch(int)}.
+     */
+    public static void touch(DropoffStore store, int lockerId) {
+        store.touch(lockerId);
+    }
+}
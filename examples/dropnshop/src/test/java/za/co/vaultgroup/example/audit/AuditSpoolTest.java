@@ -0,0 +1,93 @@
+package za.co.vaultgroup.example.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AuditSpoolTest {
+    private static final int SLOTS = 4;
+
+    // See AuditSpool's layout.
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16 + AuditSpool.MAX_DESCRIPTION_BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsRecordsUntilShipped() throws IOException {
+        AuditSpool spool = open();
+        spool.append(AuditEvent.DROPOFF, 1000, "Parcel stored in locker #7");
+        spool.append(AuditEvent.PICKUP, 2000, "Parcel collected from locker #7");
+        spool.markShipped(0);
+
+        AuditSpool restarted = open();
+        assertEquals(1, restarted.getTail());
+        assertEquals(2, restarted.getHead());
+
+        AuditSpool.Record record = restarted.read(1);
+        assertEquals(AuditEvent.PICKUP, record.getEvent());
+        assertEquals(AuditEvent.PICKUP.getCode(), record.getCode());
+        assertEquals(2000, record.getTimestamp());
+        assertEquals("Parcel collected from locker #7", record.getDescription());
+    }
+
+    @Test
+    void readsEventByCodeWhateverIsInOrdinalByte() throws IOException {
+        AuditSpool spool = open();
+        spool.append(AuditEvent.LOCKER_RELEASED, 1000, "Locker #7 released");
+
+        // A spool written by a previous version keeps an ordinal there.
+        write(slotOffset(0) + 1, ByteBuffer.allocate(1).put(0, (byte) 100));
+
+        assertEquals(AuditEvent.LOCKER_RELEASED, open().read(0).getEvent());
+    }
+
+    @Test
+    void dropsRecordOfUnknownEvent() throws IOException {
+        AuditSpool spool = open();
+        spool.append(AuditEvent.DROPOFF, 1000, "Parcel stored in locker #7");
+        spool.append(AuditEvent.PICKUP, 2000, "Parcel collected from locker #7");
+
+        write(slotOffset(0) + 4, ByteBuffer.allocate(Integer.BYTES).putInt(0, 42));
+
+        AuditSpool restarted = open();
+        assertNull(restarted.read(0));
+        assertEquals(1, restarted.getTail());
+        assertEquals(AuditEvent.PICKUP, restarted.read(1).getEvent());
+    }
+
+    @Test
+    void dropsRecordWithCorruptLength() throws IOException {
+        AuditSpool spool = open();
+        spool.append(AuditEvent.DROPOFF, 1000, "Parcel stored in locker #7");
+
+        write(slotOffset(0) + 2, ByteBuffer.allocate(Short.BYTES).putShort(0, (short) -1));
+
+        AuditSpool restarted = open();
+        assertNull(restarted.read(0));
+        assertEquals(1, restarted.getTail());
+    }
+
+    private AuditSpool open() throws IOException {
+        return new AuditSpool(directory.resolve("audit.spool"), SLOTS);
+    }
+
+    private void write(long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve("audit.spool"), StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    private static long slotOffset(int slot) {
+        return HEADER_SIZE + (long) slot * SLOT_SIZE;
+    }
+}
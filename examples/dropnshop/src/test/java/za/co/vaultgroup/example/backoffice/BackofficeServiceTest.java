@@ -0,0 +1,265 @@
+package za.co.vaultgroup.example.backoffice;
+
+import backoffice.Backoffice;
+import backoffice.BackofficeServiceGrpc;
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.vaultgroup.example.app.DropoffStore;
+import za.co.vaultgroup.example.app.DropoffStores;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link BackofficeService} over an in-process channel, racing its calls with the keypad's changes of the same lockers.
+ */
+class BackofficeServiceTest {
+    private static final int LOCKERS = 4;
+    private static final int ROUNDS = 500;
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final String PICKUP_CODE = "13579";
+
+    private final DropoffStore store = DropoffStores.initialized(LOCKERS);
+
+    // Whether a customer is using a locker, see Vault.isSessionLocker().
+    private final AtomicBoolean isSessionActive = new AtomicBoolean();
+    private final AtomicInteger reservedCount = new AtomicInteger();
+    private final AtomicInteger releasedCount = new AtomicInteger();
+
+    // Drains of `watch_occupancy` streams, only run when a test says so.
+    private final Queue<Runnable> drains = new ArrayDeque<>();
+
+    private final ExecutorService keypad = Executors.newSingleThreadExecutor();
+    private Server server;
+    private ManagedChannel channel;
+    private BackofficeServiceGrpc.BackofficeServiceBlockingStub stub;
+
+    @AfterEach
+    void stopServer() {
+        keypad.shutdownNow();
+
+        if (channel != null) {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    void eitherReservationOrKeypadGetsLocker() throws Exception {
+        start();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String orderId = "order-" + round;
+            CyclicBarrier barrier = new CyclicBarrier(2);
+
+            Future<Boolean> isStored = keypad.submit(() -> {
+                barrier.await();
+                return DropoffStores.putIfFree(store, 1, "24680");
+            });
+
+            barrier.await();
+            boolean isReserved = isOk(() -> stub.reserveLocker(reserveRequest(orderId, 1)), Status.Code.FAILED_PRECONDITION);
+
+            assertNotEquals(isReserved, isStored.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Round " + round);
+            DropoffStore.Slot slot = store.get(1);
+            assertEquals(isReserved ? orderId : null, slot.getOrderId());
+            assertEquals(isReserved ? PICKUP_CODE : "24680", slot.getPassword());
+
+            free(1);
+        }
+
+        assertTrue(reservedCount.get() > 0);
+    }
+
+    @Test
+    void neverReleasesLockerTakenBySession() throws Exception {
+        start();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String orderId = "order-" + round;
+            stub.reserveLocker(reserveRequest(orderId, 1));
+            CyclicBarrier barrier = new CyclicBarrier(2);
+
+            // A customer enters the pickup code of the order, see Vault.
+            Future<?> session = keypad.submit(() -> {
+                barrier.await();
+                isSessionActive.set(true);
+                DropoffStores.touch(store, 1);
+                return null;
+            });
+
+            barrier.await();
+            Backoffice.Locker[] released = new Backoffice.Locker[1];
+            boolean isReleased = isOk(() -> released[0] = stub.releaseLocker(releaseRequest(1, 0)), Status.Code.FAILED_PRECONDITION);
+            session.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            DropoffStore.Slot slot = store.get(1);
+
+            if (isReleased) {
+                // Released before the session took the locker, the session has seen it free.
+                assertNull(slot.getPassword(), "Round " + round);
+                assertEquals(released[0].getVersion() + 1, slot.getVersion(), "Round " + round);
+            } else {
+                assertEquals(orderId, slot.getOrderId(), "Round " + round);
+            }
+
+            isSessionActive.set(false);
+            free(1);
+        }
+    }
+
+    @Test
+    void abortsReleaseOfChangedLocker() throws IOException {
+        start();
+        Backoffice.Locker reserved = stub.reserveLocker(reserveRequest("order-1", 2));
+        assertEquals(Backoffice.LockerStatus.RESERVED, reserved.getStatus());
+
+        // A customer has looked at the locker meanwhile.
+        DropoffStores.touch(store, 2);
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> stub.releaseLocker(releaseRequest(2, reserved.getVersion())));
+        assertEquals(Status.Code.ABORTED, e.getStatus().getCode());
+        assertTrue(e.getStatus().getDescription().contains(Long.toString(reserved.getVersion() + 1)), e.getStatus().getDescription());
+        assertEquals("order-1", store.get(2).getOrderId());
+        assertEquals(0, releasedCount.get());
+
+        // A client that has seen the latest version can release it.
+        Backoffice.Locker released = stub.releaseLocker(releaseRequest(2, reserved.getVersion() + 1));
+        assertEquals(Backoffice.LockerStatus.FREE, released.getStatus());
+        assertEquals(1, releasedCount.get());
+    }
+
+    @Test
+    void sendsLatestStateOfLockerChangedManyTimesOnce() throws IOException {
+        start();
+        List<Backoffice.Locker> received = new ArrayList<>();
+
+        BackofficeServiceGrpc.newStub(channel).watchOccupancy(Empty.getDefaultInstance(), new StreamObserver<Backoffice.Locker>() {
+            @Override
+            public void onNext(Backoffice.Locker locker) {
+                received.add(locker);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+
+        // Every locker is sent first, a drain is scheduled but hasn't run yet.
+        for (int i = 0; i < 10; i++) {
+            Backoffice.Locker locker = stub.reserveLocker(reserveRequest("order-" + i, 3));
+            stub.releaseLocker(releaseRequest(3, locker.getVersion()));
+        }
+        stub.reserveLocker(reserveRequest("order-last", 3));
+
+        runDrains();
+        assertEquals(LOCKERS, received.size());
+
+        for (int i = 0; i < LOCKERS; i++) {
+            assertEquals(i + 1, received.get(i).getLockerId());
+        }
+
+        Backoffice.Locker locker = received.get(2);
+        assertEquals(Backoffice.LockerStatus.RESERVED, locker.getStatus());
+        assertEquals("order-last", locker.getOrderId());
+        assertEquals(21, locker.getVersion());
+
+        // A later change is sent on its own.
+        DropoffStores.putIfFree(store, 1, "24680");
+        runDrains();
+        assertEquals(LOCKERS + 1, received.size());
+        assertEquals(Backoffice.LockerStatus.OCCUPIED, received.get(LOCKERS).getStatus());
+    }
+
+    private void start() throws IOException {
+        BackofficeService service = new BackofficeService(store, lockerId -> true, lockerId -> isSessionActive.get(), new BackofficeService.Listener() {
+            @Override
+            public void onReserved(int lockerId, String orderId) {
+                reservedCount.incrementAndGet();
+            }
+
+            @Override
+            public void onReleased(int lockerId, String orderId) {
+                releasedCount.incrementAndGet();
+            }
+        }, drains::add, 1);
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(service).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        stub = BackofficeServiceGrpc.newBlockingStub(channel);
+    }
+
+    private void runDrains() {
+        Runnable drain;
+
+        while ((drain = drains.poll()) != null) {
+            drain.run();
+        }
+    }
+
+    // Frees a locker whatever it has, like a pickup does.
+    private void free(int lockerId) {
+        DropoffStore.Slot slot = store.get(lockerId);
+        assertTrue(store.compareAndSet(lockerId, slot, slot.next(null, null)));
+        assertFalse(store.get(lockerId).isOccupied());
+    }
+
+    /**
+     * @return true if a call succeeds, false if it fails with the expected status.
+     */
+    private static boolean isOk(Callable<?> call, Status.Code expected) throws Exception {
+        try {
+            call.call();
+            return true;
+        } catch (StatusRuntimeException e) {
+            assertEquals(expected, e.getStatus().getCode(), e.getStatus().getDescription());
+            return false;
+        }
+    }
+
+    private static Backoffice.ReserveLockerRequest reserveRequest(String orderId, int lockerId) {
+        return Backoffice.ReserveLockerRequest.newBuilder()
+                .setOrderId(orderId)
+                .setPickupCode(PICKUP_CODE)
+                .setLockerId(lockerId)
+                .build();
+    }
+
+    private static Backoffice.ReleaseLockerRequest releaseRequest(int lockerId, long version) {
+        return Backoffice.ReleaseLockerRequest.newBuilder()
+                .setLockerId(lockerId)
+                .setVersion(version)
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package za.co.vaultgroup.example.notification;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import za.co.vaultgroup.example.config.LockerCoordinates;
+import za.co.vaultgroup.example.config.Settings.DebounceSettings;
+import za.co.vaultgroup.example.notification.event.EventType;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds {@link DoorDebouncer} on its own lane, the way a shard of {@link EventDispatcher} does.
+ * A burst is a single task on the lane, so it takes far less than `quiet-millis` however slow the machine is.
+ */
+class DoorDebouncerTest {
+    private static final int QUIET_MILLIS = 50;
+    private static final int FLAP_THRESHOLD = 10;
+    private static final int COOLDOWN_SECONDS = 1;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final ScheduledExecutorService lane = Executors.newSingleThreadScheduledExecutor();
+    private final BlockingQueue<LockerStateChangedEvent> passed = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> flapping = new LinkedBlockingQueue<>();
+    private final DoorDebouncer debouncer;
+
+    DoorDebouncerTest() {
+        DebounceSettings settings = new DebounceSettings();
+        settings.setEnabled(true);
+        settings.setQuietMillis(QUIET_MILLIS);
+        settings.setFlapThreshold(FLAP_THRESHOLD);
+        settings.setFlapCooldownSeconds(COOLDOWN_SECONDS);
+
+        debouncer = new DoorDebouncer(settings, lane, passed::add,
+                (lockerId, isFlapping) -> flapping.add(lockerId + (isFlapping ? " flapping" : " quiet")));
+    }
+
+    @AfterEach
+    void stopLane() {
+        lane.shutdownNow();
+    }
+
+    @Test
+    void passesFirstEventRightAway() throws Exception {
+        burst(7, EventType.DOOR_OPENED);
+        assertEquals(Arrays.asList("7 DOOR_OPENED"), drain());
+
+        // Nothing else is held back.
+        assertNull(passed.poll(4 * QUIET_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void collapsesBurstIntoFinalState() throws Exception {
+        burst(7, EventType.DOOR_OPENED, EventType.DOOR_CLOSED, EventType.DOOR_OPENED, EventType.DOOR_CLOSED);
+        assertEquals(Arrays.asList("7 DOOR_OPENED"), drain());
+
+        LockerStateChangedEvent event = passed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(EventType.DOOR_CLOSED, event.getType());
+        assertNull(passed.poll(4 * QUIET_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void dropsBurstThatEndsInStatePassedAlready() throws Exception {
+        burst(7, EventType.DOOR_OPENED, EventType.DOOR_CLOSED, EventType.DOOR_OPENED);
+        assertEquals(Arrays.asList("7 DOOR_OPENED"), drain());
+        assertNull(passed.poll(4 * QUIET_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void keepsLockersApart() throws Exception {
+        burst(7, EventType.DOOR_OPENED, EventType.DOOR_CLOSED);
+        burst(8, EventType.DOOR_OPENED);
+        assertEquals(Arrays.asList("7 DOOR_OPENED", "8 DOOR_OPENED"), drain());
+
+        assertEquals(7, passed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS).getLockerId());
+    }
+
+    @Test
+    void neverHoldsLockEventsBack() throws Exception {
+        burst(7, EventType.DOOR_OPENED, EventType.DOOR_CLOSED, EventType.DOOR_LOCKED);
+        assertEquals(Arrays.asList("7 DOOR_OPENED", "7 DOOR_LOCKED"), drain());
+
+        assertEquals(EventType.DOOR_CLOSED, passed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS).getType());
+    }
+
+    @Test
+    void flagsFlappingLockerUntilItIsQuiet() throws Exception {
+        EventType[] storm = new EventType[FLAP_THRESHOLD + 1];
+
+        for (int i = 0; i < storm.length; i++) {
+            storm[i] = i % 2 == 0 ? EventType.DOOR_OPENED : EventType.DOOR_CLOSED;
+        }
+
+        // Up to the threshold it's just a burst.
+        burst(7, Arrays.copyOf(storm, FLAP_THRESHOLD));
+        assertNull(flapping.poll(4 * QUIET_MILLIS, TimeUnit.MILLISECONDS));
+
+        burst(7, EventType.DOOR_OPENED);
+        assertEquals("7 flapping", flapping.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        long flaggedAt = System.nanoTime();
+        assertEquals("7 quiet", flapping.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - flaggedAt >= TimeUnit.SECONDS.toNanos(COOLDOWN_SECONDS) - TimeUnit.MILLISECONDS.toNanos(QUIET_MILLIS));
+        assertNull(flapping.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    // All the events are handled by a single task on the lane.
+    private void burst(int lockerId, EventType... types) throws Exception {
+        lane.submit(() -> {
+            for (EventType type : types) {
+                debouncer.accept(LockerStateChangedEvent.of(type, lockerId, LockerCoordinates.UNKNOWN));
+            }
+        }).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Events passed on so far.
+    private List<String> drain() {
+        List<LockerStateChangedEvent> events = new ArrayList<>();
+        passed.drainTo(events);
+
+        List<String> result = new ArrayList<>();
+        for (LockerStateChangedEvent event : events) {
+            result.add(event.getLockerId() + " " + event.getType());
+        }
+
+        return result;
+    }
+}
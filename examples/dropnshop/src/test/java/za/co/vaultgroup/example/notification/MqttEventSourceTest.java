@@ -0,0 +1,150 @@
+package za.co.vaultgroup.example.notification;
+
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import za.co.vaultgroup.example.config.Settings.MqttSettings;
+import za.co.vaultgroup.example.notification.event.Event;
+import za.co.vaultgroup.example.notification.event.EventType;
+import za.co.vaultgroup.example.notification.event.LockerStateChangedEvent;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link MqttEventSource} against an embedded broker.
+ */
+class MqttEventSourceTest {
+    private static final String TOPIC = "dropnshop/notifications";
+    private static final String CLIENT_ID = "dropnshop-test";
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final Server broker = new Server();
+    private final List<MqttEventSource> sources = new ArrayList<>();
+    private String brokerUrl;
+    private MqttClient publisher;
+
+    @BeforeEach
+    void startBroker() throws IOException, MqttException {
+        int port;
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, "localhost");
+        properties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, Integer.toString(port));
+        properties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        properties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        broker.startServer(new MemoryConfig(properties));
+
+        brokerUrl = "tcp://localhost:" + port;
+        publisher = new MqttClient(brokerUrl, "hardware", new MemoryPersistence());
+        publisher.connect();
+    }
+
+    @AfterEach
+    void stopBroker() throws IOException, MqttException {
+        for (MqttEventSource source : sources) {
+            source.close();
+        }
+
+        publisher.disconnect();
+        publisher.close();
+        broker.stopServer();
+    }
+
+    @Test
+    void handlesPublishedNotifications() throws Exception {
+        BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        start(events::add);
+
+        publishDoorOpened(3);
+
+        LockerStateChangedEvent event = (LockerStateChangedEvent) events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(EventType.DOOR_OPENED, event.getType());
+        assertEquals(3, event.getLockerId());
+    }
+
+    @Test
+    void redeliversNotificationsThatWereNotHandled() throws Exception {
+        CountDownLatch isHandling = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+
+        // The application stops while it's handling the notification.
+        MqttEventSource first = start(event -> {
+            isHandling.countDown();
+            awaitQuietly(never);
+        });
+
+        publishDoorOpened(5);
+        assertTrue(isHandling.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        first.close();
+        sources.remove(first);
+
+        BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        start(events::add);
+
+        LockerStateChangedEvent event = (LockerStateChangedEvent) events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(event, "A notification that wasn't handled must be delivered again");
+        assertEquals(5, event.getLockerId());
+    }
+
+    private MqttEventSource start(Consumer<Event> handler) throws IOException {
+        MqttSettings settings = new MqttSettings();
+        settings.setBrokerUrl(brokerUrl);
+        settings.setClientId(CLIENT_ID);
+        settings.setTopic(TOPIC);
+
+        MqttEventSource source = new MqttEventSource(settings, null, handler);
+        source.bind();
+        sources.add(source);
+
+        Thread thread = new Thread(() -> {
+            try {
+                source.run();
+            } catch (IOException e) {
+                // Stopped.
+            }
+        }, "mqtt-test");
+        thread.setDaemon(true);
+        thread.start();
+
+        return source;
+    }
+
+    private void publishDoorOpened(int lockerId) throws MqttException {
+        String notification = "{\"type\":\"door_opened\",\"vals\":[{\"k\":\"locker\",\"v\":\"" + lockerId + "\"},"
+                + "{\"k\":\"offset\",\"v\":\"[0:" + lockerId + "]\"}]}";
+        publisher.publish(TOPIC, notification.getBytes(StandardCharsets.UTF_8), 1, false);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package za.co.vaultgroup.example.sms;
+
+import cv_saas.CommsServiceGrpc;
+import cv_saas.Service;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import za.co.vaultgroup.example.Api;
+import za.co.vaultgroup.example.storage.Journal;
+import za.co.vaultgroup.example.time.VirtualScheduler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link SmsOutbox} in simulated time against a local stub of `send_sms` RPC.
+ */
+class SmsOutboxTest {
+    private static final int RATE_PER_MINUTE = 6;
+    private static final long REFILL_INTERVAL_MILLIS = 60000 / RATE_PER_MINUTE;
+    private static final String CELL_NUM = "0821234567";
+
+    @TempDir
+    Path directory;
+
+    private final StubSmsService device = new StubSmsService();
+    private VirtualScheduler scheduler;
+    private Server server;
+    private ManagedChannel channel;
+    private Api api;
+
+    @BeforeEach
+    void startDevice() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(device).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        api = new Api(channel);
+        scheduler = new VirtualScheduler(0);
+    }
+
+    @AfterEach
+    void stopDevice() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    void sendsBurstThenPacesByRate() {
+        SmsOutbox outbox = start(100);
+
+        for (int i = 0; i < SmsOutbox.BURST + 2; i++) {
+            assertTrue(outbox.send(CELL_NUM, "Message " + i));
+        }
+
+        scheduler.runDue();
+        assertEquals(Arrays.asList(0L, 0L, 0L), device.getSentAt());
+
+        scheduler.advanceBy(REFILL_INTERVAL_MILLIS - 1);
+        assertEquals(SmsOutbox.BURST, device.getSentAt().size());
+
+        scheduler.advanceBy(1 + REFILL_INTERVAL_MILLIS);
+        assertEquals(Arrays.asList(0L, 0L, 0L, REFILL_INTERVAL_MILLIS, 2 * REFILL_INTERVAL_MILLIS), device.getSentAt());
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    void queuesSameMessageToSameNumberOnce() {
+        SmsOutbox outbox = start(100);
+
+        assertTrue(outbox.send(CELL_NUM, "Pickup code: 1234"));
+        assertTrue(outbox.send(CELL_NUM, "Pickup code: 1234"));
+        assertTrue(outbox.send(CELL_NUM, "Pickup code: 5678"));
+        assertTrue(outbox.send("0827654321", "Pickup code: 1234"));
+        assertEquals(3, outbox.getPendingCount());
+
+        scheduler.runDue();
+        assertEquals(Arrays.asList(CELL_NUM + " Pickup code: 1234", CELL_NUM + " Pickup code: 5678", "0827654321 Pickup code: 1234"),
+                device.getReceived());
+    }
+
+    @Test
+    void dropsMessagesOverCapacity() {
+        SmsOutbox outbox = start(2);
+
+        assertTrue(outbox.send(CELL_NUM, "First"));
+        assertTrue(outbox.send(CELL_NUM, "Second"));
+        assertFalse(outbox.send(CELL_NUM, "Third"));
+        assertEquals(2, outbox.getPendingCount());
+    }
+
+    @Test
+    void retriesWithBackoffUntilSent() {
+        device.setFailures(2);
+        SmsOutbox outbox = start(100);
+        outbox.send(CELL_NUM, "Pickup code: 1234");
+
+        scheduler.runDue();
+        scheduler.advanceBy(SmsOutbox.INITIAL_RETRY_DELAY_MILLIS - 1);
+        assertEquals(1, device.getSentAt().size());
+
+        scheduler.advanceBy(1 + 2 * SmsOutbox.INITIAL_RETRY_DELAY_MILLIS);
+        assertEquals(Arrays.asList(0L, SmsOutbox.INITIAL_RETRY_DELAY_MILLIS, 3 * SmsOutbox.INITIAL_RETRY_DELAY_MILLIS), device.getSentAt());
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        device.setFailures(Integer.MAX_VALUE);
+        SmsOutbox outbox = start(100);
+        outbox.send(CELL_NUM, "Pickup code: 1234");
+
+        scheduler.advanceBy(SmsOutbox.MAX_RETRY_DELAY_MILLIS * SmsOutbox.MAX_ATTEMPTS);
+        assertEquals(SmsOutbox.MAX_ATTEMPTS, device.getSentAt().size());
+        assertEquals(0, outbox.getPendingCount());
+
+        // Delays grow exponentially up to the limit.
+        List<Long> sentAt = device.getSentAt();
+        for (int i = 1; i < sentAt.size(); i++) {
+            long delay = sentAt.get(i) - sentAt.get(i - 1);
+            assertEquals(Math.min(SmsOutbox.MAX_RETRY_DELAY_MILLIS, SmsOutbox.INITIAL_RETRY_DELAY_MILLIS << (i - 1)), delay);
+        }
+
+        scheduler.advanceBy(SmsOutbox.MAX_RETRY_DELAY_MILLIS * SmsOutbox.MAX_ATTEMPTS);
+        assertEquals(SmsOutbox.MAX_ATTEMPTS, device.getSentAt().size());
+    }
+
+    @Test
+    void restoresUnsentMessagesAfterRestart() throws IOException {
+        device.setFailures(Integer.MAX_VALUE);
+        SmsOutbox outbox = start(100);
+        outbox.send(CELL_NUM, "Pickup code: 1234");
+        outbox.send(CELL_NUM, "Pickup code: 5678\nLocker #2");
+        scheduler.runDue();
+        assertEquals(2, device.getSentAt().size());
+
+        // Neither the number nor the codes are readable from the journal.
+        String journal = new String(Files.readAllBytes(journalPath()), StandardCharsets.UTF_8);
+        assertEquals(2, journal.split("\n").length);
+        assertFalse(journal.contains("1234") || journal.contains("5678") || journal.contains(CELL_NUM), journal);
+
+        // The application restarts and the device works now.
+        device.setFailures(0);
+        scheduler = new VirtualScheduler(0);
+        SmsOutbox restarted = start(100);
+        assertEquals(2, restarted.getPendingCount());
+
+        scheduler.runDue();
+        assertEquals(Arrays.asList(
+                CELL_NUM + " Pickup code: 1234", CELL_NUM + " Pickup code: 5678\nLocker #2",
+                CELL_NUM + " Pickup code: 1234", CELL_NUM + " Pickup code: 5678\nLocker #2"), device.getReceived());
+        assertEquals(0, restarted.getPendingCount());
+
+        // Once everything is sent, the key is gone along with the records.
+        assertTrue(Files.readAllLines(journalPath()).isEmpty());
+        assertFalse(Files.exists(keyPath()));
+    }
+
+    @Test
+    void restoresRecordsOfPreviousVersion() throws IOException {
+        String text = "Pickup code: 1234";
+        String record = "7 1 " + CELL_NUM + " " + Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        Files.write(journalPath(), Collections.singletonList(record));
+        device.setFailures(Integer.MAX_VALUE);
+
+        SmsOutbox outbox = start(100);
+        assertEquals(1, outbox.getPendingCount());
+
+        // It's encrypted once saved.
+        scheduler.runDue();
+        assertFalse(new String(Files.readAllBytes(journalPath()), StandardCharsets.UTF_8).contains(CELL_NUM));
+        assertEquals(Collections.singletonList(CELL_NUM + " " + text), device.getReceived());
+    }
+
+    @Test
+    void masksCellNumbers() {
+        assertEquals("***567", SmsOutbox.mask(CELL_NUM));
+        assertEquals("***12", SmsOutbox.mask("12"));
+    }
+
+    private SmsOutbox start(int capacity) {
+        SmsOutbox outbox = new SmsOutbox(api, new Journal(journalPath()), scheduler, capacity, RATE_PER_MINUTE);
+        outbox.start();
+        return outbox;
+    }
+
+    private Path journalPath() {
+        return directory.resolve("sms.journal");
+    }
+
+    private Path keyPath() {
+        return directory.resolve("sms.journal.key");
+    }
+
+    /**
+     * Answers `send_sms` only, failing the given number of calls first.
+     */
+    private class StubSmsService extends CommsServiceGrpc.CommsServiceImplBase {
+        private final List<Long> sentAt = new ArrayList<>();
+        private final List<String> received = new ArrayList<>();
+        private int failures = 0;
+
+        synchronized void setFailures(int failures) {
+            this.failures = failures;
+        }
+
+        synchronized List<Long> getSentAt() {
+            return new ArrayList<>(sentAt);
+        }
+
+        synchronized List<String> getReceived() {
+            return new ArrayList<>(received);
+        }
+
+        @Override
+        public void sendSms(Service.SendSmsRequest request, StreamObserver<Service.GeneralResponse> observer) {
+            boolean isSuccessful;
+
+            synchronized (this) {
+                sentAt.add(scheduler.currentTimeMillis());
+                received.add(request.getCellNum() + " " + request.getMsg());
+                isSuccessful = failures == 0;
+
+                if (!isSuccessful && failures != Integer.MAX_VALUE) {
+                    failures--;
+                }
+            }
+
+            observer.onNext(Service.GeneralResponse.newBuilder()
+                    .setResp(Service.BasicResponse.newBuilder().setSuccess(isSuccessful))
+                    .build());
+            observer.onCompleted();
+        }
+    }
+}